@@ -26,6 +26,7 @@ public class AuthManager {
                         user.put("username", username);
                         user.put("wins", 0);
                         user.put("losses", 0);
+                        user.put("rating", Elo.INITIAL);
 
                         // Write to Firestore
                         db.collection("Users").document(userId)
@@ -1,125 +1,223 @@
 package com.example.damka;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
-import android.graphics.Color;
+import android.graphics.Paint;
 import android.util.Log;
 import android.view.MotionEvent;
 import android.view.View;
 import android.widget.Toast;
 
-import java.util.List;
+import java.util.Objects;
 
 public class BoardGame extends View {
     private static final int NUM_OF_SQUARES = 8;
     private Square[][] squares;
     private Soldier selectedSoldier = null;
     private boolean isSoldierJumped = false;//checks if jump
-    private int[][] boardState;
+    private boolean pieceModelDirty = true; // board changed since the pieces were built
+    private Bitmap boardLayer; // the squares, rendered once per size
+    private int squareSize, boardLeft, boardTop; // measured board geometry
+    private int legalTargets; // squares the selected piece may be dropped on, one bit per square
+    private final DragLayer dragLayer; // the dragged piece moves on this overlay, so the board is not redrawn
+    private final Paint targetPaint = Palette.fill(Palette.TARGET);
+    private final BitBoard board = new BitBoard(); // Rules state, and the position on screen
+    private final MoveList legalMoves = new MoveList(); // Reused on every drop
+    private int seq; // moves on board; the side to move is MoveRecord.sideToMove(seq + 1)
     private String currentTurn;
+    private boolean passAndPlay; // both sides are moved on this device
     private GameSessionManager gameSessionManager;
+    private ComputerOpponent computerOpponent; // null when playing against another user
 
-    public BoardGame(Context context, GameSessionManager gameSessionManager) {
+    public BoardGame(Context context, GameSessionManager gameSessionManager, DragLayer dragLayer) {
         super(context);
 
         this.gameSessionManager = gameSessionManager;
+        this.dragLayer = dragLayer;
         squares = new Square[NUM_OF_SQUARES][NUM_OF_SQUARES];
 
         // Fetch initial state
-        boardState = gameSessionManager.getBoardState();
+        BoardSnapshot snapshot = gameSessionManager.getSnapshot();
+        if (snapshot != null) {
+            snapshot.copyTo(board);
+            seq = snapshot.seq;
+        }
         currentTurn = gameSessionManager.getCurrentTurn();
     }
 
+    @Override
+    protected void onSizeChanged(int width, int height, int oldWidth, int oldHeight) {
+        super.onSizeChanged(width, height, oldWidth, oldHeight);
+        // The largest board that fits, centered in the view
+        squareSize = Math.min(width, height) / NUM_OF_SQUARES;
+        boardLeft = (width - squareSize * NUM_OF_SQUARES) / 2;
+        boardTop = (height - squareSize * NUM_OF_SQUARES) / 2;
+        initBoard(squareSize, squareSize);
+        renderBoardLayer();
+        pieceModelDirty = true;
+    }
+
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
-        // Initialize the board layout
-        int w = canvas.getWidth() / NUM_OF_SQUARES; // Width of each square
-        int h = w;
-        initBoard(w, h);
-
-        if (boardState != null)
-            getSquaresArrFromBoardState(w, h);
+        if (boardLayer == null) {
+            return; // not laid out yet
+        }
+        // Pieces are rebuilt only after the board changed, so a steady frame allocates nothing
+        if (pieceModelDirty) {
+            getSquaresArrFromBoardState(squareSize, squareSize);
+            pieceModelDirty = false;
+        }
 
         // Draw the board and soldiers
+        canvas.drawBitmap(boardLayer, boardLeft, boardTop, null);
+        drawTargets(canvas);
         drawBoard(canvas);
     }
 
     private void initBoard(int w, int h) {
-        int x = 0;
-        int y = 500; // Example offset for the board
+        int x = boardLeft;
+        int y = boardTop;
         int color;
 
         for (int i = 0; i < NUM_OF_SQUARES; i++) {
             for (int j = 0; j < NUM_OF_SQUARES; j++) {
                 if (i % 2 == 0) {
-                    color = (j % 2 == 0) ? Color.argb(175, 150, 75, 0) : Color.BLACK;
+                    color = (j % 2 == 0) ? Palette.LIGHT_SQUARE : Palette.DARK_SQUARE;
                 } else {
-                    color = (j % 2 == 0) ? Color.BLACK : Color.argb(175, 150, 75, 0);
+                    color = (j % 2 == 0) ? Palette.DARK_SQUARE : Palette.LIGHT_SQUARE;
                 }
 
                 squares[i][j] = new Square(x, y, color, w, h, i, j);
                 x += w;
             }
             y += h;
-            x = 0;
+            x = boardLeft;
+        }
+    }
+
+    // Rasterizes the squares once per size; onDraw only blits the bitmap
+    private void renderBoardLayer() {
+        if (boardLayer != null) {
+            boardLayer.recycle();
+            boardLayer = null;
+        }
+        if (squareSize <= 0) {
+            return;
+        }
+        boardLayer = Bitmap.createBitmap(squareSize * NUM_OF_SQUARES, squareSize * NUM_OF_SQUARES, Bitmap.Config.ARGB_8888);
+        Canvas layerCanvas = new Canvas(boardLayer);
+        layerCanvas.translate(-boardLeft, -boardTop);
+        for (int i = 0; i < NUM_OF_SQUARES; i++) {
+            for (int j = 0; j < NUM_OF_SQUARES; j++) {
+                squares[i][j].draw(layerCanvas);
+            }
         }
     }
 
     private void getSquaresArrFromBoardState(int w, int h) {
         for (int i = 0; i < NUM_OF_SQUARES; i++) {
             for (int j = 0; j < NUM_OF_SQUARES; j++) {
-                int state = boardState[i][j];
+                int sq = BitBoard.squareOf(i, j);
+                int state = sq == -1 ? BitBoard.EMPTY : board.get(sq);
 
                 // Assign soldiers based on the board state
                 if (state == 0) {
                     squares[i][j].soldier = null; // No soldier
                 } else if (state == 1) {
-                    squares[i][j].soldier = new Soldier(w / 2 + squares[i][j].x, h / 2 + squares[i][j].y, Color.RED, w / 3, i, j, 1);
+                    squares[i][j].soldier = new Soldier(w / 2 + squares[i][j].x, h / 2 + squares[i][j].y, Palette.SIDE1, w / 3, i, j, 1);
                 } else if (state == 2) {
-                    squares[i][j].soldier = new Soldier(w / 2 + squares[i][j].x, h / 2 + squares[i][j].y, Color.BLUE, w / 3, i, j, 2);
+                    squares[i][j].soldier = new Soldier(w / 2 + squares[i][j].x, h / 2 + squares[i][j].y, Palette.SIDE2, w / 3, i, j, 2);
                 } else if (state == 3) {
-                    squares[i][j].soldier = new King(w / 2 + squares[i][j].x, h / 2 + squares[i][j].y, Color.RED, w / 3, i, j, 1);
+                    squares[i][j].soldier = new King(w / 2 + squares[i][j].x, h / 2 + squares[i][j].y, Palette.SIDE1, w / 3, i, j, 1);
                 } else if (state == 4) {
-                    squares[i][j].soldier = new King(w / 2 + squares[i][j].x, h / 2 + squares[i][j].y, Color.BLUE, w / 3, i, j, 2);
+                    squares[i][j].soldier = new King(w / 2 + squares[i][j].x, h / 2 + squares[i][j].y, Palette.SIDE2, w / 3, i, j, 2);
                 }
             }
         }
     }
 
+    // Highlights the legal destinations of the selected piece
+    private void drawTargets(Canvas canvas) {
+        for (int targets = legalTargets; targets != 0; targets &= targets - 1) {
+            int sq = Integer.numberOfTrailingZeros(targets);
+            Square square = squares[BitBoard.columnOf(sq)][BitBoard.rowOf(sq)];
+            canvas.drawRect(square.x, square.y, square.x + square.width, square.y + square.height, targetPaint);
+        }
+    }
+
     private void drawBoard(Canvas canvas) {
         for (int i = 0; i < NUM_OF_SQUARES; i++) {
             for (int j = 0; j < NUM_OF_SQUARES; j++) {
-                squares[i][j].draw(canvas);
-                if (squares[i][j].soldier != null) {
-                    squares[i][j].soldier.draw(canvas);
+                Soldier soldier = squares[i][j].soldier;
+                if (soldier != null && soldier != selectedSoldier) {
+                    soldier.draw(canvas);
                 }
             }
         }
+        // The dragged piece stays on top, unless the drag layer shows it
+        if (selectedSoldier != null && !dragLayer.isDragging()) {
+            selectedSoldier.draw(canvas);
+        }
     }
 
-    public void handleMove() {
-        boardState = getBoardStateAfterMove();
-        gameSessionManager.updateBoardState(boardState);
+    // Publishes a move that was just applied to board
+    public void handleMove(int from, int to, int captured) {
+        seq++;
+        pieceModelDirty = true;
+        gameSessionManager.commitMove(from, to, captured);
     }
 
-    private int[][] getBoardStateAfterMove() {
-        int[][] updatedBoardState = new int[NUM_OF_SQUARES][NUM_OF_SQUARES];
-        for (int i = 0; i < NUM_OF_SQUARES; i++) {
-            for (int j = 0; j < NUM_OF_SQUARES; j++) {
-                updatedBoardState[i][j] = squares[i][j].getState();
-            }
+    public void setComputerOpponent(ComputerOpponent computerOpponent) {
+        this.computerOpponent = computerOpponent;
+    }
+
+    public void setPassAndPlay(boolean passAndPlay) {
+        this.passAndPlay = passAndPlay;
+    }
+
+    // Whether the user may move a piece of side now: its side's turn, and the local player's
+    private boolean canMove(int side) {
+        if (side != MoveRecord.sideToMove(seq + 1)) {
+            return false;
+        }
+        if (computerOpponent != null && (computerOpponent.isThinking() || side == computerOpponent.getSide())) {
+            return false; // the computer plays this side, or is still choosing its move
         }
-        return updatedBoardState;
+        return passAndPlay || Objects.equals(currentTurn, gameSessionManager.getCurrentPlayerId());
     }
-    public void updateBoardState(int[][] newState) {
-        boardState = newState;
+
+    private void requestComputerMove() {
+        if (computerOpponent == null || board.winner() != 0) {
+            return;
+        }
+        computerOpponent.play(board, result -> {
+            if (result == null) {
+                Toast.makeText(getContext(), "The computer has no moves left. You win!", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            // Same path as a move made by the user
+            result.apply(board);
+            isSoldierJumped = result.captured != 0;
+            handleMove(result.from, result.to, result.captured);
+            invalidate();
+            if (isSoldierJumped) {
+                displyWinner();
+            }
+        });
     }
 
-    public void setBoardState(List<List<Long>> boardStateList) {
-        boardState = new int[boardStateList.size()][];
-        for (int i = 0; i < boardStateList.size(); i++) {
-            boardState[i] = boardStateList.get(i).stream().mapToInt(Long::intValue).toArray();
+    // Takes a snapshot published by the session; the echo of our own move changes nothing
+    public void updateBoard(BoardSnapshot snapshot) {
+        seq = snapshot.seq;
+        if (snapshot.samePosition(board)) {
+            return;
+        }
+        snapshot.copyTo(board);
+        pieceModelDirty = true;
+        if (selectedSoldier != null) {
+            updateLegalTargets(selectedSoldier); // the position changed under the drag
         }
         invalidate();
     }
@@ -141,31 +239,29 @@ public class BoardGame extends View {
 
         switch (action) {
             case MotionEvent.ACTION_DOWN:
-                for (int i = 0; i < NUM_OF_SQUARES; i++) {
-                    for (int j = 0; j < NUM_OF_SQUARES; j++) {
-                        Square square = squares[i][j];
-                        if (square.didUserTouchMe((int) touchX, (int) touchY) && square.soldier != null) {
-                            selectedSoldier = square.soldier; // Select soldier for movement
-                            invalidate();
-                            Log.d("ACTION_DOWN", "Selected soldier at: " + i + ", " + j);
-                            return true; // Stop further loop iterations
-                        }
-                    }
+                Square square = squareAt((int) touchX, (int) touchY);
+                if (square != null && square.soldier != null && canMove(square.soldier.side)) {
+                    selectedSoldier = square.soldier; // Select soldier for movement
+                    updateLegalTargets(selectedSoldier);
+                    dragLayer.startDrag(selectedSoldier);
+                    invalidate(); // once per drag: the piece leaves its square and the targets light up
+                    Log.d("ACTION_DOWN", "Selected soldier at: " + square.column + ", " + square.row);
+                    return true;
                 }
                 break;
 
             case MotionEvent.ACTION_MOVE:
                 if (selectedSoldier != null) {
-                    // Update the soldier's position while dragging and force redraw
+                    // Only the overlay moves: nothing is redrawn
                     selectedSoldier.Move((int) touchX, (int) touchY);
-                    invalidate(); // Redraw the canvas
-                    Log.d("ACTION_MOVE", "Dragging soldier to: " + touchX + ", " + touchY);
+                    dragLayer.moveTo(selectedSoldier.x, selectedSoldier.y);
                     return true;
                 }
                 break;
 
             case MotionEvent.ACTION_UP:
                 if (selectedSoldier != null) {
+                    dragLayer.endDrag();
                     updateColumnAndRow(selectedSoldier); // Update soldier's current position
                     if (!isValidSquare(selectedSoldier)) {
                         Log.d("Snap Failure", "No valid square found. Returning soldier to original position.");
@@ -176,6 +272,7 @@ public class BoardGame extends View {
                     }
                     invalidate(); // Redraw the canvas
                     selectedSoldier = null; // Clear the selected soldier after placement
+                    legalTargets = 0;
                     Log.d("ACTION_UP", "Released soldier.");
                     return true;
                 }
@@ -192,222 +289,81 @@ public class BoardGame extends View {
             Toast.makeText(getContext(), "Waiting for Player 2 to join...", Toast.LENGTH_SHORT).show();
             return false;
         }
-        King king;
-        for (int i = 0; i < NUM_OF_SQUARES; i++) {
-
-            for (int j = 0; j < NUM_OF_SQUARES; j++) {
-                Square square = squares[i][j];
-                if (square.didUserTouchMe(soldier.x, soldier.y) && square.soldier == null && square.color == Color.BLACK) {
-                    Log.d("Square Check", "Square checked: column=" + j + ", row=" + i);
-                    Log.d("Soldier Before", "Soldier: column=" + soldier.column + ", row=" + soldier.row);
-                    isSoldierJumped = false;
-                    if (soldier instanceof King) {
-                        king = (King) soldier;
-                        if (isValidMove(king)) {
-                            king.Move(square.x + square.width / 2, square.y + square.height / 2);
-                            square.soldier = king;
-                            squares[king.lastColumn][king.lastRow].soldier = null;
-                            updateLastPosition(king);
-                            Log.d("Snap Success", "King snapped to valid square: " + square.x + ", " + square.y);
-                            handleMove();
-                            invalidate();
-                            if (isSoldierJumped) {
-                                displyWinner();
-                            }
-                            return true;
-                        }
-                    } else if (isValidMove(soldier)) {
-                        soldier.Move(square.x + square.width / 2, square.y + square.height / 2);
-                        squares[soldier.lastColumn][soldier.lastRow].soldier = null;
-                        updateLastPosition(soldier);
-
-                        if (soldier.side == 1 && soldier.column == 7 || soldier.side == 2 && soldier.column == 0) {
-                            king = becomeKing(soldier);
-                            square.soldier = king;
-                        } else
-                            square.soldier = soldier;
-                        Log.d("Snap Success", "Soldier snapped to valid square: " + square.x + ", " + square.y);
-                        handleMove();
-                        invalidate();
-                        if (isSoldierJumped) {
-                            int winnerside = isGameOver();
-                            if (winnerside == 1)
-                                Toast.makeText(getContext(), "The winner side is BLUE!!!", Toast.LENGTH_SHORT).show();
-                            if (winnerside == 2)
-                                Toast.makeText(getContext(), "The winner side is Red!!!", Toast.LENGTH_SHORT).show();
-                            return true;
-                        }
-                    }
-                }
-            }
+        if (!canMove(soldier.side)) {
+            return false; // the turn passed while the piece was held
         }
-        return false;
-    }
-
-    private King becomeKing(Soldier soldier) {
-        int x = soldier.x;
-        int y = soldier.y;
-        int side = soldier.side;
-        int column = soldier.column;
-        int row = soldier.row;
-        int color = soldier.color;
-        int radius = soldier.radius;
-        King king = new King(x, y, color, radius, column, row, side);
-        return king;
-    }
-
-    public boolean isValidMove(King king) {
-        int columnStep = Math.abs(king.column - king.lastColumn);
-        int rowStep = Math.abs(king.row - king.lastRow);
-        Log.d("KingMove", "Validating king move: columnStep = " + columnStep + ", rowStep = " + rowStep);
-        // Ensure the movement is diagonal and involves at least one step
-        if (columnStep != rowStep || columnStep == 0) {
-            Log.d("KingMove", "Invalid move: not diagonal or no movement.");
+        int from = BitBoard.squareOf(soldier.lastColumn, soldier.lastRow);
+        int to = BitBoard.squareOf(soldier.column, soldier.row);
+        if (from == -1 || to == -1) {
             return false;
         }
-        int colDirection = (king.column - king.lastColumn) > 0 ? 1 : -1; // 1: Down, -1: Up
-        int rowDirection = (king.row - king.lastRow) > 0 ? 1 : -1; // 1: Right, -1: Left
-        boolean hasJumped = false; // Track if a jump has occurred
-        boolean pathClear = true; // Ensure the path is valid
-        int jumpedEnemyColumn = -1;
-        int jumpedEnemyRow = -1;
-        for (int i = 1; i <= columnStep; i++) {
-            int intermediateColumn = king.lastColumn + i * colDirection;
-            int intermediateRow = king.lastRow + i * rowDirection;
-            Square intermediateSquare = squares[intermediateColumn][intermediateRow];
-            Soldier middleSoldier = intermediateSquare.soldier;
-            if (middleSoldier != null) {
-                if (middleSoldier.side != king.side && !hasJumped) {
-                    // Valid jump over an opponent soldier
-                    hasJumped = true;
-                    jumpedEnemyColumn = intermediateColumn;
-                    jumpedEnemyRow = intermediateRow;
-                    Log.d("KingMove", "Jumping over enemy soldier at column=" + intermediateColumn + ", row=" + intermediateRow);
-                } else {
-                    // Either jumping over multiple pieces or over a teammate
-                    Log.d("KingMove", "Move failed: path is blocked or invalid jump.");
-                    pathClear = false;
-                    break;
-                }
+        Log.d("Square Check", "Square checked: column=" + soldier.column + ", row=" + soldier.row);
+        Log.d("Soldier Before", "Soldier: column=" + soldier.lastColumn + ", row=" + soldier.lastRow);
+
+        // A capture chain is played by dropping the piece on its final square
+        if ((legalTargets & 1 << to) == 0) {
+            // Captures come first in the list, so a capture anywhere means one was skipped
+            if (!legalMoves.isEmpty() && legalMoves.isCapture(0)) {
+                Toast.makeText(getContext(), "You must capture!", Toast.LENGTH_SHORT).show();
             }
-        }
-        // Ensure the destination square is empty
-        Square destinationSquare = squares[king.column][king.row];
-        if (!pathClear || destinationSquare.soldier != null) {
-            Log.d("KingMove", "Move failed: destination is not valid.");
             return false;
         }
-
-        // Validate landing for jumps
-        if (hasJumped) {
-            int jumpDistance = Math.abs(king.column - jumpedEnemyColumn);
-            if (jumpDistance < 1) {
-                Log.d("KingMove", "Move failed: jump landing is too close.");
-                return false;
-            }
-            // Remove the jumped-over soldier
-            squares[jumpedEnemyColumn][jumpedEnemyRow].soldier = null;
-            isSoldierJumped = true;//King made a jump
-            Log.d("KingMove", "Removed jumped-over enemy soldier at column=" + jumpedEnemyColumn + ", row=" + jumpedEnemyRow);
+        int move = legalMoves.find(from, to);
+        int captured = legalMoves.captured(move);
+        legalMoves.apply(board, move);
+        isSoldierJumped = legalMoves.isCapture(move);
+
+        Square square = squares[soldier.column][soldier.row];
+        soldier.Move(square.x + square.width / 2, square.y + square.height / 2);
+        updateLastPosition(soldier);
+        Log.d("Snap Success", "Soldier snapped to valid square: " + square.x + ", " + square.y);
+        handleMove(from, to, captured);
+        invalidate();
+        if (isSoldierJumped) {
+            displyWinner();
         }
-        Log.d("KingMove", "Move is valid.");
+        requestComputerMove();
         return true;
     }
 
-    public boolean isValidMove(Soldier soldier) {
-        int step = Math.abs(soldier.column - soldier.lastColumn);
-
-        if (step == 1) {
-            if (soldier.side == 1) {
-                if (isValidSingleStepForSide1(soldier)) {
-                    return true;
-                }
-            } else if (isValidSingleStepForSide2(soldier)) {
-                return true;
-            }
-        } else if (step == 2) {
-            if (soldier.side == 1) {
-                if (isValidJumpForSide1(soldier)) {
-                    isSoldierJumped = true;
-                    displyWinner();
-                    return true;
-                }
-            } else if (isValidJumpForSide2(soldier)) {
-                isSoldierJumped = true;
-                displyWinner();
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private boolean isValidSingleStepForSide1(Soldier soldier) {
-        if (soldier.row == 0) {
-            return soldier.column - 1 == soldier.lastColumn && soldier.row + 1 == soldier.lastRow;
-        } else if (soldier.row == 7) {
-            return soldier.column - 1 == soldier.lastColumn && soldier.row - 1 == soldier.lastRow;
-        } else {
-            return (soldier.column - 1 == soldier.lastColumn && soldier.row + 1 == soldier.lastRow) ||
-                    (soldier.column - 1 == soldier.lastColumn && soldier.row - 1 == soldier.lastRow);
+    // Updates soldier's column and row; a drop outside the board keeps the previous ones
+    private void updateColumnAndRow(Soldier soldier) {
+        Square square = squareAt(soldier.x, soldier.y);
+        if (square != null) {
+            soldier.column = square.column;
+            soldier.row = square.row;
         }
     }
 
-    private boolean isValidSingleStepForSide2(Soldier soldier) {
-        if (soldier.row == 0) {
-            return soldier.column + 1 == soldier.lastColumn && soldier.row + 1 == soldier.lastRow;
-        } else if (soldier.row == 7) {
-            return soldier.column + 1 == soldier.lastColumn && soldier.row - 1 == soldier.lastRow;
-        } else {
-            return (soldier.column + 1 == soldier.lastColumn && soldier.row + 1 == soldier.lastRow) ||
-                    (soldier.column + 1 == soldier.lastColumn && soldier.row - 1 == soldier.lastRow);
+    // The square under a point, from the board geometry, or null outside the board
+    private Square squareAt(int x, int y) {
+        if (squareSize <= 0 || x < boardLeft || y < boardTop) {
+            return null;
         }
-    }
-
-    private boolean isValidJumpForSide1(Soldier soldier) {
-        if (soldier.column - 2 == soldier.lastColumn && soldier.row + 2 == soldier.lastRow &&
-                isEnemySoldier(squares[soldier.column - 1][soldier.row + 1].soldier, soldier.side)) {
-            squares[soldier.column - 1][soldier.row + 1].soldier = null;
-            return true;
-        } else if (soldier.column - 2 == soldier.lastColumn && soldier.row - 2 == soldier.lastRow &&
-                isEnemySoldier(squares[soldier.column - 1][soldier.row - 1].soldier, soldier.side)) {
-            squares[soldier.column - 1][soldier.row - 1].soldier = null;
-            return true;
+        int column = (y - boardTop) / squareSize;
+        int row = (x - boardLeft) / squareSize;
+        if (column >= NUM_OF_SQUARES || row >= NUM_OF_SQUARES) {
+            return null;
         }
-        return false;
+        return squares[column][row];
     }
 
-    private boolean isValidJumpForSide2(Soldier soldier) {
-        if (soldier.column + 2 == soldier.lastColumn && soldier.row + 2 == soldier.lastRow &&
-                isEnemySoldier(squares[soldier.column + 1][soldier.row + 1].soldier, soldier.side)) {
-            squares[soldier.column + 1][soldier.row + 1].soldier = null;
-            return true;
-        } else if (soldier.column + 2 == soldier.lastColumn && soldier.row - 2 == soldier.lastRow &&
-                isEnemySoldier(squares[soldier.column + 1][soldier.row - 1].soldier, soldier.side)) {
-            squares[soldier.column + 1][soldier.row - 1].soldier = null;
-            return true;
+    // Generates the moves once per pick-up; the drop is then a lookup in legalTargets
+    private void updateLegalTargets(Soldier soldier) {
+        legalTargets = 0;
+        legalMoves.clear();
+        if (!canMove(soldier.side)) {
+            return; // not the user's piece to move now
         }
-        return false;
-    }
-
-
-    // Updates soldier's column and row
-    private void updateColumnAndRow(Soldier soldier) {
-        for (int i = 0; i < NUM_OF_SQUARES; i++) {
-            for (int j = 0; j < NUM_OF_SQUARES; j++) {
-                if (squares[i][j].didUserTouchMe(soldier.x, soldier.y)) {
-                    soldier.column = i;
-                    soldier.row = j;
-                    break;
-                }
+        MoveGenerator.generate(board, soldier.side, legalMoves);
+        int from = BitBoard.squareOf(soldier.lastColumn, soldier.lastRow);
+        for (int i = 0; i < legalMoves.size(); i++) {
+            if (legalMoves.from(i) == from) {
+                legalTargets |= 1 << legalMoves.to(i);
             }
         }
     }
 
-    // Helper method to check if a soldier belongs to the enemy side
-    private boolean isEnemySoldier(Soldier soldier, int currentSide) {
-        return soldier != null && soldier.side != currentSide;
-    }
-
     private void updateLastPosition(Soldier soldier) {
         // Update only when soldier has successfully snapped into this square
         soldier.lastX = soldier.x;
@@ -419,29 +375,7 @@ public class BoardGame extends View {
     }
 
     private int isGameOver() {
-        boolean side1HasSoldiers = false;
-        boolean side2HasSoldiers = false;
-        for (int i = 0; i < NUM_OF_SQUARES; i++) {
-            for (int j = 0; j < NUM_OF_SQUARES; j++) {
-                Soldier soldier = squares[i][j].soldier;
-                if (soldier != null) {
-                    if (soldier.side == 1) {
-                        side1HasSoldiers = true;
-                    } else if (soldier.side == 2) {
-                        side2HasSoldiers = true;
-                    }
-                }
-                if (side1HasSoldiers && side2HasSoldiers) {
-                    return 0; // Game is not over, both sides have soldiers
-                }
-            }
-        }
-        if (!side1HasSoldiers) {
-            return 2; // Side 2 wins
-        } else if (!side2HasSoldiers) {
-            return 1; // Side 1 wins
-        }
-        return 0; // This shouldn't happen, but just in case
+        return board.winner();
     }
 
     public void displyWinner() {
@@ -454,7 +388,3 @@ public class BoardGame extends View {
         }
     }
 }
-
-
-
-
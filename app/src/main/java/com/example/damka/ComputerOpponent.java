@@ -0,0 +1,181 @@
+package com.example.damka;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Plays one side with a {@link ParallelSearch}, or instantly from an {@link OpeningBook}
+ * while the position is in the book. The book ships in the app's assets, built by
+ * {@link OpeningBookBuilder} from {@link SelfPlay} games, and is copied out to a file so
+ * it can be memory-mapped. The search runs on a background thread
+ * and the chosen move is delivered back on the main thread. A search interrupted by
+ * cancel() is started again by resume().
+ */
+public class ComputerOpponent {
+    public static final String PLAYER_ID = "computer";
+    private static final int HASH_MEGABYTES = 16;
+
+    private final ParallelSearch search;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Random random = new Random();
+    private OpeningBook openingBook; // only used on the executor thread
+    private final int side;
+    private final long timeLimitMillis;
+    private boolean thinking = false;
+    private boolean cancelled = false; // the running search was stopped, its move is dropped
+    private boolean paused = false;
+    private BitBoard pendingPosition; // position of a cancelled search, replayed by resume()
+    private OnMoveListener pendingListener;
+
+    public interface OnMoveListener {
+        // result is null when the computer has no legal move
+        void onComputerMove(SearchResult result);
+    }
+
+    public ComputerOpponent(int side, long timeLimitMillis, int threads) {
+        this.side = side;
+        this.timeLimitMillis = timeLimitMillis;
+        this.search = new ParallelSearch(threads, HASH_MEGABYTES);
+    }
+
+    // Half of the cores: leaves the others to the UI and the rest of the system
+    public static int defaultThreads() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    }
+
+    // Maps the endgame tablebase, if the file is present, before the next search starts
+    public void loadTablebase(File file) {
+        executor.execute(() -> {
+            if (!file.exists()) {
+                return;
+            }
+            try {
+                search.setTablebase(Tablebase.open(file));
+            } catch (IOException e) {
+                Log.e("ComputerOpponent", "Failed to open tablebase " + file, e);
+            }
+        });
+    }
+
+    /**
+     * Maps the opening book before the next search starts. The copy in dir is refreshed from
+     * the assets first if it is missing or older than the installed app.
+     */
+    public void loadOpeningBook(Context context, File dir) {
+        Context app = context.getApplicationContext();
+        executor.execute(() -> {
+            File file = new File(dir, OpeningBook.FILE_NAME);
+            try {
+                File apk = new File(app.getApplicationInfo().sourceDir);
+                if (!file.exists() || file.lastModified() < apk.lastModified()) {
+                    try (InputStream in = app.getAssets().open(OpeningBook.FILE_NAME)) {
+                        copy(in, file);
+                    }
+                }
+                openingBook = OpeningBook.open(file);
+            } catch (IOException e) {
+                Log.e("ComputerOpponent", "Failed to open opening book " + file, e);
+            }
+        });
+    }
+
+    // Writes a temporary file and renames it into place, so a kill mid-copy leaves no torn book
+    private static void copy(InputStream in, File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Failed to replace " + file);
+        }
+    }
+
+    public int getSide() {
+        return side;
+    }
+
+    public boolean isThinking() {
+        return thinking;
+    }
+
+    // Searches a copy of the board, so the caller may keep using its own
+    public void play(BitBoard board, OnMoveListener listener) {
+        BitBoard position = new BitBoard();
+        position.copyFrom(board);
+        thinking = true;
+        cancelled = false;
+        long generation = search.getGeneration(); // a cancel() from now on stops this search, even while it is queued
+        executor.execute(() -> {
+            SearchResult result = chooseMove(position, generation);
+            mainHandler.post(() -> {
+                thinking = false;
+                if (cancelled) {
+                    // The screen was paused: search this position again on resume
+                    pendingPosition = position;
+                    pendingListener = listener;
+                    if (!paused) {
+                        resume();
+                    }
+                    return;
+                }
+                listener.onComputerMove(result);
+            });
+        });
+    }
+
+    // Runs on the executor thread
+    private SearchResult chooseMove(BitBoard position, long generation) {
+        SearchResult result = openingBook != null ? openingBook.choose(position, side, random) : null;
+        if (result != null) {
+            Log.d("ComputerOpponent", "Book move: " + result);
+            return result;
+        }
+        result = search.search(position, side, timeLimitMillis, SearchEngine.MAX_DEPTH, generation);
+        Log.d("ComputerOpponent", "Search finished on " + search.getThreads() + " threads: " + result);
+        return result;
+    }
+
+    // Stops a running search without playing its move, e.g. when the game screen pauses
+    public void cancel() {
+        paused = true;
+        if (thinking) {
+            cancelled = true;
+            search.stop();
+        }
+    }
+
+    // Restarts the search that cancel() interrupted, if any
+    public void resume() {
+        paused = false;
+        if (pendingPosition != null) {
+            BitBoard position = pendingPosition;
+            OnMoveListener listener = pendingListener;
+            pendingPosition = null;
+            pendingListener = null;
+            play(position, listener);
+        }
+    }
+
+    public void shutdown() {
+        search.shutdown();
+        executor.shutdownNow();
+        mainHandler.removeCallbacksAndMessages(null);
+    }
+}
@@ -14,11 +14,16 @@ import java.util.UUID;
 
 public class ConnectToGameActivity extends AppCompatActivity implements View.OnClickListener {
 
-    Button createGameButton, joinGameButton;
+    // How a game is started; only a joining player plays side 2
+    private enum Mode { CREATE, JOIN, COMPUTER, PASS_AND_PLAY }
+
+    Button createGameButton, joinGameButton, computerGameButton, passAndPlayButton;
     AuthManager authManager;
     FireStoreManager firestoreManager;
+    Matchmaker matchmaker;
     String gameId;
     String currentPlayerId;
+    int rating = Elo.INITIAL; // until the profile is loaded
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -29,9 +34,40 @@ public class ConnectToGameActivity extends AppCompatActivity implements View.OnC
         createGameButton.setOnClickListener(this);
         joinGameButton = findViewById(R.id.joinGameButton);
         joinGameButton.setOnClickListener(this);
+        computerGameButton = findViewById(R.id.computerGameButton);
+        computerGameButton.setOnClickListener(this);
+        passAndPlayButton = findViewById(R.id.passAndPlayButton);
+        passAndPlayButton.setOnClickListener(this);
 
         authManager = new AuthManager();
         firestoreManager = new FireStoreManager();
+        matchmaker = new Matchmaker();
+        loadRating();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        matchmaker.cancel();
+    }
+
+    // Matchmaking pairs players by rating band
+    private void loadRating() {
+        String userId = authManager.getCurrentUserId();
+        if (userId == null) {
+            return;
+        }
+        firestoreManager.getUserProfile(this, userId, new ReadCache.Listener<UserProfile>() {
+            @Override
+            public void onValue(UserProfile profile) {
+                rating = profile.rating;
+            }
+
+            @Override
+            public void onError(Exception error) {
+                Log.e("Matchmaker", "Failed to load the rating.", error);
+            }
+        });
     }
 
     @Override
@@ -40,28 +76,57 @@ public class ConnectToGameActivity extends AppCompatActivity implements View.OnC
             createGame();
         if (v == joinGameButton)
             joinGame();
+        if (v == computerGameButton)
+            playAgainstComputer();
+        if (v == passAndPlayButton)
+            passAndPlay();
     }
 
     private void createGame() {
         currentPlayerId = authManager.getCurrentUserId();
         gameId = UUID.randomUUID().toString(); // Unique game ID
-        boolean isPlayer1 = true;
+        String matchShard = matchmaker.publish(gameId, currentPlayerId, rating); // open to joining players
         Log.d("DEBUG", "Successfully added game: " + gameId);
-        startGameActivity(gameId, currentPlayerId, isPlayer1);
+        startGameActivity(Mode.CREATE, gameId, currentPlayerId, matchShard);
     }
 
     private void joinGame() {
-        gameId = null;
-        boolean isPlayer1 = false;
         currentPlayerId = authManager.getCurrentUserId();
-        startGameActivity(gameId, currentPlayerId, isPlayer1);
+        joinGameButton.setEnabled(false); // one search at a time
+        Toast.makeText(this, "Looking for a game...", Toast.LENGTH_SHORT).show();
+        matchmaker.claim(currentPlayerId, rating, claimedGameId -> {
+            joinGameButton.setEnabled(true);
+            if (claimedGameId == null) {
+                Toast.makeText(this, "No open games right now. Try again or create one.", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            gameId = claimedGameId;
+            startGameActivity(Mode.JOIN, gameId, currentPlayerId, null);
+        });
+    }
+
+    private void playAgainstComputer() {
+        currentPlayerId = authManager.getCurrentUserId();
+        gameId = UUID.randomUUID().toString();
+        startGameActivity(Mode.COMPUTER, gameId, currentPlayerId, null);
+    }
+
+    // Both sides on this device, without the backend
+    private void passAndPlay() {
+        currentPlayerId = authManager.getCurrentUserId();
+        gameId = UUID.randomUUID().toString();
+        startGameActivity(Mode.PASS_AND_PLAY, gameId, currentPlayerId, null);
     }
 
-    private void startGameActivity(String gameId, String playerId, boolean isPlayer1) {
+    // matchShard is the matchmaking shard the game is listed on, null if it is not listed
+    private void startGameActivity(Mode mode, String gameId, String playerId, String matchShard) {
         Intent intent = new Intent(this, GameActivity.class);
         intent.putExtra("gameId", gameId);
         intent.putExtra("playerId", playerId);
-        intent.putExtra("isPlayer1", isPlayer1); // true - player 1, false - player 2
+        intent.putExtra("isPlayer1", mode != Mode.JOIN); // true - player 1, false - player 2
+        intent.putExtra("vsComputer", mode == Mode.COMPUTER); // true - player 2 is the computer
+        intent.putExtra("passAndPlay", mode == Mode.PASS_AND_PLAY); // true - player 2 uses the same device
+        intent.putExtra("matchShard", matchShard);
         startActivity(intent);
     }
 }
\ No newline at end of file
@@ -0,0 +1,63 @@
+package com.example.damka;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Overlay that shows the piece being dragged. It is one piece in size and kept in a
+ * hardware layer, so following the finger only changes its translation: neither the
+ * overlay nor the board underneath is redrawn while dragging.
+ */
+public class DragLayer extends View {
+    private Soldier piece;
+
+    public DragLayer(Context context) {
+        super(context);
+        setLayerType(LAYER_TYPE_HARDWARE, null);
+        setVisibility(GONE);
+    }
+
+    public void startDrag(Soldier piece) {
+        this.piece = piece;
+        int size = piece.radius * 2;
+        ViewGroup.LayoutParams params = getLayoutParams();
+        if (params.width != size || params.height != size) {
+            params.width = size;
+            params.height = size;
+            setLayoutParams(params);
+        }
+        moveTo(piece.x, piece.y);
+        setVisibility(VISIBLE);
+        invalidate(); // render the piece into the layer once
+    }
+
+    // (x, y) is the piece center in board coordinates
+    public void moveTo(int x, int y) {
+        setTranslationX(x - piece.radius);
+        setTranslationY(y - piece.radius);
+    }
+
+    public void endDrag() {
+        setVisibility(GONE);
+        piece = null;
+    }
+
+    public boolean isDragging() {
+        return piece != null;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (piece == null) {
+            return;
+        }
+        // The piece draws around its own center; move that center to the middle of the layer
+        canvas.save();
+        canvas.translate(piece.radius - piece.x, piece.radius - piece.y);
+        piece.draw(canvas);
+        canvas.restore();
+    }
+}
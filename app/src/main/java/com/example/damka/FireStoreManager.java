@@ -1,12 +1,23 @@
 package com.example.damka;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Transaction;
 import com.google.android.gms.tasks.OnCompleteListener;
+import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 public class FireStoreManager {
+    private static final long PROFILE_TTL_MILLIS = 5 * 60 * 1000;
+    private static ReadCache<UserProfile> profileCache; // shared, so reads from every screen coalesce
+
     private final FirebaseFirestore db;
+    private final Executor mainThread = new Handler(Looper.getMainLooper())::post;
 
     public FireStoreManager() {
         db = FirebaseFirestore.getInstance();
@@ -19,65 +30,139 @@ public class FireStoreManager {
      * @param username The user's chosen username.
      * @param wins     The number of wins.
      * @param losses   The number of losses.
+     * @param rating   The player's {@link Elo} rating.
      * @param listener Listener for the completion of the operation.
      */
-    public void saveUserProfile(String userId, String username, int wins, int losses, OnCompleteListener<Void> listener) {
+    public void saveUserProfile(String userId, String username, int wins, int losses, int rating,
+                                OnCompleteListener<Void> listener) {
         Map<String, Object> userProfile = new HashMap<>();
         userProfile.put("username", username);
         userProfile.put("wins", wins);
         userProfile.put("losses", losses);
+        userProfile.put("rating", rating);
 
         db.collection("Users").document(userId)
                 .set(userProfile)
-                .addOnCompleteListener(listener);
+                .addOnCompleteListener(task -> {
+                    invalidateProfile(userId);
+                    listener.onComplete(task);
+                });
     }
 
     /**
-     * Fetch a user's profile from Firestore.
+     * Fetch a user's profile. A profile read in the last PROFILE_TTL_MILLIS, on this run or an
+     * earlier one, comes from the local cache without a read; an older one is handed out at
+     * once and then again as read from Firestore.
      *
+     * @param context  Any context, for the cache directory.
      * @param userId   The user's unique ID.
-     * @param listener Listener for the completion of the operation.
+     * @param listener Listener for the profile, called on the main thread; it gets an error
+     *                 if there is no such user.
      */
-    public void getUserProfile(String userId, OnCompleteListener<DocumentSnapshot> listener) {
-        db.collection("Users").document(userId)
-                .get()
-                .addOnCompleteListener(listener);
+    public void getUserProfile(Context context, String userId, ReadCache.Listener<UserProfile> listener) {
+        profiles(context).get(userId, mainThread, listener);
     }
 
-    /**
-     * Query the Firestore database for the first waiting game.
-     *
-     * @param listener Listener for the completion of the operation.
-     */
-    public void getWaitingGame(OnCompleteListener<QuerySnapshot> listener) {
-        db.collection("WaitingGames").limit(1)
-                .get()
-                .addOnCompleteListener(listener);
+    private static synchronized ReadCache<UserProfile> profiles(Context context) {
+        if (profileCache == null) {
+            FirebaseFirestore db = FirebaseFirestore.getInstance();
+            profileCache = new ReadCache<>(new File(context.getApplicationContext().getCacheDir(), "profiles"),
+                    PROFILE_TTL_MILLIS, UserProfile.CODEC,
+                    (userId, callback) -> db.collection("Users").document(userId).get().addOnCompleteListener(task -> {
+                        if (!task.isSuccessful()) {
+                            callback.onFetched(null, task.getException());
+                        } else if (!task.getResult().exists()) {
+                            callback.onFetched(null, new IllegalArgumentException("No profile for " + userId));
+                        } else {
+                            callback.onFetched(profileOf(task.getResult()), null);
+                        }
+                    }),
+                    Executors.newSingleThreadExecutor());
+        }
+        return profileCache;
+    }
+
+    private static synchronized void invalidateProfile(String userId) {
+        if (profileCache != null) {
+            profileCache.invalidate(userId);
+        }
+    }
+
+    private static UserProfile profileOf(DocumentSnapshot profile) {
+        return new UserProfile(profile.getString("username"), count(profile, "wins"), count(profile, "losses"),
+                ratingOf(profile));
     }
 
     /**
-     * Add a new game to the "WaitingGames" collection in Firestore.
-     *
-     * @param gameId   The unique ID for the game.
-     * @param gameData The game data to be stored.
-     * @param listener Listener for the completion of the operation.
+     * The player's {@link Elo} rating in a profile snapshot; players from before ratings start at the initial one.
      */
-    public void addGameToWaitingList(String gameId, Map<String, Object> gameData, OnCompleteListener<Void> listener) {
-        db.collection("WaitingGames").document(gameId)
-                .set(gameData)
-                .addOnCompleteListener(listener);
+    public static int ratingOf(DocumentSnapshot profile) {
+        Long rating = profile != null ? profile.getLong("rating") : null;
+        return rating != null ? rating.intValue() : Elo.INITIAL;
     }
 
     /**
-     * Remove a game from the "WaitingGames" collection once it's joined.
+     * Record a finished game: both players' wins or losses and {@link Elo} ratings, in one
+     * transaction. Both players' devices call this; the Results document makes sure the
+     * game is only counted once.
      *
      * @param gameId   The unique ID for the game.
-     * @param listener Listener for the completion of the operation.
+     * @param winnerId The winning player's user ID.
+     * @param loserId  The losing player's user ID.
+     * @param listener Listener for the completion of the operation; the result is false
+     *                 when the game was already recorded or a player has no profile.
      */
-    public void removeGameFromWaitingList(String gameId, OnCompleteListener<Void> listener) {
-        db.collection("WaitingGames").document(gameId)
-                .delete()
-                .addOnCompleteListener(listener);
+    public void recordResult(String gameId, String winnerId, String loserId, OnCompleteListener<Boolean> listener) {
+        DocumentReference resultRef = db.collection("Results").document(gameId);
+        DocumentReference winnerRef = db.collection("Users").document(winnerId);
+        DocumentReference loserRef = db.collection("Users").document(loserId);
+        db.runTransaction((Transaction.Function<Boolean>) transaction -> {
+            // All reads come before the writes
+            if (transaction.get(resultRef).exists()) {
+                return false;
+            }
+            DocumentSnapshot winner = transaction.get(winnerRef);
+            DocumentSnapshot loser = transaction.get(loserRef);
+            if (!winner.exists() || !loser.exists()) {
+                return false;
+            }
+            int winnerRating = ratingOf(winner), loserRating = ratingOf(loser);
+            long winnerWins = count(winner, "wins"), loserLosses = count(loser, "losses");
+            int newWinnerRating = Elo.updated(winnerRating, loserRating, 1,
+                    (int) (winnerWins + count(winner, "losses")));
+            int newLoserRating = Elo.updated(loserRating, winnerRating, 0,
+                    (int) (count(loser, "wins") + loserLosses));
+
+            Map<String, Object> winnerUpdate = new HashMap<>();
+            winnerUpdate.put("wins", winnerWins + 1);
+            winnerUpdate.put("rating", newWinnerRating);
+            transaction.update(winnerRef, winnerUpdate);
+            Map<String, Object> loserUpdate = new HashMap<>();
+            loserUpdate.put("losses", loserLosses + 1);
+            loserUpdate.put("rating", newLoserRating);
+            transaction.update(loserRef, loserUpdate);
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("winnerId", winnerId);
+            result.put("loserId", loserId);
+            result.put("winnerRating", newWinnerRating);
+            result.put("loserRating", newLoserRating);
+            result.put("finishedAt", System.currentTimeMillis());
+            transaction.set(resultRef, result);
+            return true;
+        }).addOnCompleteListener(task -> {
+            // False may mean the other device recorded the game first: the profiles changed either way
+            if (task.isSuccessful()) {
+                invalidateProfile(winnerId);
+                invalidateProfile(loserId);
+            }
+            listener.onComplete(task);
+        });
+    }
+
+    private static long count(DocumentSnapshot profile, String field) {
+        Long value = profile.getLong(field);
+        return value != null ? value : 0;
     }
 
     /**
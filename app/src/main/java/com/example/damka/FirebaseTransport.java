@@ -0,0 +1,238 @@
+package com.example.damka;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.MutableData;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.Transaction;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+
+/**
+ * {@link GameTransport} on the Firebase Realtime Database, under GameSessions/<gameId>.
+ * The conditional writes rely on the validation rules in database.rules.json, which only
+ * take moves from the player in currentTurn, numbered on from moveSeq. Snapshots
+ * are only turned into {@link SessionState}s on the subscriber's executor, never on the
+ * UI thread where Firebase delivers them.
+ */
+public class FirebaseTransport implements GameTransport {
+    private final DatabaseReference sessionsRef;
+    private final DatabaseReference connectedRef;
+
+    public FirebaseTransport() {
+        FirebaseDatabase database = FirebaseDatabase.getInstance();
+        this.sessionsRef = database.getReference("GameSessions");
+        this.connectedRef = database.getReference(".info/connected");
+    }
+
+    @Override
+    public void create(String gameId, SessionState initial, Callback callback) {
+        Map<String, Object> initialState = new HashMap<>();
+        initialState.put("player1Id", initial.player1Id);
+        initialState.put("player2Id", initial.player2Id);
+        initialState.put("currentTurn", initial.currentTurn);
+        initialState.put("boardState", initial.board);
+        initialState.put("checkpointSeq", initial.checkpointSeq);
+        initialState.put("moveSeq", initial.moveSeq);
+        initialState.put("createdAt", System.currentTimeMillis());
+        // A transaction rather than setValue: the game is listed for matchmaking before this
+        // write lands, and a player 2 who joined in between must keep the seat
+        sessionsRef.child(gameId).runTransaction(new Transaction.Handler() {
+            @NonNull
+            @Override
+            public Transaction.Result doTransaction(@NonNull MutableData mutableData) {
+                String joined = mutableData.child("player2Id").getValue(String.class);
+                mutableData.setValue(initialState);
+                if (joined != null && initial.player2Id == null) {
+                    mutableData.child("player2Id").setValue(joined);
+                }
+                return Transaction.success(mutableData);
+            }
+
+            @Override
+            public void onComplete(DatabaseError error, boolean committed, DataSnapshot snapshot) {
+                callback.onComplete(error != null ? error.toException() : null);
+            }
+        });
+    }
+
+    @Override
+    public void join(String gameId, String playerId, Callback callback) {
+        sessionsRef.child(gameId).runTransaction(new Transaction.Handler() {
+            @NonNull
+            @Override
+            public Transaction.Result doTransaction(@NonNull MutableData mutableData) {
+                if (mutableData.child("player2Id").getValue(String.class) == null) {
+                    mutableData.child("player2Id").setValue(playerId);
+                    return Transaction.success(mutableData);
+                }
+                return Transaction.abort(); // Player 2 already exists
+            }
+
+            @Override
+            public void onComplete(DatabaseError error, boolean committed, DataSnapshot snapshot) {
+                if (committed) {
+                    callback.onComplete(null);
+                } else {
+                    callback.onComplete(error != null ? error.toException() : new IllegalStateException("Player 2 already joined."));
+                }
+            }
+        });
+    }
+
+    @Override
+    public void commitMoves(String gameId, List<MoveRecord> moves, String nextTurn, Callback callback) {
+        Map<String, Object> update = new HashMap<>();
+        for (MoveRecord record : moves) {
+            update.put("moves/" + record.seq, record.pack());
+        }
+        update.put("moveSeq", moves.get(moves.size() - 1).seq);
+        update.put("currentTurn", nextTurn);
+        update.put("updatedAt", ServerValue.TIMESTAMP);
+        sessionsRef.child(gameId).updateChildren(update)
+                .addOnCompleteListener(task -> callback.onComplete(task.getException()));
+    }
+
+    @Override
+    public void writeCheckpoint(String gameId, int seq, String board, Callback callback) {
+        Map<String, Object> update = new HashMap<>();
+        update.put("boardState", board);
+        update.put("checkpointSeq", seq);
+        for (int old = Math.max(1, seq - 2 * SessionBoard.CHECKPOINT_INTERVAL + 1);
+             old <= seq - SessionBoard.CHECKPOINT_INTERVAL; old++) {
+            update.put("moves/" + old, null);
+        }
+        sessionsRef.child(gameId).updateChildren(update)
+                .addOnCompleteListener(task -> callback.onComplete(task.getException()));
+    }
+
+    @Override
+    public void load(String gameId, Executor executor, StateCallback callback) {
+        sessionsRef.child(gameId).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                executor.execute(() -> callback.onState(snapshot.exists() ? parse(snapshot, 0) : null, null));
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                executor.execute(() -> callback.onState(null, error.toException()));
+            }
+        });
+    }
+
+    @Override
+    public Subscription subscribe(String gameId, Executor executor, Listener listener) {
+        DatabaseReference gameRef = sessionsRef.child(gameId);
+        ValueEventListener sessionListener = gameRef.addValueEventListener(new ValueEventListener() {
+            private long version = 0; // Firebase delivers in order on the UI thread
+
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                long stateVersion = ++version;
+                executor.execute(() -> listener.onSession(parse(snapshot, stateVersion)));
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e("FirebaseTransport", "Failed to listen for updates.", error.toException());
+            }
+        });
+
+        ValueEventListener connectedListener = connectedRef.addValueEventListener(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                boolean connected = Boolean.TRUE.equals(snapshot.getValue(Boolean.class));
+                executor.execute(() -> listener.onConnected(connected));
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e("FirebaseTransport", "Failed to listen for the connection state.", error.toException());
+            }
+        });
+
+        ChildEventListener movesListener = gameRef.child("moves").addChildEventListener(new ChildEventListener() {
+            @Override
+            public void onChildAdded(@NonNull DataSnapshot snapshot, String previousChildName) {
+                executor.execute(() -> {
+                    Long packed = snapshot.getValue(Long.class);
+                    if (packed != null) {
+                        listener.onMove(Integer.parseInt(snapshot.getKey()), packed);
+                    }
+                });
+            }
+
+            @Override
+            public void onChildChanged(@NonNull DataSnapshot snapshot, String previousChildName) {
+            }
+
+            @Override
+            public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+                // Pruned at a checkpoint
+            }
+
+            @Override
+            public void onChildMoved(@NonNull DataSnapshot snapshot, String previousChildName) {
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e("FirebaseTransport", "Failed to listen for moves.", error.toException());
+            }
+        });
+
+        return () -> {
+            gameRef.removeEventListener(sessionListener);
+            connectedRef.removeEventListener(connectedListener);
+            gameRef.child("moves").removeEventListener(movesListener);
+        };
+    }
+
+    private static SessionState parse(DataSnapshot snapshot, long version) {
+        Long checkpointSeq = snapshot.child("checkpointSeq").getValue(Long.class);
+        Long moveSeq = snapshot.child("moveSeq").getValue(Long.class);
+        TreeMap<Integer, Long> moves = new TreeMap<>();
+        for (DataSnapshot move : snapshot.child("moves").getChildren()) {
+            Long packed = move.getValue(Long.class);
+            if (packed != null) {
+                moves.put(Integer.parseInt(move.getKey()), packed);
+            }
+        }
+        return new SessionState(version,
+                snapshot.child("player1Id").getValue(String.class),
+                snapshot.child("player2Id").getValue(String.class),
+                snapshot.child("currentTurn").getValue(String.class),
+                checkpointSeq == null ? 0 : checkpointSeq.intValue(), // sessions without moves
+                moveSeq == null ? (moves.isEmpty() ? 0 : moves.lastKey()) : moveSeq.intValue(),
+                boardText(snapshot.child("boardState").getValue()),
+                moves);
+    }
+
+    // BoardCodec text for the stored board; the old nested lists are converted, unreadable boards give null
+    private static String boardText(Object value) {
+        if (value instanceof String) {
+            return (String) value;
+        }
+        try {
+            BitBoard board = new BitBoard();
+            BoardCodec.decodeValue(value, board);
+            return BoardCodec.encode(board);
+        } catch (IllegalArgumentException e) {
+            Log.e("FirebaseTransport", "Unreadable boardState in snapshot.", e);
+            return null;
+        }
+    }
+}
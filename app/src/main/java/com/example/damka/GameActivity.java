@@ -5,12 +5,20 @@ import android.util.Log;
 import android.widget.FrameLayout;
 import android.widget.Toast;
 
+import java.io.File;
+
 import androidx.appcompat.app.AppCompatActivity;
 
 public class GameActivity extends AppCompatActivity {
     private GameSessionManager gameSessionManager;
     private BoardGame boardGame; // Custom view for the game board
     private FrameLayout boardContainer; // Layout to hold the BoardGame
+    private ComputerOpponent computerOpponent; // Only in single-player games
+    private String gameId;
+    private String matchShard; // where the game waits for player 2, null if it is not listed
+    private boolean rated; // an online game between two users, recorded when it ends
+    private static final long COMPUTER_MOVE_TIME_MILLIS = 1000;
+    private static final String GUEST_PLAYER_ID = "guest"; // the second player in pass-and-play
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -21,27 +29,74 @@ public class GameActivity extends AppCompatActivity {
         boardContainer = findViewById(R.id.board_container);
 
         // Step 2: Retrieve intent extras
-        String gameId = getIntent().getStringExtra("gameId");
+        gameId = getIntent().getStringExtra("gameId");
         String currentPlayerId = getIntent().getStringExtra("playerId");
         boolean isPlayer1 = getIntent().getBooleanExtra("isPlayer1", false);
+        boolean vsComputer = getIntent().getBooleanExtra("vsComputer", false);
+        boolean passAndPlay = getIntent().getBooleanExtra("passAndPlay", false);
+        matchShard = getIntent().getStringExtra("matchShard");
+        rated = !vsComputer && !passAndPlay;
 
-        // Step 3: Initialize GameSessionManager
-        gameSessionManager = new GameSessionManager(gameId, currentPlayerId);
+        // Step 3: Initialize GameSessionManager; games on this device need no backend
+        GameTransport transport = vsComputer || passAndPlay ? new LoopbackTransport() : new FirebaseTransport();
+        gameSessionManager = new GameSessionManager(transport, gameId, currentPlayerId);
+        gameSessionManager.openJournal(new File(getFilesDir(), "journals"));
 
         // Step 4: Create or join a game
         if(isPlayer1)
             gameSessionManager.createGameSession(currentPlayerId);
         else
             gameSessionManager.joinGameSession(currentPlayerId);
+        if (vsComputer) // The computer takes the place of player 2
+            gameSessionManager.joinGameSession(ComputerOpponent.PLAYER_ID);
+        else if (passAndPlay) // Both sides are played on this device
+            gameSessionManager.joinGameSession(GUEST_PLAYER_ID);
 
         // Step 5: Initialize the BoardGame view
-        boardGame = new BoardGame(this, gameSessionManager);
+        DragLayer dragLayer = new DragLayer(this); // Dragged pieces move above the board
+        boardGame = new BoardGame(this, gameSessionManager, dragLayer);
         boardContainer.addView(boardGame); // Add the BoardGame view to the layout
+        boardContainer.addView(dragLayer, new FrameLayout.LayoutParams(0, 0));
+        if (vsComputer) {
+            computerOpponent = new ComputerOpponent(2, COMPUTER_MOVE_TIME_MILLIS, ComputerOpponent.defaultThreads());
+            computerOpponent.loadTablebase(new File(getFilesDir(), Tablebase.FILE_NAME));
+            computerOpponent.loadOpeningBook(this, getFilesDir());
+            boardGame.setComputerOpponent(computerOpponent);
+        }
+        boardGame.setPassAndPlay(passAndPlay);
 
         // Step 5: Set up listener for game updates
         setupGameSessionListener();
     }
 
+    @Override
+    protected void onPause() {
+        super.onPause();
+        if (computerOpponent != null) {
+            computerOpponent.cancel();
+        }
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        if (computerOpponent != null) {
+            computerOpponent.resume();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (computerOpponent != null) {
+            computerOpponent.shutdown();
+        }
+        if (matchShard != null && gameSessionManager.getPlayer2Id() == null) {
+            new Matchmaker().withdraw(matchShard, gameId); // nobody joined; don't leave it for others to claim
+        }
+        gameSessionManager.shutdown();
+    }
+
     private void setupGameSessionListener() {
         gameSessionManager.setOnGameSessionUpdateListener(new GameSessionManager.GameSessionUpdateListener() {
             @Override
@@ -67,11 +122,28 @@ public class GameActivity extends AppCompatActivity {
             }
 
             @Override
-            public void onBoardStateUpdated(int[][] newState) {
+            public void onBoardUpdated(BoardSnapshot snapshot) {
                 // Update the board state in BoardGame
                 if (boardGame != null) {
-                    boardGame.updateBoardState(newState);
+                    boardGame.updateBoard(snapshot);
+                }
+            }
+
+            @Override
+            public void onGameOver(int winnerSide) {
+                String player1Id = gameSessionManager.getPlayer1Id();
+                String player2Id = gameSessionManager.getPlayer2Id();
+                if (!rated || player1Id == null || player2Id == null) {
+                    return;
                 }
+                // Both devices report the game; it is counted once
+                String winnerId = winnerSide == 1 ? player1Id : player2Id;
+                String loserId = winnerSide == 1 ? player2Id : player1Id;
+                new FireStoreManager().recordResult(gameId, winnerId, loserId, task -> {
+                    if (!task.isSuccessful()) {
+                        Log.e("GameSession", "Failed to record the result.", task.getException());
+                    }
+                });
             }
         });
     }
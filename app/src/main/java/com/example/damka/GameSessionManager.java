@@ -1,39 +1,115 @@
 package com.example.damka;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
+import android.view.Choreographer;
 
-import androidx.annotation.NonNull;
-
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.MutableData;
-import com.google.firebase.database.Transaction;
-import com.google.firebase.database.ValueEventListener;
-
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps a game session in sync through a {@link GameTransport}: Firebase for online games,
+ * or a {@link LoopbackTransport} for games on one device. Moves are appended as compact
+ * {@link MoveRecord}s under moves/<seq> and both clients apply them to their own board;
+ * the full boardState is only written as a checkpoint every
+ * {@link SessionBoard#CHECKPOINT_INTERVAL} moves, when older moves are also pruned.
+ *
+ * Local moves are optimistic: they are shown at once and committed one at a time. Each
+ * commit is a single multi-path update of the move, moveSeq, currentTurn and updatedAt, so
+ * listeners never see the board and the turn out of step. The transport only accepts it
+ * from the player whose turn it is, with moves that follow moveSeq without a gap; if the
+ * other player got there first, the board rolls back and is read again from the backend.
+ *
+ * Snapshots are decoded, validated and diffed on a background thread that owns the
+ * session board; the UI thread only receives immutable {@link BoardSnapshot}s and drops
+ * any that is older than the one it has. Listener callbacks only fire for the fields that
+ * actually changed, and board updates are coalesced so the listener gets at most one per
+ * frame.
+ *
+ * Local moves are written to a {@link MoveJournal} before they are sent. While offline
+ * nothing is sent; on reconnect (or after a restart) every unacknowledged move goes out
+ * in one batched update, and the acknowledged prefix is trimmed from the journal.
+ *
+ * Once the confirmed board is won (a side without pieces or moves loses), the listener is
+ * told, once per manager.
+ *
+ * Side 1 is played by player 1 and side 2 by player 2; side 1 plays the odd-numbered moves.
+ */
 public class GameSessionManager {
-    private final DatabaseReference gameRef;
-
-    private String currentPlayerId, player1Id, player2Id, currentTurn;
-    private int[][] boardState;
-    private GameSessionUpdateListener gameSessionUpdateListener;
+    private static final long JOURNAL_MAX_AGE_MILLIS = 7L * 24 * 60 * 60 * 1000; // a week
+    private final GameTransport transport;
+    private final ExecutorService decoder = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final String gameId;
+    private final GameTransport.Subscription subscription;
+
+    // Only used on the decoder thread
+    private final SessionBoard session = new SessionBoard();
+    private final BitBoard checkpointBoard = new BitBoard(); // decode buffer for incoming checkpoints
+    private BoardSnapshot published; // the last snapshot made
+    private long nextVersion = 1;
+    private boolean boardLoaded = false;
+    private boolean committing = false; // a move commit is in flight
+    private boolean connected = false;
+    private MoveJournal journal; // null until openJournal(), or if it failed to open
+    private long sessionVersion = -1; // of the last session state applied; the first one notifies every field
+    private boolean gameOverReported = false;
+
+    // Made on the decoder thread, taken on the UI thread
+    private final AtomicReference<BoardSnapshot> latest = new AtomicReference<>();
+
+    // Only used on the UI thread
+    private BoardSnapshot delivered; // the snapshot last handed to the listener
+    private boolean boardFramePending = false;
+    private final Choreographer.FrameCallback publishFrame = frameTimeNanos -> {
+        boardFramePending = false;
+        deliverBoard();
+    };
+
+    private final String currentPlayerId;
+    private volatile String player1Id, player2Id, currentTurn;
+    private volatile GameSessionUpdateListener gameSessionUpdateListener;
 
     public GameSessionManager(String gameId, String playerId) {
+        this(new FirebaseTransport(), gameId, playerId);
+    }
+
+    public GameSessionManager(GameTransport transport, String gameId, String playerId) {
         if (gameId == null || gameId.isEmpty()) {
             throw new IllegalArgumentException("Game ID cannot be null or empty.");
         }
 
         this.currentPlayerId = playerId;
-        this.gameRef = FirebaseDatabase.getInstance().getReference("GameSessions").child(gameId);
+        this.gameId = gameId;
+        this.transport = transport;
 
-        Log.d("GameSessionManager", "Firebase reference initialized for game ID: " + gameId);
-        listenForUpdates();
+        Log.d("GameSessionManager", "Transport initialized for game ID: " + gameId);
+        subscription = transport.subscribe(gameId, this::runOnDecoder, new GameTransport.Listener() {
+            @Override
+            public void onSession(SessionState state) {
+                applySession(state);
+            }
+
+            @Override
+            public void onMove(int seq, long packed) {
+                applyMove(seq, packed);
+            }
+
+            // Pending moves are held while offline and sent as one batch on reconnect
+            @Override
+            public void onConnected(boolean isConnected) {
+                connected = isConnected;
+                commitPending();
+            }
+        });
     }
 
     // Getters
@@ -53,8 +129,9 @@ public class GameSessionManager {
         return currentTurn;
     }
 
-    public int[][] getBoardState() {
-        return boardState;
+    // The newest board, or null before the session is loaded
+    public BoardSnapshot getSnapshot() {
+        return latest.get();
     }
 
     // Listener interface
@@ -65,7 +142,9 @@ public class GameSessionManager {
 
         void onTurnUpdated(String currentTurn);
 
-        void onBoardStateUpdated(int[][] newState);
+        void onBoardUpdated(BoardSnapshot snapshot);
+
+        void onGameOver(int winnerSide);
     }
 
     // Attach a listener
@@ -75,152 +154,361 @@ public class GameSessionManager {
 
     // Create a new game session
     public void createGameSession(String playerId) {
-        if (gameRef == null) {
-            Log.e("GameSessionManager", "Game reference is null. Cannot create session.");
-            return;
-        }
-
-        int[][] initialBoardState = getInitialBoardState();
-        Map<String, Object> initialState = new HashMap<>();
-        initialState.put("player1Id", playerId);
-        initialState.put("player2Id", null);
-        initialState.put("currentTurn", playerId);
-        initialState.put("boardState", convertArrayToList(initialBoardState));
-        initialState.put("createdAt", System.currentTimeMillis());
-
         // Local updates
         currentTurn = playerId;
         player1Id = playerId;
-        boardState = initialBoardState;
+        latest.set(new BoardSnapshot(0, 0, BitBoard.initial())); // shown before the decoder catches up
+        runOnDecoder(() -> {
+            session.reset(BitBoard.initial(), 0);
+            boardLoaded = true;
+            publishBoard();
+        });
 
-        gameRef.setValue(initialState).addOnCompleteListener(task -> {
-            if (task.isSuccessful()) {
+        transport.create(gameId, SessionState.initial(playerId), error -> {
+            if (error == null) {
                 Log.d("GameSessionManager", "Game session created successfully.");
             } else {
-                Log.e("GameSessionManager", "Failed to create game session.", task.getException());
+                Log.e("GameSessionManager", "Failed to create game session.", error);
             }
         });
     }
 
-
     // Join an existing game session
     public void joinGameSession(String playerId) {
-        gameRef.runTransaction(new Transaction.Handler() {
-            @NonNull
-            @Override
-            public Transaction.Result doTransaction(@NonNull MutableData mutableData) {
-                if (mutableData.child("player2Id").getValue(String.class) == null) {
-                    mutableData.child("player2Id").setValue(playerId);
-                    return Transaction.success(mutableData);
-                }
-                return Transaction.abort(); // Player 2 already exists
+        transport.join(gameId, playerId, error -> {
+            if (error == null) {
+                Log.d("GameSessionManager", "Player 2 joined successfully.");
+            } else {
+                Log.e("GameSessionManager", "Failed to join game session: " + error.getMessage());
             }
+        });
+    }
 
-            @Override
-            public void onComplete(@NonNull DatabaseError error, boolean committed, @NonNull DataSnapshot snapshot) {
-                if (committed) {
-                    Log.d("GameSessionManager", "Player 2 joined successfully.");
-                } else {
-                    Log.e("GameSessionManager", "Failed to join game session: " + error.getMessage());
+    /**
+     * Plays a move on the session board and commits it in the background. The caller has
+     * already shown the move; if a remote move got in first, the session board is
+     * published again instead. Every CHECKPOINT_INTERVAL confirmed moves the full board
+     * is written as well.
+     */
+    public void commitMove(int from, int to, int captured) {
+        runOnDecoder(() -> {
+            try {
+                MoveRecord record = session.play(from, to, captured);
+                if (journal != null) {
+                    journal.append(record);
+                    journal.sync(); // durable before it goes on the network
                 }
+            } catch (IllegalArgumentException e) {
+                Log.e("GameSessionManager", "Move is not legal on the session board.", e);
+            } catch (IOException e) {
+                Log.e("GameSessionManager", "Failed to journal the move.", e);
             }
+            publishBoard();
+            commitPending();
         });
     }
 
-    // Update the board state in Firebase
-    public void updateBoardState(int[][] newState) {
-        gameRef.child("boardState").setValue(convertArrayToList(newState)).addOnCompleteListener(task -> {
-            if (task.isSuccessful()) {
-                Log.d("GameSessionManager", "Board state updated successfully.");
-            } else {
-                Log.e("GameSessionManager", "Failed to update board state.", task.getException());
+    /**
+     * Opens this game's move journal in dir. Moves left in it by an earlier run are sent
+     * again once the session board is loaded, if they still follow it. Journals of other
+     * games that were not touched for JOURNAL_MAX_AGE_MILLIS are deleted: their moves are
+     * too old to send, and a killed process never got to delete them itself.
+     */
+    public void openJournal(File dir) {
+        runOnDecoder(() -> {
+            try {
+                if (!dir.isDirectory() && !dir.mkdirs()) {
+                    throw new IOException("Cannot create " + dir);
+                }
+                File own = new File(dir, gameId + ".journal");
+                deleteOldJournals(dir, own);
+                journal = MoveJournal.open(own);
+            } catch (IOException e) {
+                Log.e("GameSessionManager", "Failed to open the move journal.", e);
             }
         });
     }
 
-    // Update the turn in Firebase
-    public void updateTurn(String playerId) {
-        gameRef.child("currentTurn").setValue(playerId).addOnCompleteListener(task -> {
-            if (task.isSuccessful()) {
-                Log.d("GameSessionManager", "Turn updated successfully.");
-            } else {
-                Log.e("GameSessionManager", "Failed to update turn.", task.getException());
+    private static void deleteOldJournals(File dir, File own) {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".journal"));
+        if (files == null) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - JOURNAL_MAX_AGE_MILLIS;
+        for (File file : files) {
+            if (!file.equals(own) && file.lastModified() < cutoff && !file.delete()) {
+                Log.w("GameSessionManager", "Failed to delete the old journal " + file);
             }
-        });
+        }
     }
 
-    // Listen for changes in Firebase
-    private void listenForUpdates() {
-        gameRef.addValueEventListener(new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
-                player1Id = snapshot.child("player1Id").getValue(String.class);
-                player2Id = snapshot.child("player2Id").getValue(String.class);
-                currentTurn = snapshot.child("currentTurn").getValue(String.class);
-
-                // Fetch and update boardState
-                List<List<Long>> boardList = (List<List<Long>>) snapshot.child("boardState").getValue();
-                if (boardList != null) {
-                    boardState = convertListToArray(boardList);
-                } else {
-                    Log.e("GameSessionManager", "boardState is null in snapshot.");
+    /**
+     * Stops the decoder and the transport subscription; the manager is not used afterwards.
+     * The journal is deleted if every move in it was answered for.
+     */
+    public void shutdown() {
+        subscription.cancel();
+        runOnDecoder(() -> {
+            if (journal != null) {
+                try {
+                    if (journal.isEmpty()) {
+                        journal.delete();
+                    } else {
+                        journal.close(); // sent again when the game is reopened
+                    }
+                } catch (IOException e) {
+                    Log.e("GameSessionManager", "Failed to close the move journal.", e);
                 }
+            }
+        });
+        decoder.shutdown();
+    }
 
-                // Notify listener safely
-                if (gameSessionUpdateListener != null) {
-                    gameSessionUpdateListener.onPlayer1Updated(player1Id);
-                    gameSessionUpdateListener.onPlayer2Updated(player2Id);
-                    gameSessionUpdateListener.onTurnUpdated(currentTurn);
+    // Transport events and callbacks are handed here; everything touching the session runs on it
+    private void runOnDecoder(Runnable task) {
+        if (!decoder.isShutdown()) {
+            decoder.execute(task);
+        }
+    }
 
-                    if (boardState != null) {
-                        gameSessionUpdateListener.onBoardStateUpdated(boardState);
+    /**
+     * Sends every pending move in one update; moves played meanwhile wait for the next one,
+     * so a lost race cannot leave a hole. Nothing is sent while offline, to leave no
+     * retries queued in the client.
+     */
+    private void commitPending() {
+        if (committing || !connected || session.pendingCount() == 0) {
+            return;
+        }
+        committing = true;
+        List<MoveRecord> batch = new ArrayList<>(session.pendingMoves());
+        MoveRecord last = batch.get(batch.size() - 1);
+        String nextTurn = last.side == 1 ? player2Id : player1Id;
+        transport.commitMoves(gameId, batch, nextTurn, error -> runOnDecoder(() -> {
+            committing = false;
+            if (error == null) {
+                Log.d("GameSessionManager", "Moves " + batch.get(0).seq + ".." + last.seq + " committed.");
+                for (MoveRecord record : batch) {
+                    session.confirm(record.seq); // a no-op for moves their echo confirmed
+                    if (session.getCheckpointSeq() == record.seq) {
+                        writeCheckpoint(record.seq);
                     }
                 }
+                checkGameOver();
+                trimJournal(last.seq);
+                commitPending();
+            } else {
+                // A sequence number was taken; our own echo may already be on the board
+                Log.e("GameSessionManager", "Moves " + batch.get(0).seq + ".." + last.seq + " rejected.", error);
+                session.rollback();
+                trimJournal(last.seq);
+                resync();
             }
+        }));
+    }
 
-            @Override
-            public void onCancelled(@NonNull DatabaseError error) {
-                Log.e("GameSessionManager", "Failed to listen for updates.", error.toException());
+    // Drops the moves the backend has answered for from the journal
+    private void trimJournal(int seq) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.trim(seq);
+            journal.sync();
+        } catch (IOException e) {
+            Log.e("GameSessionManager", "Failed to trim the move journal.", e);
+        }
+    }
+
+    // Plays the journaled moves that still follow the loaded board, so they are sent again
+    private void restoreJournal() {
+        if (journal == null || journal.isEmpty() || session.pendingCount() > 0) {
+            return;
+        }
+        for (MoveRecord record : journal.pending()) {
+            if (record.seq <= session.getConfirmedSeq()) {
+                continue; // already in the backend, or lost to a move of the other player
+            }
+            if (record.seq != session.getSeq() + 1) {
+                break;
+            }
+            try {
+                session.play(record.from, record.to, record.captured);
+            } catch (IllegalArgumentException e) {
+                break; // no longer legal here
+            }
+        }
+        trimJournal(session.getConfirmedSeq());
+        if (session.pendingCount() > 0) {
+            Log.d("GameSessionManager", "Restored " + session.pendingCount() + " journaled moves.");
+            publishBoard();
+            commitPending();
+        }
+    }
+
+    // Rebuilds the session board from the checkpoint and moves stored in the backend
+    private void resync() {
+        transport.load(gameId, this::runOnDecoder, (state, error) -> {
+            if (state == null) {
+                Log.e("GameSessionManager", "Failed to resync the board.", error);
+            } else if (loadCheckpoint(state)) {
+                receiveAll(state);
+                publishBoard();
             }
         });
     }
 
+    // Restarts the session board from the state's checkpoint; false if it cannot be read
+    private boolean loadCheckpoint(SessionState state) {
+        if (state.board == null) {
+            Log.e("GameSessionManager", "boardState is missing or unreadable.");
+            return false;
+        }
+        try {
+            BoardCodec.decode(state.board, checkpointBoard);
+        } catch (IllegalArgumentException e) {
+            Log.e("GameSessionManager", "Unreadable boardState in snapshot.", e);
+            return false;
+        }
+        if (session.reset(checkpointBoard, state.checkpointSeq) == SessionBoard.REJECTED) {
+            Log.e("GameSessionManager", "A move after checkpoint " + state.checkpointSeq + " is not legal.");
+        }
+        return true;
+    }
 
-    // Helper to get the initial board state
-    private int[][] getInitialBoardState() {
-        int[][] initialBoard = new int[8][8];
-        for (int i = 0; i < 3; i++) {
-            for (int j = 0; j < 8; j++) {
-                if ((i + j) % 2 != 0) initialBoard[i][j] = 1;
+    // Applies the stored moves, rather than waiting for each move event
+    private void receiveAll(SessionState state) {
+        for (Map.Entry<Integer, Long> move : state.moves.entrySet()) {
+            if (session.receive(move.getKey(), move.getValue()) == SessionBoard.REJECTED) {
+                Log.e("GameSessionManager", "Rejected illegal move " + move.getKey() + ".");
+                break;
             }
         }
-        for (int i = 5; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                if ((i + j) % 2 != 0) initialBoard[i][j] = 2;
+    }
+
+    // Makes a snapshot of the session board if it changed, and asks the UI thread to take it
+    private void publishBoard() {
+        BitBoard board = session.getBoard();
+        if (published != null && published.samePosition(board)) {
+            return;
+        }
+        published = new BoardSnapshot(nextVersion++, session.getSeq(), board);
+        latest.set(published);
+        mainHandler.post(this::scheduleDelivery);
+        checkGameOver();
+    }
+
+    // Tells the listener when the confirmed board has a winner, the first time it has one
+    private void checkGameOver() {
+        if (gameOverReported || !boardLoaded) {
+            return;
+        }
+        int sideToMove = MoveRecord.sideToMove(session.getConfirmedSeq() + 1);
+        int winner = MoveGenerator.winner(session.getConfirmedBoard(), sideToMove);
+        if (winner == 0) {
+            return;
+        }
+        gameOverReported = true;
+        mainHandler.post(() -> {
+            GameSessionUpdateListener listener = gameSessionUpdateListener;
+            if (listener != null) {
+                listener.onGameOver(winner);
             }
+        });
+    }
+
+    // UI thread: delivers once in the next frame, however many snapshots arrive before it
+    private void scheduleDelivery() {
+        if (!boardFramePending) {
+            boardFramePending = true;
+            Choreographer.getInstance().postFrameCallback(publishFrame);
         }
-        return initialBoard;
     }
 
-    // Helper to convert Firebase List<List<Long>> to int[][]
-    private int[][] convertListToArray(List<List<Long>> list) {
-        int[][] array = new int[list.size()][];
-        for (int i = 0; i < list.size(); i++) {
-            array[i] = list.get(i).stream().mapToInt(Long::intValue).toArray();
+    // UI thread: hands the newest snapshot to the listener, unless it already has it
+    private void deliverBoard() {
+        BoardSnapshot snapshot = latest.get();
+        if (snapshot == null || !snapshot.isNewerThan(delivered)) {
+            return;
+        }
+        delivered = snapshot;
+        if (gameSessionUpdateListener != null) {
+            gameSessionUpdateListener.onBoardUpdated(snapshot);
         }
-        return array;
     }
 
-    // Helper to convert int[][] to List<List<Integer>> for Firebase
-    private List<List<Integer>> convertArrayToList(int[][] array) {
-        List<List<Integer>> list = new ArrayList<>();
-        for (int[] row : array) {
-            List<Integer> rowList = new ArrayList<>();
-            for (int cell : row) {
-                rowList.add(cell);
+    // Writes the board of checkpoint move seq and drops the moves of the previous checkpoint interval
+    private void writeCheckpoint(int seq) {
+        transport.writeCheckpoint(gameId, seq, BoardCodec.encode(session.getCheckpointBoard()), error -> {
+            if (error == null) {
+                Log.d("GameSessionManager", "Checkpoint " + seq + " written.");
+            } else {
+                Log.e("GameSessionManager", "Failed to write checkpoint " + seq + ".", error);
+            }
+        });
+    }
+
+    // Diffs the session fields against the last state and loads the checkpoint if it is ahead
+    private void applySession(SessionState state) {
+        if (state.version <= sessionVersion) {
+            return; // overtaken by a newer state
+        }
+        boolean first = sessionVersion < 0;
+        sessionVersion = state.version;
+        boolean player1Changed = first || !Objects.equals(player1Id, state.player1Id);
+        boolean player2Changed = first || !Objects.equals(player2Id, state.player2Id);
+        boolean turnChanged = first || !Objects.equals(currentTurn, state.currentTurn);
+        player1Id = state.player1Id;
+        player2Id = state.player2Id;
+        currentTurn = state.currentTurn;
+
+        // The checkpoint only matters when it is ahead of the moves applied here (e.g. on join)
+        boolean wasLoaded = boardLoaded;
+        if (state.checkpointSeq > session.getConfirmedSeq() || (!boardLoaded && session.getConfirmedSeq() == 0)) {
+            // Decoded only when needed, not on every move
+            if (loadCheckpoint(state)) {
+                boardLoaded = true;
             }
-            list.add(rowList);
+        } else {
+            boardLoaded = true; // the moves since the checkpoint already arrived
+        }
+        if (boardLoaded && !wasLoaded) {
+            receiveAll(state);
+            restoreJournal();
+        }
+
+        // Notify listener safely, only of what changed (most states are just a new move)
+        if (player1Changed || player2Changed || turnChanged) {
+            String newPlayer1Id = state.player1Id, newPlayer2Id = state.player2Id, newTurn = state.currentTurn;
+            mainHandler.post(() -> {
+                GameSessionUpdateListener listener = gameSessionUpdateListener;
+                if (listener == null) {
+                    return;
+                }
+                if (player1Changed) {
+                    listener.onPlayer1Updated(newPlayer1Id);
+                }
+                if (player2Changed) {
+                    listener.onPlayer2Updated(newPlayer2Id);
+                }
+                if (turnChanged) {
+                    listener.onTurnUpdated(newTurn);
+                }
+            });
+        }
+        if (boardLoaded) {
+            publishBoard();
+        }
+    }
+
+    private void applyMove(int seq, long packed) {
+        int applied = session.receive(seq, packed);
+        if (applied == SessionBoard.REJECTED) {
+            Log.e("GameSessionManager", "Rejected illegal move " + seq + ".");
+            return;
+        }
+        if (applied > 0 && boardLoaded) {
+            publishBoard(); // a new move, or a rollback when it took our sequence number
         }
-        return list;
     }
 }
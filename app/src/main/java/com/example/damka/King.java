@@ -1,10 +1,11 @@
 package com.example.damka;
 
 import android.graphics.Canvas;
-import android.graphics.Color;
 import android.graphics.Paint;
 
 public class King extends Soldier{
+    private final Paint crownPaint = Palette.fill(Palette.CROWN);
+
     public King(int x, int y, int color, int radius,int column,int row, int side) {
         super(x, y, color, radius,column,row, side);
         lastX = x;
@@ -16,9 +17,7 @@ public class King extends Soldier{
     @Override
     public void draw(Canvas canvas) {
         super.draw(canvas);
-        Paint paint = new Paint();
-        paint.setColor(Color.YELLOW);
-        canvas.drawCircle(x,y,radius/2, paint);
+        canvas.drawCircle(x,y,radius/2, crownPaint);
     }
     @Override
     protected void Move(int x, int y) {
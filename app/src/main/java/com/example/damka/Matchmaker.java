@@ -0,0 +1,181 @@
+package com.example.damka;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * The matchmaking queue in Firestore, indexed and sharded as described in
+ * {@link MatchShards}: a waiting game is WaitingGames/band-b-shard-k/Games/<gameId> with its
+ * host, the host's rating and an expiry time. A joining player claims an entry by
+ * deleting it in a transaction, so of several players reading the same entry only one
+ * gets it; the others move on to the next shard in their order. Callbacks run on the
+ * main thread.
+ */
+public class Matchmaker {
+    private final FirebaseFirestore db;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Random random = new Random();
+    private boolean cancelled = false;
+
+    public interface MatchCallback {
+        // gameId is null when no open game was found
+        void onMatch(String gameId);
+    }
+
+    public Matchmaker() {
+        db = FirebaseFirestore.getInstance();
+    }
+
+    private CollectionReference games(String shardId) {
+        return db.collection("WaitingGames").document(shardId).collection("Games");
+    }
+
+    /**
+     * Lists a new game on a random shard of the host's rating band.
+     *
+     * @return The shard ID, for withdraw().
+     */
+    public String publish(String gameId, String hostId, int rating) {
+        String shardId = MatchShards.shardId(MatchShards.bandOf(rating), MatchShards.randomShard(random));
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("gameId", gameId);
+        entry.put("hostId", hostId);
+        entry.put("rating", rating);
+        entry.put("expiresAt", MatchShards.expiresAt(System.currentTimeMillis()));
+        games(shardId).document(gameId).set(entry).addOnCompleteListener(task -> {
+            if (!task.isSuccessful()) {
+                Log.e("Matchmaker", "Failed to list game " + gameId + ".", task.getException());
+            }
+        });
+        return shardId;
+    }
+
+    // Takes a game nobody joined off the queue
+    public void withdraw(String shardId, String gameId) {
+        games(shardId).document(gameId).delete();
+    }
+
+    /**
+     * Claims an open game of another player, closest in rating first: the player's own band,
+     * then one band further either side every MatchShards.WIDEN_MILLIS.
+     */
+    public void claim(String playerId, int rating, MatchCallback callback) {
+        cancelled = false;
+        search(MatchShards.bandOf(rating), 0, playerId, callback);
+    }
+
+    // Stops a search; its callback is not called
+    public void cancel() {
+        cancelled = true;
+        handler.removeCallbacksAndMessages(null);
+    }
+
+    private void search(int band, int spread, String playerId, MatchCallback callback) {
+        List<String> shardIds = new ArrayList<>();
+        for (int searched : MatchShards.bandsAt(band, spread)) {
+            for (int shard : MatchShards.probeOrder(random)) {
+                shardIds.add(MatchShards.shardId(searched, shard));
+            }
+        }
+        Collections.shuffle(shardIds, random); // both bands of a step equally likely first
+        probe(shardIds, 0, playerId, gameId -> {
+            if (cancelled) {
+                return;
+            }
+            if (gameId != null || spread == MatchShards.MAX_SPREAD) {
+                callback.onMatch(gameId);
+            } else {
+                handler.postDelayed(() -> search(band, spread + 1, playerId, callback), MatchShards.WIDEN_MILLIS);
+            }
+        });
+    }
+
+    private void probe(List<String> shardIds, int index, String playerId, MatchCallback callback) {
+        if (cancelled) {
+            return;
+        }
+        if (index == shardIds.size()) {
+            callback.onMatch(null);
+            return;
+        }
+        String shardId = shardIds.get(index);
+        long now = System.currentTimeMillis();
+        games(shardId).whereGreaterThan("expiresAt", now).limit(MatchShards.CANDIDATES).get()
+                .addOnCompleteListener(task -> {
+                    DocumentSnapshot candidate = task.isSuccessful() ? pick(task.getResult(), playerId) : null;
+                    if (candidate == null) {
+                        if (task.isSuccessful()) {
+                            sweep(shardId, now);
+                        }
+                        probe(shardIds, index + 1, playerId, callback);
+                        return;
+                    }
+                    claimEntry(candidate.getReference(), playerId).addOnCompleteListener(claimTask -> {
+                        String gameId = claimTask.isSuccessful() ? claimTask.getResult() : null;
+                        if (gameId != null) {
+                            callback.onMatch(gameId);
+                        } else {
+                            probe(shardIds, index + 1, playerId, callback); // lost the race
+                        }
+                    });
+                });
+    }
+    // A random entry of another host, so joiners reading the same shard spread out
+    private DocumentSnapshot pick(QuerySnapshot snapshot, String playerId) {
+        List<DocumentSnapshot> entries = snapshot.getDocuments();
+        int start = entries.isEmpty() ? 0 : random.nextInt(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            DocumentSnapshot entry = entries.get((start + i) % entries.size());
+            if (!Objects.equals(playerId, entry.getString("hostId"))) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    // Compare-and-set: the entry must still be there and live; the claim deletes it
+    private Task<String> claimEntry(DocumentReference entry, String playerId) {
+        return db.runTransaction(transaction -> {
+            DocumentSnapshot snapshot = transaction.get(entry);
+            Long expiresAt = snapshot.exists() ? snapshot.getLong("expiresAt") : null;
+            if (expiresAt == null || MatchShards.isExpired(expiresAt, System.currentTimeMillis())
+                    || Objects.equals(playerId, snapshot.getString("hostId"))) {
+                return null;
+            }
+            transaction.delete(entry);
+            return snapshot.getString("gameId");
+        });
+    }
+
+    // Deletes a few expired entries of a shard that had nothing to offer
+    private void sweep(String shardId, long now) {
+        games(shardId).whereLessThan("expiresAt", now).limit(MatchShards.CANDIDATES).get()
+                .addOnCompleteListener(task -> {
+                    if (!task.isSuccessful() || task.getResult().isEmpty()) {
+                        return;
+                    }
+                    WriteBatch batch = db.batch();
+                    for (DocumentSnapshot entry : task.getResult().getDocuments()) {
+                        batch.delete(entry.getReference());
+                    }
+                    batch.commit();
+                });
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.damka;
+
+import android.graphics.Color;
+import android.graphics.Paint;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Shared fill paints, one per color: squares and pieces draw with these instead of owning a Paint
+public final class Palette {
+    public static final int LIGHT_SQUARE = Color.argb(175, 150, 75, 0);
+    public static final int DARK_SQUARE = Color.BLACK;
+    public static final int SIDE1 = Color.RED;
+    public static final int SIDE2 = Color.BLUE;
+    public static final int CROWN = Color.YELLOW;
+    public static final int TARGET = Color.argb(110, 0, 200, 0); // legal destinations while dragging
+
+    private static final Map<Integer, Paint> paints = new HashMap<>();
+
+    private Palette() {
+    }
+
+    // Main thread only; a new Paint is created the first time a color is used
+    public static Paint fill(int color) {
+        Paint paint = paints.get(color);
+        if (paint == null) {
+            paint = new Paint();
+            paint.setColor(color);
+            paints.put(color, paint);
+        }
+        return paint;
+    }
+}
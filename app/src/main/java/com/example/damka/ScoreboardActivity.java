@@ -1,60 +1,227 @@
 package com.example.damka;
 
+import android.content.Context;
 import android.os.Bundle;
-import android.widget.ArrayAdapter;
-import android.widget.ListView;
-import android.widget.TextView;
+import android.os.Handler;
+import android.os.Looper;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
+import com.google.firebase.database.ChildEventListener;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
 import com.google.firebase.database.ValueEventListener;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
+/**
+ * The players with the most wins. Only the top of the scoreboard is loaded: the database
+ * orders it by wins and sends the last PAGE_SIZE children, and the window grows by a page
+ * as the list is scrolled near its end. A child listener on the window keeps the loaded rows
+ * up to date one player at a time, so opening the scoreboard costs the same however many
+ * players there are.
+ *
+ * The first page comes from a {@link ReadCache}: it shows at once, and is only read again
+ * when it is older than TOP_PAGE_TTL_MILLIS. The live window over the same page is attached
+ * right after it is shown, and its rows replace the cached ones once it has loaded.
+ */
 public class ScoreboardActivity extends AppCompatActivity {
+    private static final int PAGE_SIZE = 50;
+    private static final long TOP_PAGE_TTL_MILLIS = 60 * 1000;
+    private static final String TOP_PAGE = "top";
+    private static ReadCache<List<Leaderboard.Entry>> topPageCache;
 
-    private ListView scoreboardListView;
-    private ArrayList<String> scoreboardList;
-    private ArrayAdapter<String> adapter;
+    private RecyclerView scoreboardRecyclerView;
+    private LinearLayoutManager layoutManager;
+    private ScoreboardAdapter adapter;
     private DatabaseReference scoreboardRef;
+    private final Leaderboard leaderboard = new Leaderboard();
+
+    private final Executor mainThread = new Handler(Looper.getMainLooper())::post;
+    private Query window; // the live top of the scoreboard, null until the cached page is shown
+    private boolean windowLoaded = false;
+    private boolean destroyed = false;
+    private int limit = 0; // the rows the window asks for; 0 until it is attached
+    private boolean publishPending = false;
+    private final Runnable publish = () -> {
+        publishPending = false;
+        adapter.submit(leaderboard.toList());
+    };
+
+    private final ChildEventListener windowListener = new ChildEventListener() {
+        @Override
+        public void onChildAdded(DataSnapshot snapshot, String previousChildName) {
+            update(snapshot);
+        }
+
+        @Override
+        public void onChildChanged(DataSnapshot snapshot, String previousChildName) {
+            update(snapshot);
+        }
+
+        @Override
+        public void onChildRemoved(DataSnapshot snapshot) {
+            if (leaderboard.remove(snapshot.getKey())) {
+                schedulePublish();
+            }
+        }
+
+        @Override
+        public void onChildMoved(DataSnapshot snapshot, String previousChildName) {
+            // The leaderboard orders its rows itself
+        }
+
+        @Override
+        public void onCancelled(DatabaseError databaseError) {
+            Toast.makeText(ScoreboardActivity.this, "Failed to load scores.", Toast.LENGTH_SHORT).show();
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_scoreboard);
 
-        scoreboardListView = findViewById(R.id.scoreboardListView);
-        scoreboardList = new ArrayList<>();
-        adapter = new ArrayAdapter<>(this, android.R.layout.simple_list_item_1, scoreboardList);
-        scoreboardListView.setAdapter(adapter);
+        scoreboardRecyclerView = findViewById(R.id.scoreboardRecyclerView);
+        layoutManager = new LinearLayoutManager(this);
+        adapter = new ScoreboardAdapter();
+        scoreboardRecyclerView.setLayoutManager(layoutManager);
+        scoreboardRecyclerView.setAdapter(adapter);
+        scoreboardRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                if (dy > 0 && layoutManager.findLastVisibleItemPosition() >= leaderboard.size() - PAGE_SIZE / 2) {
+                    loadMore();
+                }
+            }
+        });
 
         scoreboardRef = FirebaseDatabase.getInstance().getReference("scoreboard");
 
-        fetchScores();
-    }
-
-    private void fetchScores() {
-        scoreboardRef.addValueEventListener(new ValueEventListener() {
+        topPages(this).get(TOP_PAGE, mainThread, new ReadCache.Listener<List<Leaderboard.Entry>>() {
             @Override
-            public void onDataChange(DataSnapshot dataSnapshot) {
-                scoreboardList.clear();
-                for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
-                    String playerName = snapshot.child("playerName").getValue(String.class);
-                    long wins = snapshot.child("wins").getValue(Long.class);
-                    scoreboardList.add(playerName + " - Wins: " + wins);
+            public void onValue(List<Leaderboard.Entry> page) {
+                if (destroyed || window != null) {
+                    return; // the live window has newer rows
                 }
-                adapter.notifyDataSetChanged();
+                leaderboard.clear();
+                for (Leaderboard.Entry entry : page) {
+                    leaderboard.put(entry);
+                }
+                schedulePublish();
+                attachWindow(PAGE_SIZE);
             }
 
             @Override
-            public void onCancelled(DatabaseError databaseError) {
-                Toast.makeText(ScoreboardActivity.this, "Failed to load scores.", Toast.LENGTH_SHORT).show();
+            public void onError(Exception error) {
+                if (!destroyed && window == null) {
+                    attachWindow(PAGE_SIZE); // nothing cached: the live window is all there is
+                }
             }
         });
     }
-}
\ No newline at end of file
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        destroyed = true;
+        if (window != null) {
+            window.removeEventListener(windowListener);
+            window = null;
+            if (windowLoaded) {
+                // The next visit starts from what this one saw last
+                List<Leaderboard.Entry> rows = leaderboard.toList();
+                topPages(this).put(TOP_PAGE, new ArrayList<>(rows.subList(0, Math.min(PAGE_SIZE, rows.size()))));
+            }
+        }
+        scoreboardRecyclerView.removeCallbacks(publish);
+    }
+
+    private static synchronized ReadCache<List<Leaderboard.Entry>> topPages(Context context) {
+        if (topPageCache == null) {
+            DatabaseReference scoreboardRef = FirebaseDatabase.getInstance().getReference("scoreboard");
+            topPageCache = new ReadCache<>(new File(context.getApplicationContext().getCacheDir(), "scoreboard"),
+                    TOP_PAGE_TTL_MILLIS, Leaderboard.PAGE_CODEC,
+                    (key, callback) -> scoreboardRef.orderByChild("wins").limitToLast(PAGE_SIZE).get()
+                            .addOnCompleteListener(task -> {
+                                if (!task.isSuccessful()) {
+                                    callback.onFetched(null, task.getException());
+                                    return;
+                                }
+                                Leaderboard page = new Leaderboard();
+                                for (DataSnapshot child : task.getResult().getChildren()) {
+                                    page.put(entryOf(child));
+                                }
+                                callback.onFetched(page.toList(), null);
+                            }),
+                    Executors.newSingleThreadExecutor());
+        }
+        return topPageCache;
+    }
+
+    // Grows the window by a page, unless the last page did not fill it: then it is loading or all there is
+    private void loadMore() {
+        if (!windowLoaded || leaderboard.size() < limit) {
+            return;
+        }
+        attachWindow(limit + PAGE_SIZE);
+    }
+
+    // Listens to the top newLimit players, in place of the window so far
+    private void attachWindow(int newLimit) {
+        if (window != null) {
+            window.removeEventListener(windowListener); // the rows loaded so far stay; the new window sends them again
+        }
+        limit = newLimit;
+        window = scoreboardRef.orderByChild("wins").limitToLast(limit);
+        window.addChildEventListener(windowListener);
+        if (!windowLoaded) {
+            // Cached rows the window no longer has get no removed event; drop them once it is loaded
+            window.addListenerForSingleValueEvent(new ValueEventListener() {
+                @Override
+                public void onDataChange(DataSnapshot snapshot) {
+                    windowLoaded = true;
+                    for (Leaderboard.Entry entry : leaderboard.toList()) {
+                        if (!snapshot.hasChild(entry.key) && leaderboard.remove(entry.key)) {
+                            schedulePublish();
+                        }
+                    }
+                }
+
+                @Override
+                public void onCancelled(DatabaseError databaseError) {
+                }
+            });
+        }
+    }
+
+    private static Leaderboard.Entry entryOf(DataSnapshot snapshot) {
+        String playerName = snapshot.child("playerName").getValue(String.class);
+        Long wins = snapshot.child("wins").getValue(Long.class);
+        return new Leaderboard.Entry(snapshot.getKey(), playerName, wins != null ? wins : 0);
+    }
+
+    private void update(DataSnapshot snapshot) {
+        if (leaderboard.put(entryOf(snapshot))) {
+            schedulePublish();
+        }
+    }
+
+    // A page arrives as one child event per player; the list is diffed once per frame
+    private void schedulePublish() {
+        if (!publishPending) {
+            publishPending = true;
+            scoreboardRecyclerView.postOnAnimation(publish);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.damka;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rows of the scoreboard. Lists are diffed against the one shown, so an update rebinds
+ * only the rows whose rank, name or wins changed and moves the ones that changed place.
+ */
+public class ScoreboardAdapter extends ListAdapter<ScoreboardAdapter.Row, ScoreboardAdapter.ViewHolder> {
+
+    public static final class Row {
+        final int rank;
+        final Leaderboard.Entry entry;
+
+        Row(int rank, Leaderboard.Entry entry) {
+            this.rank = rank;
+            this.entry = entry;
+        }
+    }
+
+    private static final DiffUtil.ItemCallback<Row> DIFF = new DiffUtil.ItemCallback<Row>() {
+        @Override
+        public boolean areItemsTheSame(Row oldRow, Row newRow) {
+            return oldRow.entry.key.equals(newRow.entry.key);
+        }
+
+        @Override
+        public boolean areContentsTheSame(Row oldRow, Row newRow) {
+            return oldRow.rank == newRow.rank && oldRow.entry.equals(newRow.entry);
+        }
+    };
+
+    static final class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView rankTextView;
+        final TextView playerNameTextView;
+        final TextView winsTextView;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            rankTextView = itemView.findViewById(R.id.rankTextView);
+            playerNameTextView = itemView.findViewById(R.id.playerNameTextView);
+            winsTextView = itemView.findViewById(R.id.winsTextView);
+        }
+    }
+
+    public ScoreboardAdapter() {
+        super(DIFF);
+    }
+
+    /**
+     * Shows the rows of a leaderboard in rank order. Players with the same number of wins
+     * share a rank.
+     */
+    public void submit(List<Leaderboard.Entry> entries) {
+        List<Row> rows = new ArrayList<>(entries.size());
+        int rank = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            if (i == 0 || entries.get(i).wins != entries.get(i - 1).wins) {
+                rank = i + 1;
+            }
+            rows.add(new Row(rank, entries.get(i)));
+        }
+        submitList(rows);
+    }
+
+    @Override
+    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        View itemView = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_scoreboard, parent, false);
+        return new ViewHolder(itemView);
+    }
+
+    @Override
+    public void onBindViewHolder(ViewHolder holder, int position) {
+        Row row = getItem(position);
+        holder.rankTextView.setText(String.valueOf(row.rank));
+        holder.playerNameTextView.setText(row.entry.name);
+        holder.winsTextView.setText("Wins: " + row.entry.wins);
+    }
+}
@@ -12,8 +12,7 @@ public class Soldier extends Shape {
         super(x, y, color);
         this.radius = radius;
         this.side = side;
-        p = new Paint();
-        p.setColor(color);
+        p = Palette.fill(color);
         lastX = x;
         lastY = y;
         this.column = column;
@@ -16,15 +16,13 @@ public class Square extends Shape {
         this.height = height;
         this.column = column;
         this.row = row;
-        paint = new Paint();
-        paint.setColor(color);
+        paint = Palette.fill(color);
         soldier = null;
     }
 
+    // Draws the square only; pieces are drawn by BoardGame on top of the cached board layer
     public void draw(Canvas canvas) {
         canvas.drawRect(x, y, x + width, y + height, paint);
-        if(this.soldier!=null)
-            soldier.draw(canvas);
     }
 
     public boolean didUserTouchMe(int xu, int yu) {
@@ -0,0 +1,46 @@
+plugins {
+    id("java-library")
+    id("me.champeau.jmh") version "0.7.2"
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+dependencies {
+    testImplementation("junit:junit:4.13.2")
+}
+
+// Perft from the command line: ./gradlew :engine:perft -Pdepth=12
+tasks.register<JavaExec>("perft") {
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("com.example.damka.Perft")
+    args((project.findProperty("depth") ?: "10").toString())
+}
+
+// Endgame tablebase: ./gradlew :engine:tablebase -Ppieces=5
+tasks.register<JavaExec>("tablebase") {
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("com.example.damka.TablebaseGenerator")
+    args((project.findProperty("pieces") ?: "4").toString(), layout.buildDirectory.file("endgame.tb").get().asFile.path)
+}
+
+// Opening book from recorded games: ./gradlew :engine:openingBook -Pgames=games.txt
+tasks.register<JavaExec>("openingBook") {
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("com.example.damka.OpeningBookBuilder")
+    args((project.findProperty("games") ?: "games.txt").toString(),
+            layout.buildDirectory.file("opening.book").get().asFile.path)
+}
+
+// Headless self-play: ./gradlew :engine:selfPlay -Pgames=5000 -Pmode=random -Pdepth=6
+tasks.register<JavaExec>("selfPlay") {
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("com.example.damka.SelfPlay")
+    args((project.findProperty("games") ?: "1000").toString(),
+            Runtime.getRuntime().availableProcessors().toString(),
+            (project.findProperty("mode") ?: "engine").toString(),
+            (project.findProperty("depth") ?: "6").toString(),
+            layout.buildDirectory.file("games.txt").get().asFile.path)
+}
@@ -0,0 +1,76 @@
+package com.example.damka;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lazy SMP scaling: each invocation is a one-second search from the initial position.
+ * The "depth" counter is the sum of completed depths, so depth/s divided by the
+ * invocation rate gives the average depth reached per second for each thread count.
+ *
+ * Run with: ./gradlew :engine:jmh
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelSearchBenchmark {
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private ParallelSearch search;
+    private BitBoard start;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long depth;
+        public long nodes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            depth = 0;
+            nodes = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        search = new ParallelSearch(threads, 64);
+        start = BitBoard.initial();
+    }
+
+    @Setup(Level.Invocation)
+    public void clearTable() {
+        search.getTable().clear(); // every invocation starts cold
+    }
+
+    @TearDown
+    public void tearDown() {
+        search.shutdown();
+    }
+
+    @Benchmark
+    public SearchResult searchOneSecond(Counters counters) {
+        SearchResult result = search.search(start, 1, 1000, SearchEngine.MAX_DEPTH);
+        counters.depth += result.depth;
+        counters.nodes += result.nodes;
+        return result;
+    }
+}
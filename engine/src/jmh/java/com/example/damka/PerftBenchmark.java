@@ -0,0 +1,74 @@
+package com.example.damka;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Move generation throughput. The "nodes" counter is reported in nodes per second.
+ *
+ * Run with: ./gradlew :engine:jmh
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PerftBenchmark {
+    @Param({"6", "8", "10"})
+    public int depth;
+
+    @Param({"initial", "kings middlegame"})
+    public String position;
+
+    private Perft perft;
+    private BitBoard start;
+    private BitBoard board;
+    private int side;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long nodes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            nodes = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        perft = new Perft(depth);
+        board = new BitBoard();
+        start = BitBoard.initial();
+        side = 1;
+        for (Perft.TestPosition testPosition : Perft.TEST_POSITIONS) {
+            if (testPosition.name.equals(position)) {
+                start = testPosition.board;
+                side = testPosition.side;
+            }
+        }
+    }
+
+    @Benchmark
+    public long perft(Counters counters) {
+        board.copyFrom(start);
+        long nodes = perft.count(board, side, depth);
+        counters.nodes += nodes;
+        return nodes;
+    }
+}
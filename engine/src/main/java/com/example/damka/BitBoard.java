@@ -0,0 +1,305 @@
+package com.example.damka;
+
+/**
+ * Rules core for the board. The 32 playable squares are stored as bit masks
+ * (soldiers and kings for each side), so validation, capture and promotion are
+ * plain mask operations with no allocation.
+ *
+ * Square index = column * 4 + row / 2, where column and row have the same
+ * meaning as in the boardState array (boardState[column][row]).
+ * Side 1 moves towards column 7, side 2 moves towards column 0.
+ */
+public final class BitBoard {
+    public static final int NUM_OF_SQUARES = 8;
+    public static final int NUM_OF_PLAYABLE = 32;
+
+    // Cell values used by boardState
+    public static final int EMPTY = 0;
+    public static final int SIDE1_SOLDIER = 1;
+    public static final int SIDE2_SOLDIER = 2;
+    public static final int SIDE1_KING = 3;
+    public static final int SIDE2_KING = 4;
+
+    // Returned by validateMove when the move is not allowed (never a real capture mask)
+    public static final int INVALID_MOVE = -1;
+
+    // Squares on which each side promotes
+    public static final int SIDE1_PROMOTION = 0xF0000000; // column 7
+    public static final int SIDE2_PROMOTION = 0x0000000F; // column 0
+
+    // Diagonal directions: {columnStep, rowStep}
+    static final int[][] DIRECTIONS = {{1, -1}, {1, 1}, {-1, -1}, {-1, 1}};
+
+    // NEIGHBOR[dir * 32 + sq] = adjacent square in that direction, or -1
+    static final int[] NEIGHBOR = new int[4 * NUM_OF_PLAYABLE];
+    // BETWEEN[from * 32 + to] = squares strictly between from and to, or -1 if not on one diagonal
+    static final int[] BETWEEN = new int[NUM_OF_PLAYABLE * NUM_OF_PLAYABLE];
+    // FORWARD_STEP[side * 32 + sq] / FORWARD_JUMP[side * 32 + sq] = soldier targets
+    static final int[] FORWARD_STEP = new int[3 * NUM_OF_PLAYABLE];
+    static final int[] FORWARD_JUMP = new int[3 * NUM_OF_PLAYABLE];
+
+    static {
+        for (int sq = 0; sq < NUM_OF_PLAYABLE; sq++) {
+            int column = columnOf(sq);
+            int row = rowOf(sq);
+            for (int to = 0; to < NUM_OF_PLAYABLE; to++) {
+                BETWEEN[sq * NUM_OF_PLAYABLE + to] = INVALID_MOVE;
+            }
+            for (int dir = 0; dir < 4; dir++) {
+                int c = column + DIRECTIONS[dir][0];
+                int r = row + DIRECTIONS[dir][1];
+                NEIGHBOR[dir * NUM_OF_PLAYABLE + sq] = squareOf(c, r);
+
+                // Walk the whole diagonal to fill the between masks
+                int path = 0;
+                for (int step = 1; ; step++) {
+                    int target = squareOf(column + step * DIRECTIONS[dir][0], row + step * DIRECTIONS[dir][1]);
+                    if (target == -1) break;
+                    BETWEEN[sq * NUM_OF_PLAYABLE + target] = path;
+                    path |= 1 << target;
+                    if (step == 1) {
+                        int side = DIRECTIONS[dir][0] > 0 ? 1 : 2;
+                        FORWARD_STEP[side * NUM_OF_PLAYABLE + sq] |= 1 << target;
+                    } else if (step == 2) {
+                        int side = DIRECTIONS[dir][0] > 0 ? 1 : 2;
+                        FORWARD_JUMP[side * NUM_OF_PLAYABLE + sq] |= 1 << target;
+                    }
+                }
+            }
+        }
+    }
+
+    private int side1Soldiers, side1Kings, side2Soldiers, side2Kings;
+
+    public BitBoard() {
+    }
+
+    public BitBoard(int side1Soldiers, int side1Kings, int side2Soldiers, int side2Kings) {
+        set(side1Soldiers, side1Kings, side2Soldiers, side2Kings);
+    }
+
+    // Board at the start of a game: side 1 on columns 0-2, side 2 on columns 5-7
+    public static BitBoard initial() {
+        return new BitBoard(0x00000FFF, 0, 0xFFF00000, 0);
+    }
+
+    public static BitBoard fromArray(int[][] boardState) {
+        BitBoard board = new BitBoard();
+        board.load(boardState);
+        return board;
+    }
+
+    // Square index for (column, row), or -1 when it is off the board or not playable
+    public static int squareOf(int column, int row) {
+        if (column < 0 || column >= NUM_OF_SQUARES || row < 0 || row >= NUM_OF_SQUARES || ((column + row) & 1) == 0) {
+            return -1;
+        }
+        return column * 4 + (row >> 1);
+    }
+
+    public static int columnOf(int square) {
+        return square >> 2;
+    }
+
+    public static int rowOf(int square) {
+        return ((square & 3) << 1) + (((square >> 2) & 1) == 0 ? 1 : 0);
+    }
+
+    public static int opponent(int side) {
+        return 3 - side;
+    }
+
+    public void set(int side1Soldiers, int side1Kings, int side2Soldiers, int side2Kings) {
+        this.side1Soldiers = side1Soldiers;
+        this.side1Kings = side1Kings;
+        this.side2Soldiers = side2Soldiers;
+        this.side2Kings = side2Kings;
+    }
+
+    public void copyFrom(BitBoard other) {
+        set(other.side1Soldiers, other.side1Kings, other.side2Soldiers, other.side2Kings);
+    }
+
+    // Reads the boardState array (values 0-4) into the masks
+    public void load(int[][] boardState) {
+        set(0, 0, 0, 0);
+        for (int sq = 0; sq < NUM_OF_PLAYABLE; sq++) {
+            int bit = 1 << sq;
+            switch (boardState[columnOf(sq)][rowOf(sq)]) {
+                case SIDE1_SOLDIER:
+                    side1Soldiers |= bit;
+                    break;
+                case SIDE2_SOLDIER:
+                    side2Soldiers |= bit;
+                    break;
+                case SIDE1_KING:
+                    side1Kings |= bit;
+                    break;
+                case SIDE2_KING:
+                    side2Kings |= bit;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    public int[][] toArray() {
+        int[][] boardState = new int[NUM_OF_SQUARES][NUM_OF_SQUARES];
+        toArray(boardState);
+        return boardState;
+    }
+
+    // Writes the masks into an existing 8x8 array
+    public void toArray(int[][] boardState) {
+        for (int column = 0; column < NUM_OF_SQUARES; column++) {
+            for (int row = 0; row < NUM_OF_SQUARES; row++) {
+                boardState[column][row] = EMPTY;
+            }
+        }
+        for (int sq = 0; sq < NUM_OF_PLAYABLE; sq++) {
+            boardState[columnOf(sq)][rowOf(sq)] = get(sq);
+        }
+    }
+
+    // Cell value (0-4) of a playable square
+    public int get(int square) {
+        int bit = 1 << square;
+        if ((side1Soldiers & bit) != 0) return SIDE1_SOLDIER;
+        if ((side2Soldiers & bit) != 0) return SIDE2_SOLDIER;
+        if ((side1Kings & bit) != 0) return SIDE1_KING;
+        if ((side2Kings & bit) != 0) return SIDE2_KING;
+        return EMPTY;
+    }
+
+    public int getSide1Soldiers() {
+        return side1Soldiers;
+    }
+
+    public int getSide1Kings() {
+        return side1Kings;
+    }
+
+    public int getSide2Soldiers() {
+        return side2Soldiers;
+    }
+
+    public int getSide2Kings() {
+        return side2Kings;
+    }
+
+    public int soldiers(int side) {
+        return side == 1 ? side1Soldiers : side2Soldiers;
+    }
+
+    public int kings(int side) {
+        return side == 1 ? side1Kings : side2Kings;
+    }
+
+    public int pieces(int side) {
+        return side == 1 ? side1Soldiers | side1Kings : side2Soldiers | side2Kings;
+    }
+
+    public int occupied() {
+        return side1Soldiers | side1Kings | side2Soldiers | side2Kings;
+    }
+
+    // Side owning the piece on the square, or 0 when empty
+    public int sideAt(int square) {
+        int bit = 1 << square;
+        if (((side1Soldiers | side1Kings) & bit) != 0) return 1;
+        if (((side2Soldiers | side2Kings) & bit) != 0) return 2;
+        return 0;
+    }
+
+    public boolean isKing(int square) {
+        return ((side1Kings | side2Kings) & (1 << square)) != 0;
+    }
+
+    /**
+     * Validates a single move (a step, a soldier jump or a king slide/jump) without changing the board.
+     * This checks one hop only; mandatory capture and capture chains are handled by {@link MoveGenerator}.
+     *
+     * @param side The side making the move (1 or 2).
+     * @param from The square the piece leaves.
+     * @param to   The square the piece lands on.
+     * @return The mask of the captured square (0 for a quiet move), or INVALID_MOVE.
+     */
+    public int validateMove(int side, int from, int to) {
+        int fromBit = 1 << from;
+        int toBit = 1 << to;
+        if ((pieces(side) & fromBit) == 0 || (occupied() & toBit) != 0) {
+            return INVALID_MOVE;
+        }
+        int between = BETWEEN[from * NUM_OF_PLAYABLE + to];
+        if (between == INVALID_MOVE) {
+            return INVALID_MOVE; // not on a diagonal
+        }
+        int enemy = pieces(opponent(side));
+        if ((kings(side) & fromBit) != 0) {
+            // Flying king: the path is empty, or holds exactly one enemy piece
+            int blockers = between & occupied();
+            if (blockers == 0) return 0;
+            if ((blockers & (blockers - 1)) == 0 && (blockers & enemy) != 0) return blockers;
+            return INVALID_MOVE;
+        }
+        if ((FORWARD_STEP[side * NUM_OF_PLAYABLE + from] & toBit) != 0) {
+            return 0;
+        }
+        if ((FORWARD_JUMP[side * NUM_OF_PLAYABLE + from] & toBit) != 0 && (between & enemy) != 0) {
+            return between;
+        }
+        return INVALID_MOVE;
+    }
+
+    /**
+     * Applies a move that was already validated: moves the piece, removes the captured
+     * pieces and promotes a soldier that reached the last column.
+     */
+    public void applyMove(int from, int to, int captured) {
+        int fromBit = 1 << from;
+        int toBit = 1 << to;
+        if ((side1Soldiers & fromBit) != 0) {
+            side1Soldiers &= ~fromBit;
+            if ((toBit & SIDE1_PROMOTION) != 0) side1Kings |= toBit;
+            else side1Soldiers |= toBit;
+        } else if ((side1Kings & fromBit) != 0) {
+            side1Kings = (side1Kings & ~fromBit) | toBit;
+        } else if ((side2Soldiers & fromBit) != 0) {
+            side2Soldiers &= ~fromBit;
+            if ((toBit & SIDE2_PROMOTION) != 0) side2Kings |= toBit;
+            else side2Soldiers |= toBit;
+        } else if ((side2Kings & fromBit) != 0) {
+            side2Kings = (side2Kings & ~fromBit) | toBit;
+        }
+        side1Soldiers &= ~captured;
+        side1Kings &= ~captured;
+        side2Soldiers &= ~captured;
+        side2Kings &= ~captured;
+    }
+
+    // 0 while both sides have pieces, otherwise the winning side
+    public int winner() {
+        if ((side1Soldiers | side1Kings) == 0) return 2;
+        if ((side2Soldiers | side2Kings) == 0) return 1;
+        return 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BitBoard)) return false;
+        BitBoard other = (BitBoard) o;
+        return side1Soldiers == other.side1Soldiers && side1Kings == other.side1Kings
+                && side2Soldiers == other.side2Soldiers && side2Kings == other.side2Kings;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = side1Soldiers;
+        result = 31 * result + side1Kings;
+        result = 31 * result + side2Soldiers;
+        result = 31 * result + side2Kings;
+        return result;
+    }
+}
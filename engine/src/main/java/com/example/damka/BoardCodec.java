@@ -0,0 +1,126 @@
+package com.example.damka;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact text form of a board for the backend: 32 playable squares of 3 bits each, two
+ * squares per URL-safe base64 character, so every board is exactly LENGTH characters.
+ * Character k holds square 2k in its low 3 bits and square 2k + 1 in its high 3 bits,
+ * with the boardState cell values (0 empty, 1/2 soldiers, 3/4 kings).
+ *
+ * encode(board, char[]) and decode() allocate nothing. decodeRows() reads the legacy
+ * format, 8 lists of 8 numbers indexed like boardState.
+ */
+public final class BoardCodec {
+    public static final int LENGTH = BitBoard.NUM_OF_PLAYABLE / 2;
+
+    private static final char[] ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+    private static final byte[] VALUES = new byte[128];
+
+    static {
+        Arrays.fill(VALUES, (byte) -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            VALUES[ALPHABET[i]] = (byte) i;
+        }
+    }
+
+    private BoardCodec() {
+    }
+
+    public static String encode(BitBoard board) {
+        char[] out = new char[LENGTH];
+        encode(board, out);
+        return new String(out);
+    }
+
+    // Writes LENGTH characters into out
+    public static void encode(BitBoard board, char[] out) {
+        for (int k = 0; k < LENGTH; k++) {
+            out[k] = ALPHABET[board.get(2 * k) | board.get(2 * k + 1) << 3];
+        }
+    }
+
+    /**
+     * Loads an encoded board into board.
+     *
+     * @throws IllegalArgumentException When text is not an encoded board.
+     */
+    public static void decode(CharSequence text, BitBoard board) {
+        if (text.length() != LENGTH) {
+            throw new IllegalArgumentException("Encoded board must have " + LENGTH + " characters.");
+        }
+        int side1Soldiers = 0, side1Kings = 0, side2Soldiers = 0, side2Kings = 0;
+        for (int k = 0; k < LENGTH; k++) {
+            char c = text.charAt(k);
+            int value = c < 128 ? VALUES[c] : -1;
+            if (value < 0) {
+                throw new IllegalArgumentException("Bad character in encoded board: " + c);
+            }
+            for (int half = 0; half < 2; half++) {
+                int bit = 1 << (2 * k + half);
+                switch ((value >> (3 * half)) & 7) {
+                    case BitBoard.EMPTY: break;
+                    case BitBoard.SIDE1_SOLDIER: side1Soldiers |= bit; break;
+                    case BitBoard.SIDE2_SOLDIER: side2Soldiers |= bit; break;
+                    case BitBoard.SIDE1_KING: side1Kings |= bit; break;
+                    case BitBoard.SIDE2_KING: side2Kings |= bit; break;
+                    default: throw new IllegalArgumentException("Bad square value in encoded board: " + c);
+                }
+            }
+        }
+        board.set(side1Soldiers, side1Kings, side2Soldiers, side2Kings);
+    }
+
+    /**
+     * Loads the legacy list format (rows indexed like boardState[column][row]) into board.
+     *
+     * @throws IllegalArgumentException When the lists are not an 8 x 8 board.
+     */
+    public static void decodeRows(List<? extends List<?>> rows, BitBoard board) {
+        if (rows.size() != BitBoard.NUM_OF_SQUARES) {
+            throw new IllegalArgumentException("Board must have " + BitBoard.NUM_OF_SQUARES + " rows.");
+        }
+        int side1Soldiers = 0, side1Kings = 0, side2Soldiers = 0, side2Kings = 0;
+        for (int column = 0; column < BitBoard.NUM_OF_SQUARES; column++) {
+            List<?> row = rows.get(column);
+            if (row == null || row.size() != BitBoard.NUM_OF_SQUARES) {
+                throw new IllegalArgumentException("Board row " + column + " must have " + BitBoard.NUM_OF_SQUARES + " cells.");
+            }
+            for (int r = 0; r < BitBoard.NUM_OF_SQUARES; r++) {
+                Object cell = row.get(r);
+                int value = cell instanceof Number ? ((Number) cell).intValue() : BitBoard.EMPTY;
+                int sq = BitBoard.squareOf(column, r);
+                if (sq == -1 || value == BitBoard.EMPTY) {
+                    continue;
+                }
+                int bit = 1 << sq;
+                switch (value) {
+                    case BitBoard.SIDE1_SOLDIER: side1Soldiers |= bit; break;
+                    case BitBoard.SIDE2_SOLDIER: side2Soldiers |= bit; break;
+                    case BitBoard.SIDE1_KING: side1Kings |= bit; break;
+                    case BitBoard.SIDE2_KING: side2Kings |= bit; break;
+                    default: throw new IllegalArgumentException("Bad cell value " + value + " at " + column + "," + r);
+                }
+            }
+        }
+        board.set(side1Soldiers, side1Kings, side2Soldiers, side2Kings);
+    }
+
+    /**
+     * Loads a backend boardState value in either format.
+     *
+     * @throws IllegalArgumentException When value is neither format.
+     */
+    @SuppressWarnings("unchecked")
+    public static void decodeValue(Object value, BitBoard board) {
+        if (value instanceof CharSequence) {
+            decode((CharSequence) value, board);
+        } else if (value instanceof List) {
+            decodeRows((List<? extends List<?>>) value, board);
+        } else {
+            throw new IllegalArgumentException("Unknown board format: " + value);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.damka;
+
+/**
+ * An immutable board position, handed from the thread that decodes session updates to the
+ * UI thread. The version grows with every snapshot a session publishes, so a receiver can
+ * drop one that arrives after a newer one. seq is the number of moves on the board.
+ */
+public final class BoardSnapshot {
+    public final long version;
+    public final int seq;
+    private final int side1Soldiers, side1Kings, side2Soldiers, side2Kings;
+
+    public BoardSnapshot(long version, int seq, BitBoard board) {
+        this.version = version;
+        this.seq = seq;
+        this.side1Soldiers = board.getSide1Soldiers();
+        this.side1Kings = board.getSide1Kings();
+        this.side2Soldiers = board.getSide2Soldiers();
+        this.side2Kings = board.getSide2Kings();
+    }
+
+    public boolean isNewerThan(BoardSnapshot other) {
+        return other == null || version > other.version;
+    }
+
+    // True when board holds this position
+    public boolean samePosition(BitBoard board) {
+        return side1Soldiers == board.getSide1Soldiers() && side1Kings == board.getSide1Kings()
+                && side2Soldiers == board.getSide2Soldiers() && side2Kings == board.getSide2Kings();
+    }
+
+    public void copyTo(BitBoard board) {
+        board.set(side1Soldiers, side1Kings, side2Soldiers, side2Kings);
+    }
+
+    @Override
+    public String toString() {
+        return "BoardSnapshot{v" + version + ", seq " + seq + "}";
+    }
+}
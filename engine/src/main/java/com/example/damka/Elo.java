@@ -0,0 +1,32 @@
+package com.example.damka;
+
+/**
+ * Elo ratings for finished games. New players move faster (PROVISIONAL_K) until they have
+ * played PROVISIONAL_GAMES games, so a fresh 1200 settles near the player's strength
+ * quickly and then stays stable.
+ */
+public final class Elo {
+    public static final int INITIAL = 1200;
+    public static final int PROVISIONAL_GAMES = 20;
+    public static final int PROVISIONAL_K = 40;
+    public static final int K = 20;
+
+    private Elo() {
+    }
+
+    // The score rating is expected to take against opponent, between 0 and 1
+    public static double expected(int rating, int opponent) {
+        return 1 / (1 + Math.pow(10, (opponent - rating) / 400.0));
+    }
+
+    /**
+     * The rating after one game.
+     *
+     * @param score       1 for a win, 0.5 for a draw, 0 for a loss.
+     * @param gamesPlayed Games finished before this one.
+     */
+    public static int updated(int rating, int opponent, double score, int gamesPlayed) {
+        int k = gamesPlayed < PROVISIONAL_GAMES ? PROVISIONAL_K : K;
+        return (int) Math.round(rating + k * (score - expected(rating, opponent)));
+    }
+}
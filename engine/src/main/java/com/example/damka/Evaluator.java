@@ -0,0 +1,53 @@
+package com.example.damka;
+
+/**
+ * Static evaluation of a position, in hundredths of a soldier, from the point of view
+ * of the given side (positive = good for that side).
+ */
+public final class Evaluator {
+    public static final int SOLDIER = 100;
+    public static final int KING = 300;
+
+    // Bonus for soldiers closer to promotion, ADVANCE[side * 32 + sq]
+    private static final int[] ADVANCE = new int[3 * BitBoard.NUM_OF_PLAYABLE];
+    // Columns 2-5, rows 2-5
+    private static final int CENTER;
+    // Soldiers left on the own first column stop enemy promotions
+    private static final int SIDE1_BACK = 0x0000000F;
+    private static final int SIDE2_BACK = 0xF0000000;
+
+    static {
+        int center = 0;
+        for (int sq = 0; sq < BitBoard.NUM_OF_PLAYABLE; sq++) {
+            int column = BitBoard.columnOf(sq);
+            int row = BitBoard.rowOf(sq);
+            ADVANCE[BitBoard.NUM_OF_PLAYABLE + sq] = column * column;
+            ADVANCE[2 * BitBoard.NUM_OF_PLAYABLE + sq] = (7 - column) * (7 - column);
+            if (column >= 2 && column <= 5 && row >= 2 && row <= 5) {
+                center |= 1 << sq;
+            }
+        }
+        CENTER = center;
+    }
+
+    private Evaluator() {
+    }
+
+    public static int evaluate(BitBoard board, int side) {
+        int score = evaluateSide(board, 1) - evaluateSide(board, 2);
+        return side == 1 ? score : -score;
+    }
+
+    private static int evaluateSide(BitBoard board, int side) {
+        int soldiers = board.soldiers(side);
+        int kings = board.kings(side);
+        int score = Integer.bitCount(soldiers) * SOLDIER + Integer.bitCount(kings) * KING;
+        score += Integer.bitCount((soldiers | kings) & CENTER) * 6;
+        score += Integer.bitCount(soldiers & (side == 1 ? SIDE1_BACK : SIDE2_BACK)) * 8;
+        while (soldiers != 0) {
+            score += ADVANCE[side * BitBoard.NUM_OF_PLAYABLE + Integer.numberOfTrailingZeros(soldiers)];
+            soldiers &= soldiers - 1;
+        }
+        return score;
+    }
+}
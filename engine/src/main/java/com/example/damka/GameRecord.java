@@ -0,0 +1,193 @@
+package com.example.damka;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A played game: its moves from the initial position and the winner. Games are exchanged
+ * as one line of text, "winner move move ...", where winner is 0 (no winner), 1 or 2 and a
+ * move is "from-to" or, for a capture, "from" followed by "x" and each landing square
+ * (e.g. "9x18x27"). Squares use the {@link BitBoard} indexes.
+ *
+ * The side of each move is the side of the piece it moves, so a record does not rely on
+ * the sides taking turns.
+ */
+public final class GameRecord {
+    private int winner;
+    private int length;
+    private int[] from = new int[64], to = new int[64], captured = new int[64], pathLength = new int[64];
+    private long[] path = new long[64];
+
+    public int getWinner() {
+        return winner;
+    }
+
+    public void setWinner(int winner) {
+        this.winner = winner;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public int from(int ply) {
+        return from[ply];
+    }
+
+    public int to(int ply) {
+        return to[ply];
+    }
+
+    public int captured(int ply) {
+        return captured[ply];
+    }
+
+    // Records the move at index of a generated list
+    public void addMove(MoveList moves, int index) {
+        if (length == from.length) {
+            int capacity = length * 2;
+            from = Arrays.copyOf(from, capacity);
+            to = Arrays.copyOf(to, capacity);
+            captured = Arrays.copyOf(captured, capacity);
+            pathLength = Arrays.copyOf(pathLength, capacity);
+            path = Arrays.copyOf(path, capacity);
+        }
+        from[length] = moves.from(index);
+        to[length] = moves.to(index);
+        captured[length] = moves.captured(index);
+        path[length] = moves.packedPath(index);
+        pathLength[length] = moves.pathLength(index);
+        length++;
+    }
+
+    public void addMove(SearchResult move) {
+        MoveList single = new MoveList(1);
+        single.add(move.from, move.to, move.captured, move.path, move.pathLength);
+        addMove(single, 0);
+    }
+
+    // Plays the move of the given ply on the board
+    public void apply(BitBoard board, int ply) {
+        board.applyMove(from[ply], to[ply], captured[ply]);
+    }
+
+    /**
+     * Rebuilds a game from its successive board states, for game logs that kept whole boards
+     * rather than moves. Repeated states are skipped.
+     *
+     * @throws IllegalArgumentException When a state does not follow from the previous one by a legal move.
+     */
+    public static GameRecord fromPositions(List<BitBoard> positions) {
+        GameRecord record = new GameRecord();
+        MoveList moves = new MoveList();
+        BitBoard child = new BitBoard();
+        for (int i = 1; i < positions.size(); i++) {
+            BitBoard before = positions.get(i - 1);
+            BitBoard after = positions.get(i);
+            if (before.equals(after)) {
+                continue;
+            }
+            int found = -1;
+            for (int side = 1; side <= 2 && found == -1; side++) {
+                int n = MoveGenerator.generate(before, side, moves);
+                for (int j = 0; j < n && found == -1; j++) {
+                    child.copyFrom(before);
+                    moves.apply(child, j);
+                    if (child.equals(after)) {
+                        found = j;
+                    }
+                }
+            }
+            if (found == -1) {
+                throw new IllegalArgumentException("No legal move leads to board state " + i + ".");
+            }
+            record.addMove(moves, found);
+        }
+        BitBoard last = positions.isEmpty() ? BitBoard.initial() : positions.get(positions.size() - 1);
+        record.setWinner(last.winner());
+        return record;
+    }
+
+    /**
+     * @throws IllegalArgumentException When the line is malformed or a move is not legal.
+     */
+    public static GameRecord parse(String line) {
+        String[] tokens = line.trim().split("\\s+");
+        GameRecord record = new GameRecord();
+        try {
+            record.setWinner(Integer.parseInt(tokens[0]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad winner in game record: " + tokens[0], e);
+        }
+        BitBoard board = BitBoard.initial();
+        MoveList moves = new MoveList();
+        for (int ply = 1; ply < tokens.length; ply++) {
+            String token = tokens[ply];
+            String[] squares = token.split("[-x]");
+            int moveFrom = parseSquare(squares[0]);
+            int side = board.sideAt(moveFrom);
+            int found = -1;
+            if (side != 0) {
+                int n = MoveGenerator.generate(board, side, moves);
+                for (int i = 0; i < n && found == -1; i++) {
+                    if (matches(moves, i, moveFrom, squares, token.indexOf('x') >= 0)) {
+                        found = i;
+                    }
+                }
+            }
+            if (found == -1) {
+                throw new IllegalArgumentException("Illegal move " + token + " at ply " + ply + ".");
+            }
+            record.addMove(moves, found);
+            moves.apply(board, found);
+        }
+        return record;
+    }
+
+    private static boolean matches(MoveList moves, int index, int moveFrom, String[] squares, boolean capture) {
+        if (moves.from(index) != moveFrom || moves.isCapture(index) != capture) {
+            return false;
+        }
+        if (!capture) {
+            return moves.to(index) == parseSquare(squares[1]);
+        }
+        if (moves.pathLength(index) != squares.length - 1) {
+            return false;
+        }
+        for (int step = 0; step < moves.pathLength(index); step++) {
+            if (moves.pathSquare(index, step) != parseSquare(squares[step + 1])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int parseSquare(String text) {
+        int square;
+        try {
+            square = Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad square in game record: " + text, e);
+        }
+        if (square < 0 || square >= BitBoard.NUM_OF_PLAYABLE) {
+            throw new IllegalArgumentException("Square out of range in game record: " + text);
+        }
+        return square;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder line = new StringBuilder().append(winner);
+        for (int ply = 0; ply < length; ply++) {
+            line.append(' ').append(from[ply]);
+            if (captured[ply] == 0) {
+                line.append('-').append(to[ply]);
+            } else {
+                for (int step = 0; step < pathLength[ply]; step++) {
+                    line.append('x').append((int) (path[ply] >>> (5 * step)) & 31);
+                }
+            }
+        }
+        return line.toString();
+    }
+}
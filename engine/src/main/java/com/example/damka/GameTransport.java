@@ -0,0 +1,58 @@
+package com.example.damka;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Where game sessions are stored and how their changes reach the players: the backend
+ * behind a session manager. Writes are conditional like the backend rules: a commit fails
+ * if any of its move slots is already taken. Callbacks may arrive on any thread; listener
+ * events arrive on the executor given to subscribe(). With several writers, moves and
+ * states may arrive out of order, so receivers order them by seq and version.
+ */
+public interface GameTransport {
+
+    // error is null on success
+    interface Callback {
+        void onComplete(Exception error);
+    }
+
+    interface StateCallback {
+        // state is null when the game does not exist or could not be read
+        void onState(SessionState state, Exception error);
+    }
+
+    interface Listener {
+        // The whole session; older versions than one already seen can be dropped
+        void onSession(SessionState state);
+
+        void onMove(int seq, long packed);
+
+        void onConnected(boolean connected);
+    }
+
+    interface Subscription {
+        void cancel();
+    }
+
+    // Creates or replaces a game, keeping a player 2 that already took the seat; initial holds no moves
+    void create(String gameId, SessionState initial, Callback callback);
+
+    // Takes the player 2 seat if it is free
+    void join(String gameId, String playerId, Callback callback);
+
+    /**
+     * Appends consecutive moves, sets moveSeq to the last one and passes the turn, all or
+     * nothing. Fails when a move's slot is taken, the first move does not follow moveSeq,
+     * or a move is out of turn.
+     */
+    void commitMoves(String gameId, List<MoveRecord> moves, String nextTurn, Callback callback);
+
+    // Stores the board after move seq and drops the moves of the checkpoint interval before it
+    void writeCheckpoint(String gameId, int seq, String board, Callback callback);
+
+    // Reads the session once; callback runs on executor
+    void load(String gameId, Executor executor, StateCallback callback);
+
+    Subscription subscribe(String gameId, Executor executor, Listener listener);
+}
@@ -0,0 +1,128 @@
+package com.example.damka;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * The loaded part of the leaderboard, kept in rank order as single rows are added,
+ * changed or removed, so a change costs a log-time update instead of a full rebuild.
+ * Rows are ordered by wins, most first; ties are in the reverse of the backend's key
+ * order, so the rows a limitToLast window holds are always the top of this list.
+ *
+ * Not thread safe.
+ */
+public final class Leaderboard {
+    private static final Comparator<Entry> RANK_ORDER = (a, b) -> {
+        int byWins = Long.compare(b.wins, a.wins);
+        return byWins != 0 ? byWins : b.key.compareTo(a.key);
+    };
+
+    // A page of rows in rank order, for a ReadCache
+    public static final ReadCache.Codec<List<Entry>> PAGE_CODEC = new ReadCache.Codec<List<Entry>>() {
+        @Override
+        public void write(List<Entry> page, DataOutputStream out) throws IOException {
+            out.writeInt(page.size());
+            for (Entry entry : page) {
+                out.writeUTF(entry.key);
+                out.writeBoolean(entry.name != null);
+                if (entry.name != null) {
+                    out.writeUTF(entry.name);
+                }
+                out.writeLong(entry.wins);
+            }
+        }
+
+        @Override
+        public List<Entry> read(DataInputStream in) throws IOException {
+            int size = in.readInt();
+            if (size < 0) {
+                throw new IOException("Bad page size " + size);
+            }
+            List<Entry> page = new ArrayList<>(Math.min(size, 1024));
+            for (int i = 0; i < size; i++) {
+                String key = in.readUTF();
+                String name = in.readBoolean() ? in.readUTF() : null;
+                page.add(new Entry(key, name, in.readLong()));
+            }
+            return Collections.unmodifiableList(page);
+        }
+    };
+
+    private final TreeSet<Entry> ordered = new TreeSet<>(RANK_ORDER);
+    private final HashMap<String, Entry> byKey = new HashMap<>();
+
+    public static final class Entry {
+        public final String key;
+        public final String name;
+        public final long wins;
+
+        public Entry(String key, String name, long wins) {
+            this.key = key;
+            this.name = name;
+            this.wins = wins;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Entry)) return false;
+            Entry other = (Entry) o;
+            return wins == other.wins && key.equals(other.key) && Objects.equals(name, other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(key, name, wins);
+        }
+
+        @Override
+        public String toString() {
+            return name + " (" + key + "): " + wins;
+        }
+    }
+
+    // Adds a row or replaces the row with its key; false when nothing changed
+    public boolean put(Entry entry) {
+        Entry previous = byKey.put(entry.key, entry);
+        if (entry.equals(previous)) {
+            return false;
+        }
+        if (previous != null) {
+            ordered.remove(previous);
+        }
+        ordered.add(entry);
+        return true;
+    }
+
+    // false when there was no such row
+    public boolean remove(String key) {
+        Entry previous = byKey.remove(key);
+        if (previous == null) {
+            return false;
+        }
+        ordered.remove(previous);
+        return true;
+    }
+
+    public void clear() {
+        ordered.clear();
+        byKey.clear();
+    }
+
+    public int size() {
+        return byKey.size();
+    }
+
+    // The rows in rank order; a copy, safe to hand to another thread
+    public List<Entry> toList() {
+        return Collections.unmodifiableList(new ArrayList<>(ordered));
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.damka;
+
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An in-process {@link GameTransport}: sessions live in memory and every subscriber of a
+ * game gets its changes at once. Used for games on one device (against the computer, or
+ * pass-and-play) and for tests and benchmarks without a backend.
+ *
+ * Lock-free: each game is an AtomicReference to an immutable {@link SessionState}, replaced
+ * by compare-and-set, so any number of threads can commit to it. Callbacks run on the
+ * calling thread, after the change has been handed to the subscribers' executors.
+ */
+public final class LoopbackTransport implements GameTransport {
+    private final ConcurrentHashMap<String, Game> games = new ConcurrentHashMap<>();
+
+    private static final class Game {
+        final AtomicReference<SessionState> state = new AtomicReference<>();
+        final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    }
+
+    private static final class Subscriber implements Subscription {
+        final Game game;
+        final Executor executor;
+        final Listener listener;
+        volatile boolean cancelled;
+
+        Subscriber(Game game, Executor executor, Listener listener) {
+            this.game = game;
+            this.executor = executor;
+            this.listener = listener;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            game.subscribers.remove(this);
+        }
+    }
+
+    private static final class Rejected extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        Rejected(String message) {
+            super(message);
+        }
+    }
+
+    private Game game(String gameId) {
+        return games.computeIfAbsent(gameId, id -> new Game());
+    }
+
+    @Override
+    public void create(String gameId, SessionState initial, Callback callback) {
+        Game game = game(gameId);
+        SessionState previous, next;
+        do {
+            previous = game.state.get();
+            next = initial.withVersion(previous == null ? 1 : previous.version + 1);
+            if (previous != null && previous.player2Id != null && next.player2Id == null) {
+                next = new SessionState(next.version, next.player1Id, previous.player2Id, next.currentTurn,
+                        next.checkpointSeq, next.moveSeq, next.board, next.moves);
+            }
+        } while (!game.state.compareAndSet(previous, next));
+        publish(game, next, null);
+        callback.onComplete(null);
+    }
+
+    @Override
+    public void join(String gameId, String playerId, Callback callback) {
+        update(gameId, null, callback, state -> {
+            if (state.player2Id != null) {
+                throw new Rejected("Player 2 already joined.");
+            }
+            return new SessionState(state.version + 1, state.player1Id, playerId, state.currentTurn,
+                    state.checkpointSeq, state.moveSeq, state.board, state.moves);
+        });
+    }
+
+    @Override
+    public void commitMoves(String gameId, List<MoveRecord> moves, String nextTurn, Callback callback) {
+        update(gameId, moves, callback, state -> {
+            TreeMap<Integer, Long> stored = new TreeMap<>(state.moves);
+            int last = state.moveSeq;
+            for (MoveRecord record : moves) {
+                if (record.seq <= last || stored.containsKey(record.seq)) {
+                    throw new Rejected("Sequence number " + record.seq + " is taken.");
+                }
+                if (record.seq != last + 1) {
+                    throw new Rejected("Move " + record.seq + " does not follow move " + last + ".");
+                }
+                if (record.side != MoveRecord.sideToMove(record.seq)) {
+                    throw new Rejected("Move " + record.seq + " is not side " + record.side + "'s turn.");
+                }
+                stored.put(record.seq, record.pack());
+                last = record.seq;
+            }
+            return new SessionState(state.version + 1, state.player1Id, state.player2Id, nextTurn,
+                    state.checkpointSeq, last, state.board, stored);
+        });
+    }
+
+    @Override
+    public void writeCheckpoint(String gameId, int seq, String board, Callback callback) {
+        update(gameId, null, callback, state -> {
+            TreeMap<Integer, Long> stored = new TreeMap<>(state.moves);
+            stored.headMap(seq - SessionBoard.CHECKPOINT_INTERVAL, true).clear();
+            return new SessionState(state.version + 1, state.player1Id, state.player2Id, state.currentTurn,
+                    seq, state.moveSeq, board, stored);
+        });
+    }
+
+    @Override
+    public void load(String gameId, Executor executor, StateCallback callback) {
+        Game game = games.get(gameId);
+        SessionState state = game == null ? null : game.state.get();
+        executor.execute(() -> callback.onState(state, state == null ? new IllegalStateException("No game " + gameId) : null));
+    }
+
+    @Override
+    public Subscription subscribe(String gameId, Executor executor, Listener listener) {
+        Game game = game(gameId);
+        Subscriber subscriber = new Subscriber(game, executor, listener);
+        game.subscribers.add(subscriber);
+        SessionState state = game.state.get();
+        executor.execute(() -> {
+            if (subscriber.cancelled) {
+                return;
+            }
+            listener.onConnected(true);
+            if (state != null) {
+                listener.onSession(state);
+                state.moves.forEach(listener::onMove);
+            }
+        });
+        return subscriber;
+    }
+
+    // How a write changes a state; throws Rejected to fail the write
+    private interface Update {
+        SessionState apply(SessionState state) throws Rejected;
+    }
+
+    private void update(String gameId, List<MoveRecord> moves, Callback callback, Update change) {
+        Game game = games.get(gameId);
+        if (game == null) {
+            callback.onComplete(new IllegalStateException("No game " + gameId));
+            return;
+        }
+        SessionState previous, next;
+        do {
+            previous = game.state.get();
+            if (previous == null) {
+                callback.onComplete(new IllegalStateException("No game " + gameId));
+                return;
+            }
+            try {
+                next = change.apply(previous);
+            } catch (Rejected e) {
+                callback.onComplete(e);
+                return;
+            }
+        } while (!game.state.compareAndSet(previous, next));
+        publish(game, next, moves);
+        callback.onComplete(null);
+    }
+
+    private static void publish(Game game, SessionState state, List<MoveRecord> moves) {
+        for (Subscriber subscriber : game.subscribers) {
+            subscriber.executor.execute(() -> {
+                if (subscriber.cancelled) {
+                    return;
+                }
+                if (moves != null) {
+                    for (MoveRecord record : moves) {
+                        subscriber.listener.onMove(record.seq, record.pack());
+                    }
+                }
+                subscriber.listener.onSession(state);
+            });
+        }
+    }
+}
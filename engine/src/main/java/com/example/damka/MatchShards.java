@@ -0,0 +1,62 @@
+package com.example.damka;
+
+import java.util.Random;
+
+/**
+ * How the matchmaking queue is split. Waiting games are indexed by the host's rating band
+ * ({@link Elo} rating / BAND_WIDTH), and each band is spread over SHARDS shards. A joining
+ * player searches its own band first and widens one band either side at a time, waiting
+ * WIDEN_MILLIS before each step, up to MAX_SPREAD bands away. Each step probes every
+ * shard of the bands at that spread (SHARDS reads for the own band, 2 * SHARDS after),
+ * one read of up to CANDIDATES entries at a time, in a random order, until a claim
+ * succeeds. A random candidate is claimed from each shard, so joiners arriving together
+ * mostly try different entries instead of racing for the oldest one. Entries carry an
+ * expiry time; expired ones are never claimed and are swept by the players who meet them.
+ */
+public final class MatchShards {
+    public static final int SHARDS = 8; // per band
+    public static final int BAND_WIDTH = 100;
+    public static final int MAX_SPREAD = 4;
+    public static final long WIDEN_MILLIS = 3000;
+    public static final long TTL_MILLIS = 5 * 60_000; // how long a host waits before its entry lapses
+    public static final int CANDIDATES = 8; // entries read per shard probe
+
+    private MatchShards() {
+    }
+
+    public static String shardId(int band, int shard) {
+        return "band-" + band + "-shard-" + shard;
+    }
+
+    public static int bandOf(int rating) {
+        return Math.floorDiv(rating, BAND_WIDTH);
+    }
+
+    // The bands exactly spread bands away from band: band itself for 0, else one either side
+    public static int[] bandsAt(int band, int spread) {
+        return spread == 0 ? new int[] {band} : new int[] {band - spread, band + spread};
+    }
+
+    public static int randomShard(Random random) {
+        return random.nextInt(SHARDS);
+    }
+
+    // Every shard once, in a random order (Fisher-Yates)
+    public static int[] probeOrder(Random random) {
+        int[] order = new int[SHARDS];
+        for (int i = 0; i < SHARDS; i++) {
+            int j = random.nextInt(i + 1);
+            order[i] = order[j];
+            order[j] = i;
+        }
+        return order;
+    }
+
+    public static long expiresAt(long nowMillis) {
+        return nowMillis + TTL_MILLIS;
+    }
+
+    public static boolean isExpired(long expiresAtMillis, long nowMillis) {
+        return expiresAtMillis <= nowMillis;
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.damka;
+
+/**
+ * Generates every legal move for the side to move.
+ *
+ * Rules: soldiers step and capture forward only, kings fly along diagonals and may land
+ * on any empty square beyond the captured piece. Capturing is mandatory and a capture
+ * continues until no further jump is available, so every capture in the list is a
+ * complete path. Captured pieces stay on the board until the move ends and cannot be
+ * jumped twice. A soldier is promoted only when the move ends on the last column.
+ */
+public final class MoveGenerator {
+    private static final int N = BitBoard.NUM_OF_PLAYABLE;
+
+    private MoveGenerator() {
+    }
+
+    /**
+     * Fills the list with all legal moves of the side. Does not allocate unless the
+     * list has to grow.
+     *
+     * @return The number of moves generated.
+     */
+    public static int generate(BitBoard board, int side, MoveList list) {
+        list.clear();
+        generateCaptures(board, side, list);
+        if (list.isEmpty()) {
+            generateQuietMoves(board, side, list);
+        }
+        return list.size();
+    }
+
+    // True when the side has at least one legal move
+    public static boolean hasMoves(BitBoard board, int side) {
+        int empty = ~board.occupied();
+        int enemy = board.pieces(BitBoard.opponent(side));
+        int soldiers = board.soldiers(side);
+        while (soldiers != 0) {
+            int sq = Integer.numberOfTrailingZeros(soldiers);
+            soldiers &= soldiers - 1;
+            if ((BitBoard.FORWARD_STEP[side * N + sq] & empty) != 0) return true;
+            if (canSoldierJump(side, sq, enemy, empty)) return true;
+        }
+        int kings = board.kings(side);
+        while (kings != 0) {
+            int sq = Integer.numberOfTrailingZeros(kings);
+            kings &= kings - 1;
+            for (int dir = 0; dir < 4; dir++) {
+                int next = BitBoard.NEIGHBOR[dir * N + sq];
+                if (next == -1) continue;
+                if ((empty & (1 << next)) != 0) return true;
+                // Adjacent blocker: still a move if it is an enemy with an empty square behind it
+                int behind = BitBoard.NEIGHBOR[dir * N + next];
+                if ((enemy & (1 << next)) != 0 && behind != -1 && (empty & (1 << behind)) != 0) return true;
+            }
+        }
+        return false;
+    }
+
+    // The side that has won with sideToMove to play: a side without pieces or moves loses; 0 while the game goes on
+    public static int winner(BitBoard board, int sideToMove) {
+        int winner = board.winner();
+        if (winner == 0 && !hasMoves(board, sideToMove)) {
+            winner = BitBoard.opponent(sideToMove);
+        }
+        return winner;
+    }
+
+    // True when the side has a capture available, which makes capturing mandatory
+    public static boolean hasCapture(BitBoard board, int side) {
+        int empty = ~board.occupied();
+        int enemy = board.pieces(BitBoard.opponent(side));
+        int soldiers = board.soldiers(side);
+        while (soldiers != 0) {
+            int sq = Integer.numberOfTrailingZeros(soldiers);
+            soldiers &= soldiers - 1;
+            if (canSoldierJump(side, sq, enemy, empty)) return true;
+        }
+        int kings = board.kings(side);
+        while (kings != 0) {
+            int sq = Integer.numberOfTrailingZeros(kings);
+            kings &= kings - 1;
+            for (int dir = 0; dir < 4; dir++) {
+                int s = BitBoard.NEIGHBOR[dir * N + sq];
+                while (s != -1 && (empty & (1 << s)) != 0) {
+                    s = BitBoard.NEIGHBOR[dir * N + s];
+                }
+                if (s == -1 || (enemy & (1 << s)) == 0) continue;
+                int land = BitBoard.NEIGHBOR[dir * N + s];
+                if (land != -1 && (empty & (1 << land)) != 0) return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean canSoldierJump(int side, int sq, int enemy, int empty) {
+        int firstDir = side == 1 ? 0 : 2;
+        for (int dir = firstDir; dir < firstDir + 2; dir++) {
+            int over = BitBoard.NEIGHBOR[dir * N + sq];
+            if (over == -1 || (enemy & (1 << over)) == 0) continue;
+            int land = BitBoard.NEIGHBOR[dir * N + over];
+            if (land != -1 && (empty & (1 << land)) != 0) return true;
+        }
+        return false;
+    }
+
+    private static void generateQuietMoves(BitBoard board, int side, MoveList list) {
+        int empty = ~board.occupied();
+        int soldiers = board.soldiers(side);
+        while (soldiers != 0) {
+            int sq = Integer.numberOfTrailingZeros(soldiers);
+            soldiers &= soldiers - 1;
+            int targets = BitBoard.FORWARD_STEP[side * N + sq] & empty;
+            while (targets != 0) {
+                int to = Integer.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                list.add(sq, to, 0, to, 1);
+            }
+        }
+        int kings = board.kings(side);
+        while (kings != 0) {
+            int sq = Integer.numberOfTrailingZeros(kings);
+            kings &= kings - 1;
+            for (int dir = 0; dir < 4; dir++) {
+                int to = BitBoard.NEIGHBOR[dir * N + sq];
+                while (to != -1 && (empty & (1 << to)) != 0) {
+                    list.add(sq, to, 0, to, 1);
+                    to = BitBoard.NEIGHBOR[dir * N + to];
+                }
+            }
+        }
+    }
+
+    private static void generateCaptures(BitBoard board, int side, MoveList list) {
+        int enemy = board.pieces(BitBoard.opponent(side));
+        int soldiers = board.soldiers(side);
+        while (soldiers != 0) {
+            int sq = Integer.numberOfTrailingZeros(soldiers);
+            soldiers &= soldiers - 1;
+            // The moving piece leaves its square, so it does not block its own path
+            int empty = ~board.occupied() | (1 << sq);
+            soldierCaptures(side, sq, sq, 0, 0L, 0, enemy, empty, list);
+        }
+        int kings = board.kings(side);
+        while (kings != 0) {
+            int sq = Integer.numberOfTrailingZeros(kings);
+            kings &= kings - 1;
+            int empty = ~board.occupied() | (1 << sq);
+            kingCaptures(sq, sq, 0, 0L, 0, enemy, empty, list);
+        }
+    }
+
+    private static void soldierCaptures(int side, int origin, int sq, int captured, long path, int depth,
+                                        int enemy, int empty, MoveList list) {
+        boolean extended = false;
+        int firstDir = side == 1 ? 0 : 2;
+        for (int dir = firstDir; dir < firstDir + 2; dir++) {
+            int over = BitBoard.NEIGHBOR[dir * N + sq];
+            if (over == -1 || (enemy & ~captured & (1 << over)) == 0) continue;
+            int land = BitBoard.NEIGHBOR[dir * N + over];
+            if (land == -1 || (empty & (1 << land)) == 0) continue;
+            extended = true;
+            soldierCaptures(side, origin, land, captured | (1 << over), path | ((long) land << (5 * depth)),
+                    depth + 1, enemy, empty, list);
+        }
+        if (!extended && depth > 0) {
+            list.addCapture(origin, sq, captured, path, depth);
+        }
+    }
+
+    private static void kingCaptures(int origin, int sq, int captured, long path, int depth,
+                                     int enemy, int empty, MoveList list) {
+        boolean extended = false;
+        for (int dir = 0; dir < 4; dir++) {
+            int s = BitBoard.NEIGHBOR[dir * N + sq];
+            while (s != -1 && (empty & (1 << s)) != 0) {
+                s = BitBoard.NEIGHBOR[dir * N + s];
+            }
+            // The first piece on the ray must be an enemy that was not captured yet
+            if (s == -1 || (enemy & ~captured & (1 << s)) == 0) continue;
+            int land = BitBoard.NEIGHBOR[dir * N + s];
+            while (land != -1 && (empty & (1 << land)) != 0) {
+                extended = true;
+                kingCaptures(origin, land, captured | (1 << s), path | ((long) land << (5 * depth)),
+                        depth + 1, enemy, empty, list);
+                land = BitBoard.NEIGHBOR[dir * N + land];
+            }
+        }
+        if (!extended && depth > 0) {
+            list.addCapture(origin, sq, captured, path, depth);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.damka;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Append-only file of local moves that the backend has not acknowledged yet, so they
+ * survive a lost connection or a killed process. append() only buffers; sync() writes the
+ * buffered entries and forces them to disk once for the whole batch. trim() marks a prefix
+ * as done (acknowledged or refused), and the file is rewritten with just the pending
+ * moves once enough dead entries pile up. A journal with nothing pending is deleted
+ * rather than closed when its session ends.
+ *
+ * File format (big-endian): ENTRY_SIZE-byte entries of int seq, long value. value is a
+ * {@link MoveRecord#pack()}ed move, or TRIM for "every move up to seq is done". A torn
+ * entry at the end, from a kill during a write, is dropped on open.
+ *
+ * Not thread safe.
+ */
+public final class MoveJournal implements Closeable {
+    static final int ENTRY_SIZE = 12;
+    private static final long TRIM = -1;
+    private static final int COMPACT_ENTRIES = 64; // dead entries before the file is rewritten
+
+    private final File file;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(ENTRY_SIZE * 32);
+    private final ArrayDeque<MoveRecord> pending = new ArrayDeque<>();
+    private int deadEntries;
+
+    private MoveJournal(File file) throws IOException {
+        this.file = file;
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+        load();
+    }
+
+    // Opens the journal, creating an empty one if the file does not exist
+    public static MoveJournal open(File file) throws IOException {
+        return new MoveJournal(file);
+    }
+
+    // The moves not trimmed yet, oldest first
+    public List<MoveRecord> pending() {
+        return new ArrayList<>(pending);
+    }
+
+    public boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    // Buffers a move; it is only durable after the next sync()
+    public void append(MoveRecord record) throws IOException {
+        pending.addLast(record);
+        put(record.seq, record.pack());
+    }
+
+    /**
+     * Drops every pending move up to and including seq, whether the backend acknowledged
+     * or refused it. Takes effect on disk with the next sync().
+     */
+    public void trim(int seq) throws IOException {
+        int dropped = 0;
+        for (Iterator<MoveRecord> it = pending.iterator(); it.hasNext() && it.next().seq <= seq; ) {
+            it.remove();
+            dropped++;
+        }
+        if (dropped == 0) {
+            return;
+        }
+        deadEntries += dropped;
+        if (deadEntries >= COMPACT_ENTRIES) {
+            compact();
+        } else {
+            put(seq, TRIM);
+            deadEntries++;
+        }
+    }
+
+    // Writes the buffered entries and forces them to disk, once for the whole batch
+    public void sync() throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+        writeBuffer();
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            raf.close();
+        }
+    }
+
+    // Closes the journal and deletes its file; for a session ending with nothing pending
+    public void delete() throws IOException {
+        raf.close();
+        if (!file.delete() && file.exists()) {
+            throw new IOException("Failed to delete " + file);
+        }
+    }
+
+    private void put(int seq, long value) throws IOException {
+        if (buffer.remaining() < ENTRY_SIZE) {
+            writeBuffer();
+        }
+        buffer.putInt(seq).putLong(value);
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void load() throws IOException {
+        long whole = channel.size() / ENTRY_SIZE * ENTRY_SIZE;
+        if (whole != channel.size()) {
+            channel.truncate(whole); // torn last entry
+        }
+        ByteBuffer entries = ByteBuffer.allocate((int) whole);
+        channel.position(0);
+        while (entries.hasRemaining()) {
+            if (channel.read(entries) < 0) {
+                break;
+            }
+        }
+        entries.flip();
+        while (entries.hasRemaining()) {
+            int seq = entries.getInt();
+            long value = entries.getLong();
+            if (value == TRIM) {
+                while (!pending.isEmpty() && pending.peekFirst().seq <= seq) {
+                    pending.removeFirst();
+                }
+            } else {
+                pending.addLast(MoveRecord.unpack(seq, value));
+            }
+        }
+        deadEntries = (int) (whole / ENTRY_SIZE) - pending.size();
+        channel.position(whole);
+    }
+
+    // Rewrites the file with only the pending moves, then swaps it in
+    private void compact() throws IOException {
+        buffer.clear(); // everything buffered is either pending or dead
+        File temp = new File(file.getPath() + ".tmp");
+        try (RandomAccessFile out = new RandomAccessFile(temp, "rw"); FileChannel outChannel = out.getChannel()) {
+            outChannel.truncate(0);
+            ByteBuffer entries = ByteBuffer.allocate(pending.size() * ENTRY_SIZE);
+            for (MoveRecord record : pending) {
+                entries.putInt(record.seq).putLong(record.pack());
+            }
+            entries.flip();
+            while (entries.hasRemaining()) {
+                outChannel.write(entries);
+            }
+            outChannel.force(false);
+        }
+        raf.close();
+        boolean replaced = temp.renameTo(file);
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+        channel.position(channel.size());
+        if (!replaced) {
+            throw new IOException("Failed to replace " + file);
+        }
+        deadEntries = 0;
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.damka;
+
+import java.util.Arrays;
+
+/**
+ * Reusable, preallocated buffer of moves filled by {@link MoveGenerator}.
+ * Each move keeps its origin, destination, the mask of captured squares and the
+ * full path of landing squares (5 bits per square, packed into a long).
+ */
+public final class MoveList {
+    public static final int DEFAULT_CAPACITY = 128;
+    public static final int MAX_PATH = 12; // 12 landings * 5 bits fit in a long
+
+    private int size;
+    private int[] from, to, captured, pathLength;
+    private long[] path;
+
+    public MoveList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public MoveList(int capacity) {
+        from = new int[capacity];
+        to = new int[capacity];
+        captured = new int[capacity];
+        pathLength = new int[capacity];
+        path = new long[capacity];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int from(int index) {
+        return from[index];
+    }
+
+    public int to(int index) {
+        return to[index];
+    }
+
+    public int captured(int index) {
+        return captured[index];
+    }
+
+    public boolean isCapture(int index) {
+        return captured[index] != 0;
+    }
+
+    // Number of landing squares (1 for a quiet move or a single jump)
+    public int pathLength(int index) {
+        return pathLength[index];
+    }
+
+    // The step-th landing square of the move, 0 <= step < pathLength(index)
+    public int pathSquare(int index, int step) {
+        return (int) (path[index] >>> (5 * step)) & 31;
+    }
+
+    public long packedPath(int index) {
+        return path[index];
+    }
+
+    void add(int moveFrom, int moveTo, int moveCaptured, long movePath, int movePathLength) {
+        if (size == from.length) {
+            grow();
+        }
+        from[size] = moveFrom;
+        to[size] = moveTo;
+        captured[size] = moveCaptured;
+        path[size] = movePath;
+        pathLength[size] = movePathLength;
+        size++;
+    }
+
+    // Adds a capture unless the same from/to/captured set is already listed (a king can reach it in another order)
+    void addCapture(int moveFrom, int moveTo, int moveCaptured, long movePath, int movePathLength) {
+        for (int i = 0; i < size; i++) {
+            if (from[i] == moveFrom && to[i] == moveTo && captured[i] == moveCaptured) {
+                return;
+            }
+        }
+        add(moveFrom, moveTo, moveCaptured, movePath, movePathLength);
+    }
+
+    /**
+     * Finds the move from one square to another. When several captures share the same
+     * origin and destination, the one taking the most pieces is returned.
+     *
+     * @return The index of the move, or -1 when there is none.
+     */
+    public int find(int moveFrom, int moveTo) {
+        int best = -1;
+        for (int i = 0; i < size; i++) {
+            if (from[i] == moveFrom && to[i] == moveTo
+                    && (best == -1 || Integer.bitCount(captured[i]) > Integer.bitCount(captured[best]))) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    // Applies the move at index to the board
+    public void apply(BitBoard board, int index) {
+        board.applyMove(from[index], to[index], captured[index]);
+    }
+
+    public void swap(int i, int j) {
+        int t = from[i]; from[i] = from[j]; from[j] = t;
+        t = to[i]; to[i] = to[j]; to[j] = t;
+        t = captured[i]; captured[i] = captured[j]; captured[j] = t;
+        t = pathLength[i]; pathLength[i] = pathLength[j]; pathLength[j] = t;
+        long p = path[i]; path[i] = path[j]; path[j] = p;
+    }
+
+    private void grow() {
+        int capacity = from.length * 2;
+        from = Arrays.copyOf(from, capacity);
+        to = Arrays.copyOf(to, capacity);
+        captured = Arrays.copyOf(captured, capacity);
+        pathLength = Arrays.copyOf(pathLength, capacity);
+        path = Arrays.copyOf(path, capacity);
+    }
+}
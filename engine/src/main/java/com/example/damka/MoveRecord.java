@@ -0,0 +1,88 @@
+package com.example.damka;
+
+/**
+ * One move of a game session, as exchanged between clients. A record packs into a single
+ * long of 45 bits (exact in a double, so it survives JSON backends as a plain number):
+ * from (5 bits), to (5), side (2), promoted (1), captured squares (32).
+ * The sequence number is not packed; it is the key the record is stored under.
+ */
+public final class MoveRecord {
+    public final int seq;
+    public final int side;
+    public final int from, to;
+    public final int captured;
+    public final boolean promoted;
+
+    public MoveRecord(int seq, int side, int from, int to, int captured, boolean promoted) {
+        this.seq = seq;
+        this.side = side;
+        this.from = from;
+        this.to = to;
+        this.captured = captured;
+        this.promoted = promoted;
+    }
+
+    // Side 1 plays the odd-numbered moves, side 2 the even ones
+    public static int sideToMove(int seq) {
+        return (seq & 1) != 0 ? 1 : 2;
+    }
+
+    // The record of a move about to be played on board
+    public static MoveRecord of(BitBoard board, int seq, int from, int to, int captured) {
+        int side = board.sideAt(from);
+        boolean promoted = !board.isKing(from)
+                && ((1 << to) & (side == 1 ? BitBoard.SIDE1_PROMOTION : BitBoard.SIDE2_PROMOTION)) != 0;
+        return new MoveRecord(seq, side, from, to, captured, promoted);
+    }
+
+    public long pack() {
+        return from
+                | to << 5
+                | side << 10
+                | (promoted ? 1 << 12 : 0)
+                | (captured & 0xFFFFFFFFL) << 13;
+    }
+
+    public static MoveRecord unpack(int seq, long packed) {
+        return new MoveRecord(seq, (int) (packed >>> 10) & 3, (int) packed & 31, (int) (packed >>> 5) & 31,
+                (int) (packed >>> 13), (packed & 1 << 12) != 0);
+    }
+
+    /**
+     * Plays the move if it is legal on the board and its side is the one to move at seq.
+     *
+     * @param moves Reusable buffer for the legal moves.
+     * @return False, with the board unchanged, when the move is not legal there.
+     */
+    public boolean applyTo(BitBoard board, MoveList moves) {
+        if (side != sideToMove(seq) || board.sideAt(from) != side) {
+            return false;
+        }
+        int n = MoveGenerator.generate(board, side, moves);
+        for (int i = 0; i < n; i++) {
+            if (moves.from(i) == from && moves.to(i) == to && moves.captured(i) == captured) {
+                moves.apply(board, i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof MoveRecord)) return false;
+        MoveRecord other = (MoveRecord) o;
+        return seq == other.seq && pack() == other.pack();
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(pack()) * 31 + seq;
+    }
+
+    @Override
+    public String toString() {
+        return "MoveRecord{" + seq + ": " + from + (captured != 0 ? "x" : "-") + to
+                + (promoted ? " promoted" : "") + ", side " + side + "}";
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.damka;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+/**
+ * Opening book: weighted moves by position, written by {@link OpeningBookBuilder}. The file
+ * is memory-mapped and its records are sorted by position hash, so a lookup is a binary
+ * search over the mapped buffer.
+ *
+ * File format (big-endian):
+ * int MAGIC, int VERSION, int recordCount,
+ * then recordCount records of RECORD_SIZE bytes sorted by key:
+ * long key ({@link Zobrist#hash}), int captured, byte from, byte to, unsigned short weight.
+ */
+public final class OpeningBook {
+    public static final String FILE_NAME = "opening.book";
+    public static final int MAGIC = 0x444D4B42; // "DMKB"
+    public static final int VERSION = 1;
+    static final int HEADER_SIZE = 12;
+    static final int RECORD_SIZE = 16;
+
+    private final MappedByteBuffer buffer;
+    private final int count;
+    private final MoveList moves = new MoveList();
+
+    private OpeningBook(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not an opening book file, or an unsupported version.");
+        }
+        count = buffer.getInt(8);
+    }
+
+    public static OpeningBook open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            return new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Picks a book move at random, in proportion to the move weights. Not thread safe.
+     *
+     * @return The move as a search result of depth 0, or null when the position is not in the book.
+     */
+    public SearchResult choose(BitBoard board, int side, Random random) {
+        long key = Zobrist.hash(board, side);
+        int first = lowerBound(key);
+        int n = MoveGenerator.generate(board, side, moves);
+        long total = 0;
+        for (int i = first; i < count && keyAt(i) == key; i++) {
+            if (legalIndex(i, n) != -1) {
+                total += weightAt(i);
+            }
+        }
+        if (total == 0) {
+            return null;
+        }
+        long pick = (long) (random.nextDouble() * total);
+        for (int i = first; ; i++) {
+            int index = legalIndex(i, n);
+            if (index == -1) {
+                continue;
+            }
+            pick -= weightAt(i);
+            if (pick < 0) {
+                return new SearchResult(moves.from(index), moves.to(index), moves.captured(index),
+                        moves.packedPath(index), moves.pathLength(index), 0, 0, 0, 0);
+            }
+        }
+    }
+
+    // First record with a key not less than key
+    private int lowerBound(long key) {
+        int low = 0, high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keyAt(mid) < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Index of the record's move among the n generated moves; -1 guards against hash collisions
+    private int legalIndex(int record, int n) {
+        int position = HEADER_SIZE + record * RECORD_SIZE;
+        int captured = buffer.getInt(position + 8);
+        int from = buffer.get(position + 12);
+        int to = buffer.get(position + 13);
+        for (int i = 0; i < n; i++) {
+            if (moves.from(i) == from && moves.to(i) == to && moves.captured(i) == captured) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private long keyAt(int record) {
+        return buffer.getLong(HEADER_SIZE + record * RECORD_SIZE);
+    }
+
+    private int weightAt(int record) {
+        return buffer.getShort(HEADER_SIZE + record * RECORD_SIZE + 14) & 0xFFFF;
+    }
+}
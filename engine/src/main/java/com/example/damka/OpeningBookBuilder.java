@@ -0,0 +1,110 @@
+package com.example.damka;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds an {@link OpeningBook} from finished games. Every move of the first maxPlies plies
+ * is counted for its position: a move of the winner weighs WIN_WEIGHT, a move of a game
+ * without a winner DRAW_WEIGHT, and a move of the loser nothing, so the book repeats what
+ * won before.
+ *
+ * Run from the command line with: java com.example.damka.OpeningBookBuilder gamesFile [bookFile] [maxPlies]
+ * where gamesFile holds one {@link GameRecord} per line. The book in the app's assets is
+ * built from {@link SelfPlay} output:
+ * java com.example.damka.SelfPlay 2000 1 engine 8 games.txt
+ * java com.example.damka.OpeningBookBuilder games.txt app/src/main/assets/opening.book 16
+ */
+public final class OpeningBookBuilder {
+    static final int WIN_WEIGHT = 2;
+    static final int DRAW_WEIGHT = 1;
+    private static final int MAX_WEIGHT = 0xFFFF;
+
+    private final int maxPlies;
+    // Position key -> (captured << 10 | from << 5 | to) -> weight
+    private final Map<Long, Map<Long, Integer>> positions = new HashMap<>();
+
+    public OpeningBookBuilder(int maxPlies) {
+        this.maxPlies = maxPlies;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: OpeningBookBuilder gamesFile [bookFile] [maxPlies]");
+            return;
+        }
+        File book = new File(args.length > 1 ? args[1] : OpeningBook.FILE_NAME);
+        OpeningBookBuilder builder = new OpeningBookBuilder(args.length > 2 ? Integer.parseInt(args[2]) : 16);
+        int games = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(args[0]))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    builder.addGame(GameRecord.parse(line));
+                    games++;
+                }
+            }
+        }
+        int records = builder.write(book);
+        System.out.println("Wrote " + book + ": " + records + " moves from " + games + " games.");
+    }
+
+    public void addGame(GameRecord game) {
+        BitBoard board = BitBoard.initial();
+        for (int ply = 0; ply < game.length() && ply < maxPlies; ply++) {
+            int side = board.sideAt(game.from(ply));
+            int weight = game.getWinner() == side ? WIN_WEIGHT : game.getWinner() == 0 ? DRAW_WEIGHT : 0;
+            long move = (game.captured(ply) & 0xFFFFFFFFL) << 10 | game.from(ply) << 5 | game.to(ply);
+            positions.computeIfAbsent(Zobrist.hash(board, side), key -> new HashMap<>())
+                    .merge(move, weight, (a, b) -> Math.min(a + b, MAX_WEIGHT));
+            game.apply(board, ply);
+        }
+    }
+
+    /**
+     * Writes the book sorted by key. Moves that never scored are left out.
+     *
+     * @return The number of records written.
+     */
+    public int write(File file) throws IOException {
+        List<Long> keys = new ArrayList<>(positions.keySet());
+        Collections.sort(keys);
+        int count = 0;
+        for (Map<Long, Integer> moves : positions.values()) {
+            for (int weight : moves.values()) {
+                if (weight > 0) {
+                    count++;
+                }
+            }
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(OpeningBook.MAGIC);
+            out.writeInt(OpeningBook.VERSION);
+            out.writeInt(count);
+            for (long key : keys) {
+                for (Map.Entry<Long, Integer> move : positions.get(key).entrySet()) {
+                    if (move.getValue() == 0) {
+                        continue;
+                    }
+                    long packed = move.getKey();
+                    out.writeLong(key);
+                    out.writeInt((int) (packed >>> 10));
+                    out.writeByte((int) (packed >>> 5) & 31);
+                    out.writeByte((int) packed & 31);
+                    out.writeShort(move.getValue());
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.damka;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lazy SMP: several {@link SearchEngine}s search the same position at the same time and
+ * share one lock-free {@link TranspositionTable}. The calling thread runs the main search,
+ * helper threads from a fixed pool fill the table with results the main search reuses.
+ * When the main search finishes, or stop() is called, every thread stops.
+ *
+ * Every stop() advances a generation. A caller that queues a search for later reads the
+ * generation first and passes it in, so a stop() made before the search starts still
+ * stops it.
+ */
+public final class ParallelSearch {
+    private final TranspositionTable table;
+    private final SearchEngine[] engines;
+    private final ExecutorService helpers;
+    private final AtomicLong generation = new AtomicLong(); // advanced by every stop()
+
+    public ParallelSearch(int threads, int hashMegabytes) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1.");
+        }
+        table = new TranspositionTable(hashMegabytes);
+        engines = new SearchEngine[threads];
+        for (int i = 0; i < threads; i++) {
+            engines[i] = new SearchEngine(table, i);
+        }
+        helpers = threads > 1 ? Executors.newFixedThreadPool(threads - 1, runnable -> {
+            Thread thread = new Thread(runnable, "search-helper");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    public int getThreads() {
+        return engines.length;
+    }
+
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    // Probes only read the mapped file, so all threads share one tablebase
+    public void setTablebase(Tablebase tablebase) {
+        for (SearchEngine engine : engines) {
+            engine.setTablebase(tablebase);
+        }
+    }
+
+    // Read before queueing a search, and pass it to search() so an early stop() is not lost
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Same contract as {@link SearchEngine#search}, using all threads. Blocks the calling thread.
+     * The returned node count is the total over all threads.
+     */
+    public SearchResult search(BitBoard position, int side, long timeLimitMillis, int maxDepth) {
+        return search(position, side, timeLimitMillis, maxDepth, generation.get());
+    }
+
+    /**
+     * Like {@link #search(BitBoard, int, long, int)}, but stopped at once by any stop() made
+     * since getGeneration() returned generation, even before this call.
+     */
+    public SearchResult search(BitBoard position, int side, long timeLimitMillis, int maxDepth, long generation) {
+        for (SearchEngine engine : engines) {
+            engine.clearStop();
+        }
+        Future<?>[] futures = new Future<?>[engines.length - 1];
+        SearchResult[] results = new SearchResult[engines.length];
+        for (int i = 1; i < engines.length; i++) {
+            SearchEngine engine = engines[i];
+            int id = i;
+            futures[i - 1] = helpers.submit(() -> {
+                results[id] = engine.run(position, side, timeLimitMillis, maxDepth);
+            });
+        }
+        // stop() advances the generation before it stops the engines, so one that came
+        // before the flags were cleared is seen here, and one after stops the engines itself
+        if (this.generation.get() != generation) {
+            for (SearchEngine engine : engines) {
+                engine.stop();
+            }
+        }
+        SearchResult best = engines[0].run(position, side, timeLimitMillis, maxDepth);
+        for (int i = 1; i < engines.length; i++) {
+            engines[i].stop();
+        }
+        long nodes = best == null ? 0 : best.nodes;
+        for (int i = 1; i < engines.length; i++) {
+            try {
+                futures[i - 1].get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                throw new IllegalStateException("Search helper failed.", e);
+            }
+            SearchResult result = results[i];
+            if (result == null) {
+                continue;
+            }
+            nodes += result.nodes;
+            // A helper that completed a deeper iteration knows more than the main thread
+            if (best != null && result.depth > best.depth) {
+                best = result;
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        return new SearchResult(best.from, best.to, best.captured, best.path, best.pathLength,
+                best.score, best.depth, nodes, best.timeMillis);
+    }
+
+    // Safe to call from any thread; the running search returns its best move so far
+    public void stop() {
+        generation.incrementAndGet();
+        for (SearchEngine engine : engines) {
+            engine.stop();
+        }
+    }
+
+    public void shutdown() {
+        stop();
+        if (helpers != null) {
+            helpers.shutdownNow();
+        }
+    }
+}
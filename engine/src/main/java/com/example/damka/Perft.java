@@ -0,0 +1,122 @@
+package com.example.damka;
+
+/**
+ * Perft: counts the leaf nodes of the legal-move tree to a fixed depth. Used as a
+ * correctness check for {@link MoveGenerator} (counts must match the reference
+ * values) and as a throughput baseline (nodes per second).
+ *
+ * Run from the command line with: java com.example.damka.Perft [maxDepth]
+ */
+public final class Perft {
+    /**
+     * Reference counts from the initial position, side 1 to move, indexed by depth.
+     * Up to depth 8 no king can appear and the rules match English checkers, so these
+     * agree with the published checkers perft numbers; deeper values were recorded from
+     * this generator and guard against regressions.
+     */
+    public static final long[] INITIAL_REFERENCE = {
+            1L, 7L, 49L, 302L, 1469L, 7361L, 36768L, 179740L, 845931L,
+            3963673L, 18375375L, 85025292L, 386997994L
+    };
+
+    /** Test positions with kings, capture chains and forced captures, each with side to move and reference counts. */
+    public static final TestPosition[] TEST_POSITIONS = {
+            // Flying kings on both sides, no capture at the root
+            new TestPosition("kings middlegame", new BitBoard(0x00000083, 0x12010000, 0x00000000, 0x04000100), 1,
+                    new long[]{1L, 25L, 277L, 3237L, 27816L, 359112L, 2915563L, 36761837L}),
+            // Side 1 soldier with a triple jump available and side 2 kings
+            new TestPosition("capture chain", new BitBoard(0x00000003, 0, 0x00828040, 0x80000000), 1,
+                    new long[]{1L, 1L, 1L, 2L, 18L, 27L, 190L, 336L, 1596L, 1554L, 11249L, 20654L}),
+            // Side 2 to move with a forced capture
+            new TestPosition("forced capture", new BitBoard(0x00005100, 0x00000001, 0x00C40000, 0), 2,
+                    new long[]{1L, 1L, 3L, 6L, 36L, 35L, 115L, 137L, 1000L, 1299L, 8853L, 20406L}),
+    };
+
+    public static final class TestPosition {
+        public final String name;
+        public final BitBoard board;
+        public final int side;
+        public final long[] reference;
+
+        public TestPosition(String name, BitBoard board, int side, long[] reference) {
+            this.name = name;
+            this.board = board;
+            this.side = side;
+            this.reference = reference;
+        }
+    }
+
+    private final MoveList[] lists;
+    private final BitBoard[] saved;
+
+    public Perft(int maxDepth) {
+        lists = new MoveList[maxDepth + 1];
+        saved = new BitBoard[maxDepth + 1];
+        for (int i = 0; i <= maxDepth; i++) {
+            lists[i] = new MoveList();
+            saved[i] = new BitBoard();
+        }
+    }
+
+    /**
+     * Counts leaf nodes. The board is restored before returning.
+     *
+     * @param board The position to search.
+     * @param side  The side to move.
+     * @param depth Number of plies, at most the maxDepth given to the constructor.
+     */
+    public long count(BitBoard board, int side, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        MoveList moves = lists[depth];
+        int n = MoveGenerator.generate(board, side, moves);
+        if (depth == 1) {
+            return n; // bulk counting: no need to play the last ply
+        }
+        BitBoard save = saved[depth];
+        save.copyFrom(board);
+        long nodes = 0;
+        for (int i = 0; i < n; i++) {
+            moves.apply(board, i);
+            nodes += count(board, BitBoard.opponent(side), depth - 1);
+            board.copyFrom(save);
+        }
+        return nodes;
+    }
+
+    public static void main(String[] args) {
+        int maxDepth = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        Perft perft = new Perft(maxDepth);
+        boolean ok = run(perft, "initial", BitBoard.initial(), 1, INITIAL_REFERENCE, maxDepth);
+        for (TestPosition position : TEST_POSITIONS) {
+            ok &= run(perft, position.name, position.board, position.side, position.reference,
+                    Math.min(maxDepth, position.reference.length - 1));
+        }
+        System.out.println(ok ? "All counts match." : "MISMATCH against reference counts!");
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean run(Perft perft, String name, BitBoard start, int side, long[] reference, int maxDepth) {
+        boolean ok = true;
+        System.out.println("Position: " + name);
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            BitBoard board = new BitBoard();
+            board.copyFrom(start);
+            long begin = System.nanoTime();
+            long nodes = perft.count(board, side, depth);
+            long elapsed = Math.max(1, System.nanoTime() - begin);
+            String check = "";
+            if (depth < reference.length) {
+                boolean match = nodes == reference[depth];
+                ok &= match;
+                check = match ? "  ok" : "  expected " + reference[depth];
+            }
+            System.out.printf("  depth %2d: %,15d nodes %10.1f ms %,15d nodes/s%s%n",
+                    depth, nodes, elapsed / 1e6, nodes * 1_000_000_000L / elapsed, check);
+        }
+        return ok;
+    }
+}
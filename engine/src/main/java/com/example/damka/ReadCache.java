@@ -0,0 +1,248 @@
+package com.example.damka;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.LongSupplier;
+
+/**
+ * Stale-while-revalidate cache for backend reads, in memory and in a directory of small
+ * files that outlives the process. get() hands out the cached value at once, even a stale
+ * one, and reads the backend only when there is no value or it is older than the TTL; the
+ * fresh value is then handed out again. Concurrent gets of a key share one backend read.
+ *
+ * File format (big-endian), one file per key: int MAGIC, UTF key, long storedAt, then the
+ * value as written by its {@link Codec}. Files are written to a temporary file and renamed
+ * into place, so a kill mid-write leaves the previous value; a file that fails to read is
+ * deleted and counts as a miss.
+ *
+ * Thread safe. Files are only touched on the I/O executor, which must run tasks in order
+ * so that writes land in the order they were made.
+ */
+public final class ReadCache<V> {
+    private static final int MAGIC = 0x44524331; // "DRC1"
+    private static final int MEMORY_ENTRIES = 128;
+
+    public interface Codec<V> {
+        void write(V value, DataOutputStream out) throws IOException;
+
+        V read(DataInputStream in) throws IOException;
+    }
+
+    // Reads a key from the backend; the callback may run on any thread
+    public interface Fetcher<V> {
+        void fetch(String key, FetchCallback<V> callback);
+    }
+
+    public interface FetchCallback<V> {
+        // error is null when the read succeeded
+        void onFetched(V value, Exception error);
+    }
+
+    // Called on the executor given to get()
+    public interface Listener<V> {
+        // The cached value first if there is one, then the backend's if that was stale or missing
+        void onValue(V value);
+
+        // The backend read failed and nothing was cached
+        void onError(Exception error);
+    }
+
+    private static final class Cached<V> {
+        final V value;
+        final long storedAt;
+
+        Cached(V value, long storedAt) {
+            this.value = value;
+            this.storedAt = storedAt;
+        }
+    }
+
+    private static final class Waiter<V> {
+        final Executor executor;
+        final Listener<V> listener;
+        final boolean hasValue;
+
+        Waiter(Executor executor, Listener<V> listener, boolean hasValue) {
+            this.executor = executor;
+            this.listener = listener;
+            this.hasValue = hasValue;
+        }
+    }
+
+    private final File dir;
+    private final long ttlMillis;
+    private final Codec<V> codec;
+    private final Fetcher<V> fetcher;
+    private final Executor io;
+    private final LongSupplier clock;
+
+    // Guarded by this
+    private final LinkedHashMap<String, Cached<V>> memory = new LinkedHashMap<String, Cached<V>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Cached<V>> eldest) {
+            return size() > MEMORY_ENTRIES;
+        }
+    };
+    private final HashMap<String, List<Waiter<V>>> inFlight = new HashMap<>();
+
+    public ReadCache(File dir, long ttlMillis, Codec<V> codec, Fetcher<V> fetcher, Executor io) {
+        this(dir, ttlMillis, codec, fetcher, io, System::currentTimeMillis);
+    }
+
+    ReadCache(File dir, long ttlMillis, Codec<V> codec, Fetcher<V> fetcher, Executor io, LongSupplier clock) {
+        this.dir = dir;
+        this.ttlMillis = ttlMillis;
+        this.codec = codec;
+        this.fetcher = fetcher;
+        this.io = io;
+        this.clock = clock;
+    }
+
+    /**
+     * Hands out the value of a key: the cached one right away if there is one, and the
+     * backend's after a read if the cached one is stale or missing.
+     */
+    public void get(String key, Executor executor, Listener<V> listener) {
+        Cached<V> cached;
+        synchronized (this) {
+            cached = memory.get(key);
+        }
+        if (cached != null) {
+            deliver(key, cached, executor, listener);
+            return;
+        }
+        io.execute(() -> {
+            Cached<V> stored = readFile(key);
+            if (stored != null) {
+                synchronized (this) {
+                    Cached<V> current = memory.get(key);
+                    if (current == null || current.storedAt < stored.storedAt) {
+                        memory.put(key, stored);
+                    } else {
+                        stored = current; // a read finished meanwhile
+                    }
+                }
+            }
+            deliver(key, stored, executor, listener);
+        });
+    }
+
+    // Stores a value read some other way, such as from a live listener
+    public void put(String key, V value) {
+        Cached<V> entry = new Cached<>(value, clock.getAsLong());
+        synchronized (this) {
+            memory.put(key, entry);
+        }
+        io.execute(() -> writeFile(key, entry));
+    }
+
+    // Forgets a value the backend is known to have changed; the next get() reads it
+    public void invalidate(String key) {
+        synchronized (this) {
+            memory.remove(key);
+        }
+        io.execute(() -> file(key).delete());
+    }
+
+    private void deliver(String key, Cached<V> cached, Executor executor, Listener<V> listener) {
+        if (cached != null) {
+            executor.execute(() -> listener.onValue(cached.value));
+            if (clock.getAsLong() - cached.storedAt < ttlMillis) {
+                return;
+            }
+        }
+        revalidate(key, new Waiter<>(executor, listener, cached != null));
+    }
+
+    private void revalidate(String key, Waiter<V> waiter) {
+        synchronized (this) {
+            List<Waiter<V>> waiters = inFlight.get(key);
+            if (waiters != null) {
+                waiters.add(waiter); // the read already going out answers this one too
+                return;
+            }
+            waiters = new ArrayList<>();
+            waiters.add(waiter);
+            inFlight.put(key, waiters);
+        }
+        fetcher.fetch(key, (value, error) -> {
+            List<Waiter<V>> waiters;
+            Cached<V> entry = error == null ? new Cached<>(value, clock.getAsLong()) : null;
+            synchronized (this) {
+                waiters = inFlight.remove(key);
+                if (entry != null) {
+                    memory.put(key, entry);
+                }
+            }
+            if (entry != null) {
+                io.execute(() -> writeFile(key, entry));
+            }
+            for (Waiter<V> w : waiters) {
+                if (entry != null) {
+                    w.executor.execute(() -> w.listener.onValue(entry.value));
+                } else if (!w.hasValue) {
+                    w.executor.execute(() -> w.listener.onError(error));
+                }
+            }
+        });
+    }
+
+    // Keys can hold any character, so file names are the key in hex
+    private File file(String key) {
+        StringBuilder name = new StringBuilder();
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return new File(dir, name.toString());
+    }
+
+    private Cached<V> readFile(String key) {
+        File file = file(key);
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || !in.readUTF().equals(key)) {
+                throw new IOException("Not a cache file of " + key);
+            }
+            long storedAt = in.readLong();
+            return new Cached<>(codec.read(in), storedAt);
+        } catch (IOException | RuntimeException e) {
+            file.delete();
+            return null;
+        }
+    }
+
+    private void writeFile(String key, Cached<V> entry) {
+        File file = file(key);
+        File temp = new File(file.getPath() + ".tmp");
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            return;
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeUTF(key);
+            out.writeLong(entry.storedAt);
+            codec.write(entry.value, out);
+        } catch (IOException e) {
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.damka;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Binary protocol between {@link RelayTransport} and the relay server. Every frame is an
+ * int length (of what follows), a type byte and the fields below, big-endian. Strings
+ * are a presence byte then modified UTF-8 (DataOutput.writeUTF); a state is laid out as
+ * in putState(). Requests carry an id that their RESULT or STATE answer repeats.
+ *
+ * Client to server:
+ * CREATE requestId gameId state, JOIN requestId gameId playerId,
+ * COMMIT requestId gameId nextTurn count (seq packed)*, CHECKPOINT requestId gameId seq board,
+ * LOAD requestId gameId, SUBSCRIBE gameId, UNSUBSCRIBE gameId.
+ *
+ * Server to client:
+ * RESULT requestId error (absent on success), STATE requestId gameId present [state],
+ * MOVE gameId seq packed. Pushed states have requestId 0 and, except the first one a
+ * subscription gets, no moves: those arrive as MOVE frames.
+ */
+public final class RelayProtocol {
+    public static final int DEFAULT_PORT = 7341;
+    public static final int MAX_FRAME = 64 * 1024;
+
+    public static final byte CREATE = 1, JOIN = 2, COMMIT = 3, CHECKPOINT = 4, LOAD = 5, SUBSCRIBE = 6, UNSUBSCRIBE = 7;
+    public static final byte RESULT = 16, STATE = 17, MOVE = 18;
+
+    private RelayProtocol() {
+    }
+
+    // Builds one frame in memory; finish() fills in the length
+    public static final class FrameWriter {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        public FrameWriter(byte type) {
+            putInt(0);
+            try {
+                out.writeByte(type);
+            } catch (IOException e) {
+                throw new AssertionError(e); // a byte array does not fail
+            }
+        }
+
+        public FrameWriter putInt(int value) {
+            try {
+                out.writeInt(value);
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            return this;
+        }
+
+        public FrameWriter putLong(long value) {
+            try {
+                out.writeLong(value);
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            return this;
+        }
+
+        public FrameWriter putBoolean(boolean value) {
+            try {
+                out.writeBoolean(value);
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            return this;
+        }
+
+        public FrameWriter putString(String value) {
+            putBoolean(value != null);
+            if (value != null) {
+                try {
+                    out.writeUTF(value);
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+            }
+            return this;
+        }
+
+        // Absent state: a false presence byte
+        public FrameWriter putState(SessionState state, boolean withMoves) {
+            putBoolean(state != null);
+            if (state == null) {
+                return this;
+            }
+            putLong(state.version).putString(state.player1Id).putString(state.player2Id).putString(state.currentTurn);
+            putInt(state.checkpointSeq).putInt(state.moveSeq).putString(state.board);
+            putInt(withMoves ? state.moves.size() : 0);
+            if (withMoves) {
+                for (Map.Entry<Integer, Long> move : state.moves.entrySet()) {
+                    putInt(move.getKey()).putLong(move.getValue());
+                }
+            }
+            return this;
+        }
+
+        public ByteBuffer finish() {
+            ByteBuffer frame = ByteBuffer.wrap(bytes.toByteArray());
+            frame.putInt(0, frame.capacity() - 4);
+            return frame;
+        }
+    }
+
+    public static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    // The state written by putState(), or null when absent
+    public static SessionState readState(DataInput in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        long version = in.readLong();
+        String player1Id = readString(in);
+        String player2Id = readString(in);
+        String currentTurn = readString(in);
+        int checkpointSeq = in.readInt();
+        int moveSeq = in.readInt();
+        String board = readString(in);
+        int count = in.readInt();
+        TreeMap<Integer, Long> moves = new TreeMap<>();
+        for (int i = 0; i < count; i++) {
+            moves.put(in.readInt(), in.readLong());
+        }
+        return new SessionState(version, player1Id, player2Id, currentTurn, checkpointSeq, moveSeq, board, moves);
+    }
+
+    public static ByteBuffer create(int requestId, String gameId, SessionState initial) {
+        return new FrameWriter(CREATE).putInt(requestId).putString(gameId).putState(initial, true).finish();
+    }
+
+    public static ByteBuffer join(int requestId, String gameId, String playerId) {
+        return new FrameWriter(JOIN).putInt(requestId).putString(gameId).putString(playerId).finish();
+    }
+
+    public static ByteBuffer commit(int requestId, String gameId, String nextTurn, List<MoveRecord> moves) {
+        FrameWriter frame = new FrameWriter(COMMIT).putInt(requestId).putString(gameId).putString(nextTurn);
+        frame.putInt(moves.size());
+        for (MoveRecord record : moves) {
+            frame.putInt(record.seq).putLong(record.pack());
+        }
+        return frame.finish();
+    }
+
+    public static ByteBuffer checkpoint(int requestId, String gameId, int seq, String board) {
+        return new FrameWriter(CHECKPOINT).putInt(requestId).putString(gameId).putInt(seq).putString(board).finish();
+    }
+
+    public static ByteBuffer load(int requestId, String gameId) {
+        return new FrameWriter(LOAD).putInt(requestId).putString(gameId).finish();
+    }
+
+    public static ByteBuffer subscribe(String gameId) {
+        return new FrameWriter(SUBSCRIBE).putString(gameId).finish();
+    }
+
+    public static ByteBuffer unsubscribe(String gameId) {
+        return new FrameWriter(UNSUBSCRIBE).putString(gameId).finish();
+    }
+
+    public static ByteBuffer result(int requestId, String error) {
+        return new FrameWriter(RESULT).putInt(requestId).putString(error).finish();
+    }
+
+    public static ByteBuffer state(int requestId, String gameId, SessionState state, boolean withMoves) {
+        return new FrameWriter(STATE).putInt(requestId).putString(gameId).putState(state, withMoves).finish();
+    }
+
+    public static ByteBuffer move(String gameId, int seq, long packed) {
+        return new FrameWriter(MOVE).putString(gameId).putInt(seq).putLong(packed).finish();
+    }
+}
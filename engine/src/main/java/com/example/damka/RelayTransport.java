@@ -0,0 +1,284 @@
+package com.example.damka;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link GameTransport} on a relay server (see {@link RelayProtocol}): one TCP connection
+ * shared by every game of the client. Requests are written by the calling thread; a reader
+ * thread matches answers to their callbacks by request id and hands pushed moves and
+ * states to the subscribers' executors.
+ *
+ * The connection is not re-established: when it drops, subscribers get onConnected(false)
+ * and every pending and later request fails.
+ */
+public final class RelayTransport implements GameTransport, Closeable {
+    private final Socket socket;
+    private final OutputStream out;
+    private final AtomicInteger nextRequestId = new AtomicInteger();
+    private final ConcurrentHashMap<Integer, Callback> callbacks = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, PendingLoad> loads = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CopyOnWriteArrayList<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private volatile IOException failure;
+
+    private static final class PendingLoad {
+        final Executor executor;
+        final StateCallback callback;
+
+        PendingLoad(Executor executor, StateCallback callback) {
+            this.executor = executor;
+            this.callback = callback;
+        }
+    }
+
+    private final class Subscriber implements Subscription {
+        final String gameId;
+        final Executor executor;
+        final Listener listener;
+        volatile boolean cancelled;
+
+        Subscriber(String gameId, Executor executor, Listener listener) {
+            this.gameId = gameId;
+            this.executor = executor;
+            this.listener = listener;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            boolean[] last = new boolean[1];
+            subscribers.computeIfPresent(gameId, (id, list) -> {
+                list.remove(this);
+                last[0] = list.isEmpty();
+                return last[0] ? null : list;
+            });
+            if (last[0]) {
+                send(RelayProtocol.unsubscribe(gameId), null);
+            }
+        }
+    }
+
+    public RelayTransport(String host, int port) throws IOException {
+        socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        out = socket.getOutputStream();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        Thread reader = new Thread(() -> read(in), "relay-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    public boolean isConnected() {
+        return failure == null;
+    }
+
+    @Override
+    public void create(String gameId, SessionState initial, Callback callback) {
+        int requestId = request(callback);
+        send(RelayProtocol.create(requestId, gameId, initial), requestId);
+    }
+
+    @Override
+    public void join(String gameId, String playerId, Callback callback) {
+        int requestId = request(callback);
+        send(RelayProtocol.join(requestId, gameId, playerId), requestId);
+    }
+
+    @Override
+    public void commitMoves(String gameId, List<MoveRecord> moves, String nextTurn, Callback callback) {
+        int requestId = request(callback);
+        send(RelayProtocol.commit(requestId, gameId, nextTurn, moves), requestId);
+    }
+
+    @Override
+    public void writeCheckpoint(String gameId, int seq, String board, Callback callback) {
+        int requestId = request(callback);
+        send(RelayProtocol.checkpoint(requestId, gameId, seq, board), requestId);
+    }
+
+    @Override
+    public void load(String gameId, Executor executor, StateCallback callback) {
+        int requestId = nextId();
+        loads.put(requestId, new PendingLoad(executor, callback));
+        send(RelayProtocol.load(requestId, gameId), requestId);
+    }
+
+    @Override
+    public Subscription subscribe(String gameId, Executor executor, Listener listener) {
+        Subscriber subscriber = new Subscriber(gameId, executor, listener);
+        subscribers.computeIfAbsent(gameId, id -> new CopyOnWriteArrayList<>()).add(subscriber);
+        boolean connected = isConnected();
+        executor.execute(() -> {
+            if (!subscriber.cancelled) {
+                listener.onConnected(connected);
+            }
+        });
+        // Answered with the whole session, which every subscriber of the game on this connection gets
+        send(RelayProtocol.subscribe(gameId), null);
+        return subscriber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    private int nextId() {
+        int id;
+        do {
+            id = nextRequestId.incrementAndGet();
+        } while (id == 0); // 0 marks pushed states
+        return id;
+    }
+
+    private int request(Callback callback) {
+        int requestId = nextId();
+        callbacks.put(requestId, callback);
+        return requestId;
+    }
+
+    // Writes a whole frame; on failure the request, if any, fails at once
+    private void send(ByteBuffer frame, Integer requestId) {
+        IOException error = failure;
+        if (error == null) {
+            try {
+                synchronized (out) {
+                    out.write(frame.array(), 0, frame.limit());
+                }
+                return;
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+                error = failure;
+                closeQuietly();
+            }
+        }
+        if (requestId != null) {
+            fail(requestId, error);
+        }
+    }
+
+    private void fail(int requestId, IOException error) {
+        Callback callback = callbacks.remove(requestId);
+        if (callback != null) {
+            callback.onComplete(error);
+        }
+        PendingLoad load = loads.remove(requestId);
+        if (load != null) {
+            load.executor.execute(() -> load.callback.onState(null, error));
+        }
+    }
+
+    private void read(DataInputStream in) {
+        try {
+            while (true) {
+                int length = in.readInt();
+                if (length < 1 || length > RelayProtocol.MAX_FRAME) {
+                    throw new IOException("Bad frame length " + length);
+                }
+                byte type = in.readByte();
+                switch (type) {
+                    case RelayProtocol.RESULT:
+                        onResult(in.readInt(), RelayProtocol.readString(in));
+                        break;
+                    case RelayProtocol.STATE:
+                        onState(in.readInt(), RelayProtocol.readString(in), RelayProtocol.readState(in));
+                        break;
+                    case RelayProtocol.MOVE:
+                        onMove(RelayProtocol.readString(in), in.readInt(), in.readLong());
+                        break;
+                    default:
+                        in.skipBytes(length - 1);
+                }
+            }
+        } catch (IOException e) {
+            if (failure == null) {
+                failure = e instanceof EOFException ? new IOException("Relay closed the connection", e) : e;
+            }
+        }
+        closeQuietly();
+        for (Integer requestId : callbacks.keySet()) {
+            fail(requestId, failure);
+        }
+        for (Integer requestId : loads.keySet()) {
+            fail(requestId, failure);
+        }
+        for (List<Subscriber> list : subscribers.values()) {
+            for (Subscriber subscriber : list) {
+                subscriber.executor.execute(() -> {
+                    if (!subscriber.cancelled) {
+                        subscriber.listener.onConnected(false);
+                    }
+                });
+            }
+        }
+    }
+
+    private void onResult(int requestId, String error) {
+        Callback callback = callbacks.remove(requestId);
+        if (callback != null) {
+            callback.onComplete(error == null ? null : new IllegalStateException(error));
+        }
+    }
+
+    private void onState(int requestId, String gameId, SessionState state) {
+        if (requestId != 0) {
+            PendingLoad load = loads.remove(requestId);
+            if (load != null) {
+                load.executor.execute(() -> load.callback.onState(state,
+                        state == null ? new IllegalStateException("No game " + gameId) : null));
+            }
+            return;
+        }
+        List<Subscriber> list = subscribers.get(gameId);
+        if (list == null || state == null) {
+            return;
+        }
+        for (Subscriber subscriber : list) {
+            subscriber.executor.execute(() -> {
+                if (subscriber.cancelled) {
+                    return;
+                }
+                subscriber.listener.onSession(state);
+                state.moves.forEach(subscriber.listener::onMove);
+            });
+        }
+    }
+
+    private void onMove(String gameId, int seq, long packed) {
+        List<Subscriber> list = subscribers.get(gameId);
+        if (list == null) {
+            return;
+        }
+        for (Subscriber subscriber : list) {
+            subscriber.executor.execute(() -> {
+                if (!subscriber.cancelled) {
+                    subscriber.listener.onMove(seq, packed);
+                }
+            });
+        }
+    }
+
+    private void closeQuietly() {
+        if (failure == null) {
+            failure = new IOException("Relay connection closed");
+        }
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // Already closed
+        }
+    }
+}
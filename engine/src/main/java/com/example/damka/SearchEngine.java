@@ -0,0 +1,309 @@
+package com.example.damka;
+
+import java.util.Arrays;
+
+/**
+ * Computer opponent: negamax alpha-beta search with iterative deepening, principal
+ * variation search, a {@link TranspositionTable}, killer/history move ordering and
+ * capture resolution at the horizon. The search stops when its time limit runs out
+ * and returns the best move of the last completed iteration.
+ *
+ * With a {@link Tablebase} set, positions it covers get exact scores (a win in n plies
+ * scores like a position with no moves n plies later) instead of being searched.
+ *
+ * An engine instance is not thread safe; use one per search thread. Several engines can
+ * share one table, see {@link ParallelSearch}.
+ */
+public final class SearchEngine {
+    public static final int MAX_PLY = 128;
+    public static final int MAX_DEPTH = 64;
+    public static final int INFINITY = 32000;
+    public static final int WIN = 30000; // a side with no move has lost; WIN - ply prefers faster wins
+    private static final int WIN_BOUND = WIN - MAX_PLY;
+
+    private final TranspositionTable table;
+    private final int helperId; // 0 for the main thread of a search
+    private final MoveList[] moves = new MoveList[MAX_PLY];
+    private final BitBoard[] saved = new BitBoard[MAX_PLY];
+    private final int[][] orderScores = new int[MAX_PLY][];
+    private final int[] killers = new int[MAX_PLY * 2];
+    private final int[] history = new int[BitBoard.NUM_OF_PLAYABLE * BitBoard.NUM_OF_PLAYABLE];
+
+    private Tablebase tablebase;
+    private volatile boolean stopped;
+    private long deadline;
+    private long nodes;
+    private int rootFrom, rootTo, rootCaptured, rootPathLength;
+    private long rootPath;
+
+    public SearchEngine(int hashMegabytes) {
+        this(new TranspositionTable(hashMegabytes));
+    }
+
+    public SearchEngine(TranspositionTable table) {
+        this(table, 0);
+    }
+
+    SearchEngine(TranspositionTable table, int helperId) {
+        this.table = table;
+        this.helperId = helperId;
+        for (int i = 0; i < MAX_PLY; i++) {
+            moves[i] = new MoveList();
+            saved[i] = new BitBoard();
+            orderScores[i] = new int[MoveList.DEFAULT_CAPACITY];
+        }
+    }
+
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    // Optional exact endgame results; null disables probing
+    public void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+    }
+
+    // Makes a running search return as soon as possible, with its best move so far
+    public void stop() {
+        stopped = true;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Searches for the best move of the side. The position is not modified.
+     *
+     * @param position        The position to search.
+     * @param side            The side to move.
+     * @param timeLimitMillis Time budget for the whole search.
+     * @param maxDepth        Maximum depth of the iterative deepening.
+     * @return The best move, or null when the side has no legal move.
+     */
+    public SearchResult search(BitBoard position, int side, long timeLimitMillis, int maxDepth) {
+        stopped = false;
+        return run(position, side, timeLimitMillis, maxDepth);
+    }
+
+    // Lets ParallelSearch reset the flag before a helper starts, so an early stop() is not lost
+    void clearStop() {
+        stopped = false;
+    }
+
+    SearchResult run(BitBoard position, int side, long timeLimitMillis, int maxDepth) {
+        long start = System.currentTimeMillis();
+        deadline = start + timeLimitMillis;
+        nodes = 0;
+        if (helperId == 0) {
+            table.newSearch();
+        }
+        Arrays.fill(killers, -1);
+        for (int i = 0; i < history.length; i++) {
+            history[i] >>= 1; // keep some ordering knowledge from the previous move
+        }
+
+        BitBoard board = new BitBoard();
+        board.copyFrom(position);
+        MoveList rootMoves = moves[0];
+        int n = MoveGenerator.generate(board, side, rootMoves);
+        if (n == 0) {
+            return null;
+        }
+        int bestFrom = rootMoves.from(0), bestTo = rootMoves.to(0), bestCaptured = rootMoves.captured(0);
+        long bestPath = rootMoves.packedPath(0);
+        int bestPathLength = rootMoves.pathLength(0);
+        int bestScore = Evaluator.evaluate(board, side);
+        int completedDepth = 0;
+
+        if (n > 1) { // a forced move needs no search
+            // Odd helpers start one ply deeper so threads spread over different depths
+            for (int depth = 1 + (helperId & 1); depth <= maxDepth; depth++) {
+                int score = negamax(board, side, depth, -INFINITY, INFINITY, 0);
+                if (stopped) {
+                    break;
+                }
+                bestFrom = rootFrom;
+                bestTo = rootTo;
+                bestCaptured = rootCaptured;
+                bestPath = rootPath;
+                bestPathLength = rootPathLength;
+                bestScore = score;
+                completedDepth = depth;
+                if (Math.abs(score) >= WIN_BOUND) {
+                    break; // the game result is already known
+                }
+            }
+        }
+        return new SearchResult(bestFrom, bestTo, bestCaptured, bestPath, bestPathLength,
+                bestScore, completedDepth, nodes, System.currentTimeMillis() - start);
+    }
+
+    private int negamax(BitBoard board, int side, int depth, int alpha, int beta, int ply) {
+        if ((++nodes & 2047) == 0 && System.currentTimeMillis() >= deadline) {
+            stopped = true;
+        }
+        if (stopped) {
+            return 0;
+        }
+        if (tablebase != null && ply > 0) {
+            int code = tablebase.probe(board, side);
+            if (code == Tablebase.DRAW) {
+                return 0;
+            }
+            if (Tablebase.isWin(code)) {
+                return WIN - ply - Tablebase.distanceOf(code);
+            }
+            if (Tablebase.isLoss(code)) {
+                return -WIN + ply + Tablebase.distanceOf(code);
+            }
+        }
+        MoveList list = moves[ply];
+        int n = MoveGenerator.generate(board, side, list);
+        if (n == 0) {
+            return -WIN + ply;
+        }
+        // Captures are forced, so they are always resolved before evaluating
+        if (ply >= MAX_PLY - 1 || (depth <= 0 && !list.isCapture(0))) {
+            return Evaluator.evaluate(board, side);
+        }
+        if (depth < 0) {
+            depth = 0;
+        }
+
+        long key = Zobrist.hash(board, side);
+        long entry = table.probe(key);
+        int ttFrom = -1, ttTo = -1;
+        if (entry != TranspositionTable.MISS) {
+            ttFrom = TranspositionTable.fromOf(entry);
+            ttTo = TranspositionTable.toOf(entry);
+            if (ply > 0 && TranspositionTable.depthOf(entry) >= depth) {
+                int ttScore = fromTable(TranspositionTable.scoreOf(entry), ply);
+                int flag = TranspositionTable.flagOf(entry);
+                if (flag == TranspositionTable.EXACT
+                        || (flag == TranspositionTable.LOWER_BOUND && ttScore >= beta)
+                        || (flag == TranspositionTable.UPPER_BOUND && ttScore <= alpha)) {
+                    return ttScore;
+                }
+            }
+        }
+
+        int[] scores = scoreMoves(list, n, ply, ttFrom, ttTo);
+        int alphaOrig = alpha;
+        int best = -INFINITY;
+        int bestIndex = 0;
+        int opponent = BitBoard.opponent(side);
+        BitBoard save = saved[ply];
+        save.copyFrom(board);
+
+        for (int i = 0; i < n; i++) {
+            pickNext(list, scores, i, n);
+            list.apply(board, i);
+            int score;
+            if (i == 0) {
+                score = -negamax(board, opponent, depth - 1, -beta, -alpha, ply + 1);
+            } else {
+                // Null window first: most moves only need to be proven worse than the best one
+                score = -negamax(board, opponent, depth - 1, -alpha - 1, -alpha, ply + 1);
+                if (score > alpha && score < beta && !stopped) {
+                    score = -negamax(board, opponent, depth - 1, -beta, -alpha, ply + 1);
+                }
+            }
+            board.copyFrom(save);
+            if (stopped) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                bestIndex = i;
+                if (score > alpha) {
+                    alpha = score;
+                    if (ply == 0) {
+                        rootFrom = list.from(i);
+                        rootTo = list.to(i);
+                        rootCaptured = list.captured(i);
+                        rootPath = list.packedPath(i);
+                        rootPathLength = list.pathLength(i);
+                    }
+                    if (alpha >= beta) {
+                        if (!list.isCapture(i)) {
+                            rememberQuietCutoff(list.from(i), list.to(i), depth, ply);
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+
+        int flag = best <= alphaOrig ? TranspositionTable.UPPER_BOUND
+                : best >= beta ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+        table.store(key, depth, flag, toTable(best, ply), list.from(bestIndex), list.to(bestIndex));
+        return best;
+    }
+
+    // Ordering: transposition table move, captures by size, killers, then history
+    private int[] scoreMoves(MoveList list, int n, int ply, int ttFrom, int ttTo) {
+        if (orderScores[ply].length < n) {
+            orderScores[ply] = new int[list.size() * 2];
+        }
+        int[] scores = orderScores[ply];
+        int killer1 = killers[ply * 2];
+        int killer2 = killers[ply * 2 + 1];
+        for (int i = 0; i < n; i++) {
+            int from = list.from(i);
+            int to = list.to(i);
+            int packed = from << 5 | to;
+            if (from == ttFrom && to == ttTo) {
+                scores[i] = 1 << 30;
+            } else if (list.isCapture(i)) {
+                scores[i] = (1 << 29) + Integer.bitCount(list.captured(i));
+            } else if (packed == killer1) {
+                scores[i] = (1 << 28) + 1;
+            } else if (packed == killer2) {
+                scores[i] = 1 << 28;
+            } else {
+                scores[i] = history[from * BitBoard.NUM_OF_PLAYABLE + to];
+            }
+        }
+        return scores;
+    }
+
+    // Selection sort step: moves the best remaining move to index i
+    private static void pickNext(MoveList list, int[] scores, int i, int n) {
+        int bestIndex = i;
+        for (int j = i + 1; j < n; j++) {
+            if (scores[j] > scores[bestIndex]) {
+                bestIndex = j;
+            }
+        }
+        if (bestIndex != i) {
+            list.swap(i, bestIndex);
+            int t = scores[i];
+            scores[i] = scores[bestIndex];
+            scores[bestIndex] = t;
+        }
+    }
+
+    private void rememberQuietCutoff(int from, int to, int depth, int ply) {
+        int packed = from << 5 | to;
+        if (killers[ply * 2] != packed) {
+            killers[ply * 2 + 1] = killers[ply * 2];
+            killers[ply * 2] = packed;
+        }
+        int index = from * BitBoard.NUM_OF_PLAYABLE + to;
+        history[index] = Math.min(history[index] + depth * depth, 1 << 20);
+    }
+
+    // Win scores are stored relative to the node so they stay correct at other plies
+    private static int toTable(int score, int ply) {
+        if (score >= WIN_BOUND) return score + ply;
+        if (score <= -WIN_BOUND) return score - ply;
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= WIN_BOUND) return score - ply;
+        if (score <= -WIN_BOUND) return score + ply;
+        return score;
+    }
+}
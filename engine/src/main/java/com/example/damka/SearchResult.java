@@ -0,0 +1,37 @@
+package com.example.damka;
+
+/**
+ * Best move found by {@link SearchEngine}, with the statistics of the search that found it.
+ */
+public final class SearchResult {
+    public final int from, to, captured;
+    public final long path;
+    public final int pathLength;
+    public final int score; // from the point of view of the side that searched
+    public final int depth; // last fully searched depth
+    public final long nodes;
+    public final long timeMillis;
+
+    public SearchResult(int from, int to, int captured, long path, int pathLength,
+                        int score, int depth, long nodes, long timeMillis) {
+        this.from = from;
+        this.to = to;
+        this.captured = captured;
+        this.path = path;
+        this.pathLength = pathLength;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.timeMillis = timeMillis;
+    }
+
+    public void apply(BitBoard board) {
+        board.applyMove(from, to, captured);
+    }
+
+    @Override
+    public String toString() {
+        return "SearchResult{" + from + "->" + to + ", score=" + score + ", depth=" + depth
+                + ", nodes=" + nodes + ", timeMillis=" + timeMillis + "}";
+    }
+}
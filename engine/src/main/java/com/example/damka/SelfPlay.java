@@ -0,0 +1,134 @@
+package com.example.damka;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless self-play: plays many games from the initial position on a thread pool and
+ * streams each finished game to a file as a {@link GameRecord} line, so the output can
+ * feed {@link OpeningBookBuilder} directly.
+ *
+ * In ENGINE mode both sides search; the first RANDOM_PLIES plies are random so games
+ * differ. In RANDOM mode one side plays random moves (side 1 in even games, side 2 in
+ * odd games) against the engine. A game longer than MAX_PLIES plies has no winner.
+ *
+ * Run from the command line with:
+ * java com.example.damka.SelfPlay [games] [threads] [engine|random] [depth] [file]
+ */
+public final class SelfPlay {
+    public enum Mode { ENGINE, RANDOM }
+
+    public static final int MAX_PLIES = 300;
+    public static final int RANDOM_PLIES = 4;
+    private static final int HASH_MEGABYTES = 8;
+    private static final long SEARCH_TIME_MILLIS = 60_000; // depth-limited, the clock is only a safety net
+
+    private final Mode mode;
+    private final int depth;
+    private final long seed;
+    private final AtomicInteger nextGame = new AtomicInteger();
+    private final AtomicInteger[] wins = {new AtomicInteger(), new AtomicInteger(), new AtomicInteger()};
+    private final AtomicLong plies = new AtomicLong();
+
+    public SelfPlay(Mode mode, int depth, long seed) {
+        this.mode = mode;
+        this.depth = depth;
+        this.seed = seed;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        Mode mode = args.length > 2 ? Mode.valueOf(args[2].toUpperCase()) : Mode.ENGINE;
+        int depth = args.length > 3 ? Integer.parseInt(args[3]) : 6;
+        File file = new File(args.length > 4 ? args[4] : "games.txt");
+
+        SelfPlay selfPlay = new SelfPlay(mode, depth, System.nanoTime());
+        long start = System.nanoTime();
+        try (Writer out = new BufferedWriter(new FileWriter(file))) {
+            selfPlay.run(games, threads, out);
+        }
+        double seconds = Math.max(1, System.nanoTime() - start) / 1e9;
+        System.out.printf("%d games (%s, depth %d) on %d threads in %.1f s: %.1f games/s%n",
+                games, mode, depth, threads, seconds, games / seconds);
+        System.out.printf("side 1 wins %d, side 2 wins %d, no winner %d, %.1f plies per game%n",
+                selfPlay.getWins(1), selfPlay.getWins(2), selfPlay.getWins(0),
+                selfPlay.getPlies() / (double) Math.max(1, games));
+        System.out.println("Games written to " + file);
+    }
+
+    /**
+     * Plays the games and writes one line per game to out, in the order they finish.
+     */
+    public void run(int games, int threads, Writer out) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            Future<?>[] workers = new Future<?>[threads];
+            for (int i = 0; i < threads; i++) {
+                workers[i] = pool.submit(() -> {
+                    SearchEngine engine = new SearchEngine(HASH_MEGABYTES);
+                    for (int game = nextGame.getAndIncrement(); game < games; game = nextGame.getAndIncrement()) {
+                        GameRecord record = play(engine, game);
+                        synchronized (out) {
+                            out.write(record.toString());
+                            out.write('\n');
+                        }
+                    }
+                    return null;
+                });
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    public int getWins(int side) {
+        return wins[side].get();
+    }
+
+    public long getPlies() {
+        return plies.get();
+    }
+
+    // Plays one game; the game number selects the random side and the random seed
+    GameRecord play(SearchEngine engine, int game) {
+        Random random = new Random(seed + game);
+        int randomSide = mode == Mode.RANDOM ? 1 + (game & 1) : 0;
+        GameRecord record = new GameRecord();
+        BitBoard board = BitBoard.initial();
+        MoveList moves = new MoveList();
+        int side = 1;
+        for (int ply = 0; ply < MAX_PLIES; ply++, side = BitBoard.opponent(side)) {
+            int n = MoveGenerator.generate(board, side, moves);
+            if (n == 0) {
+                break;
+            }
+            if (side == randomSide || (mode == Mode.ENGINE && ply < RANDOM_PLIES)) {
+                int move = random.nextInt(n);
+                record.addMove(moves, move);
+                moves.apply(board, move);
+            } else {
+                SearchResult result = engine.search(board, side, SEARCH_TIME_MILLIS, depth);
+                record.addMove(result);
+                result.apply(board);
+            }
+        }
+        // The side to move with no legal move has lost
+        int winner = MoveGenerator.hasMoves(board, side) ? 0 : BitBoard.opponent(side);
+        record.setWinner(winner);
+        wins[winner].incrementAndGet();
+        plies.addAndGet(record.length());
+        return record;
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.damka;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The board of a game session, rebuilt from a checkpoint and the move records that follow
+ * it. Moves are applied strictly in sequence order: a record that arrives before the one
+ * it follows is held back until the gap is filled, and records at or below the confirmed
+ * sequence number are ignored. The sides take turns, side 1 first, so a record of the
+ * wrong side for its sequence number is as illegal as any other illegal move.
+ *
+ * Local moves are optimistic: play() shows them on getBoard() at once with the next free
+ * sequence number, and they stay pending until the backend confirms them (confirm(), or
+ * their own echo arriving through receive()). When another record takes that sequence
+ * number first, or the commit is rejected, every pending local move is rolled back and
+ * getBoard() returns to the confirmed board.
+ *
+ * Not thread safe.
+ */
+public final class SessionBoard {
+    // A full board is written every CHECKPOINT_INTERVAL moves so late joiners need few records
+    public static final int CHECKPOINT_INTERVAL = 20;
+
+    // receive() result for a move that is not legal on the board it follows
+    public static final int REJECTED = -1;
+
+    private final BitBoard confirmed = BitBoard.initial();
+    private final BitBoard board = BitBoard.initial(); // confirmed + pending local moves
+    private final BitBoard checkpoint = BitBoard.initial(); // confirmed board at checkpointSeq
+    private int checkpointSeq;
+    private final MoveList moves = new MoveList();
+    private final TreeMap<Integer, Long> pendingRemote = new TreeMap<>();
+    private final ArrayDeque<MoveRecord> pendingLocal = new ArrayDeque<>();
+    private int confirmedSeq;
+
+    // Read only: callers must change the board through this class
+    public BitBoard getBoard() {
+        return board;
+    }
+
+    // Read only: the board without pending local moves
+    public BitBoard getConfirmedBoard() {
+        return confirmed;
+    }
+
+    // Sequence number of the last move on getBoard(), 0 at the start of the game
+    public int getSeq() {
+        return confirmedSeq + pendingLocal.size();
+    }
+
+    public int getConfirmedSeq() {
+        return confirmedSeq;
+    }
+
+    // True while records after a missing one are held back
+    public boolean hasGap() {
+        return !pendingRemote.isEmpty();
+    }
+
+    // The oldest local move still waiting for the backend, or null
+    public MoveRecord nextToCommit() {
+        return pendingLocal.peekFirst();
+    }
+
+    public int pendingCount() {
+        return pendingLocal.size();
+    }
+
+    // The local moves waiting for the backend, oldest first
+    public Collection<MoveRecord> pendingMoves() {
+        return Collections.unmodifiableCollection(pendingLocal);
+    }
+
+    // Sequence number of the last checkpoint move confirmed here, 0 before the first one
+    public int getCheckpointSeq() {
+        return checkpointSeq;
+    }
+
+    // Read only: the confirmed board right after move getCheckpointSeq()
+    public BitBoard getCheckpointBoard() {
+        return checkpoint;
+    }
+
+    /**
+     * Restarts from a full board at the given sequence number, then applies the held-back
+     * records that follow it. Pending local moves are dropped.
+     *
+     * @return The number of held-back moves applied, or REJECTED.
+     */
+    public int reset(BitBoard start, int startSeq) {
+        confirmed.copyFrom(start);
+        setConfirmedSeq(startSeq);
+        pendingLocal.clear();
+        pendingRemote.headMap(startSeq, true).clear();
+        int applied = drain();
+        board.copyFrom(confirmed);
+        return applied;
+    }
+
+    /**
+     * Plays a local move on getBoard() and returns its pending record, numbered after the
+     * last move on the board.
+     *
+     * @throws IllegalArgumentException When the move is not legal, or not its side's turn.
+     */
+    public MoveRecord play(int from, int to, int captured) {
+        MoveRecord record = MoveRecord.of(board, getSeq() + 1, from, to, captured);
+        if (record.side != MoveRecord.sideToMove(record.seq)) {
+            throw new IllegalArgumentException("Not side " + record.side + "'s turn: " + record);
+        }
+        if (!record.applyTo(board, moves)) {
+            throw new IllegalArgumentException("Illegal move: " + record);
+        }
+        pendingLocal.addLast(record);
+        return record;
+    }
+
+    /**
+     * The backend accepted the oldest pending local move under its sequence number.
+     * Does nothing when its echo already confirmed it.
+     */
+    public void confirm(int recordSeq) {
+        MoveRecord head = pendingLocal.peekFirst();
+        if (head == null || head.seq != recordSeq || recordSeq != confirmedSeq + 1) {
+            return;
+        }
+        pendingLocal.removeFirst();
+        head.applyTo(confirmed, moves);
+        setConfirmedSeq(recordSeq);
+    }
+
+    /**
+     * The backend refused the pending local moves: drops them all.
+     *
+     * @return The number of moves rolled back.
+     */
+    public int rollback() {
+        int dropped = pendingLocal.size();
+        pendingLocal.clear();
+        board.copyFrom(confirmed);
+        return dropped;
+    }
+
+    /**
+     * Takes a record received from the backend.
+     *
+     * @return The number of confirmed moves applied (0 when the record is old or held back), or REJECTED.
+     */
+    public int receive(int recordSeq, long packed) {
+        if (recordSeq <= confirmedSeq) {
+            return 0;
+        }
+        pendingRemote.put(recordSeq, packed);
+        return drain();
+    }
+
+    public boolean isCheckpoint(int recordSeq) {
+        return recordSeq % CHECKPOINT_INTERVAL == 0;
+    }
+
+    // Keeps the board of the latest checkpoint move, which may be confirmed before its commit completes
+    private void setConfirmedSeq(int recordSeq) {
+        confirmedSeq = recordSeq;
+        if (isCheckpoint(recordSeq)) {
+            checkpoint.copyFrom(confirmed);
+            checkpointSeq = recordSeq;
+        }
+    }
+
+    // Applies the held-back records that follow the confirmed board
+    private int drain() {
+        int applied = 0;
+        Iterator<Map.Entry<Integer, Long>> it = pendingRemote.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, Long> next = it.next();
+            int recordSeq = next.getKey();
+            if (recordSeq != confirmedSeq + 1) {
+                break;
+            }
+            it.remove();
+            if (!MoveRecord.unpack(recordSeq, next.getValue()).applyTo(confirmed, moves)) {
+                return REJECTED;
+            }
+            setConfirmedSeq(recordSeq);
+            applied++;
+            MoveRecord head = pendingLocal.peekFirst();
+            if (head != null) {
+                if (head.seq == recordSeq && head.pack() == next.getValue()) {
+                    pendingLocal.removeFirst(); // our own move, already on the board
+                } else {
+                    rollback(); // the other player took this sequence number first
+                }
+            }
+        }
+        if (pendingLocal.isEmpty()) {
+            board.copyFrom(confirmed);
+        }
+        return applied;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.damka;
+
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * An immutable view of a stored game session, as delivered by a {@link GameTransport}.
+ * board is the {@link BoardCodec} text of the checkpoint after move checkpointSeq, and
+ * moves holds the packed {@link MoveRecord}s still stored, by sequence number. version
+ * grows with every state a subscription delivers.
+ */
+public final class SessionState {
+    public final long version;
+    public final String player1Id, player2Id, currentTurn;
+    public final int checkpointSeq;
+    public final int moveSeq;
+    public final String board;
+    public final SortedMap<Integer, Long> moves;
+
+    public SessionState(long version, String player1Id, String player2Id, String currentTurn,
+                        int checkpointSeq, int moveSeq, String board, SortedMap<Integer, Long> moves) {
+        this.version = version;
+        this.player1Id = player1Id;
+        this.player2Id = player2Id;
+        this.currentTurn = currentTurn;
+        this.checkpointSeq = checkpointSeq;
+        this.moveSeq = moveSeq;
+        this.board = board;
+        this.moves = Collections.unmodifiableSortedMap(moves);
+    }
+
+    // A new game at the initial position, with player 1 to move
+    public static SessionState initial(String player1Id) {
+        return new SessionState(0, player1Id, null, player1Id, 0, 0,
+                BoardCodec.encode(BitBoard.initial()), new TreeMap<>());
+    }
+
+    public SessionState withVersion(long newVersion) {
+        return new SessionState(newVersion, player1Id, player2Id, currentTurn, checkpointSeq, moveSeq, board, moves);
+    }
+
+    @Override
+    public String toString() {
+        return "SessionState{v" + version + ", players " + player1Id + "/" + player2Id + ", turn " + currentTurn
+                + ", checkpoint " + checkpointSeq + ", moveSeq " + moveSeq + ", " + moves.size() + " moves}";
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.damka;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Endgame tablebase: exact win/loss/draw results, with distance to the end of the game,
+ * for every position with up to maxPieces pieces. The file is written by
+ * {@link TablebaseGenerator} and read through a memory-mapped buffer, so a probe is an
+ * index computation and one byte read with no I/O on the search path.
+ *
+ * File format (big-endian):
+ * int MAGIC, int VERSION, int maxPieces, int tableCount,
+ * tableCount * (int signature, long offset, long entries),
+ * then one byte per position for each table: first side 1 to move, then side 2 to move.
+ *
+ * A table holds one material signature (soldiers and kings of each side). Positions are
+ * indexed by the colex rank of each piece group, so indexes with overlapping groups are
+ * unused and marked INVALID.
+ */
+public final class Tablebase {
+    public static final String FILE_NAME = "endgame.tb";
+    public static final int MAGIC = 0x444D4B54; // "DMKT"
+    public static final int VERSION = 1;
+
+    // Position codes, from the point of view of the side to move
+    public static final int NOT_FOUND = -1; // too many pieces for the tables
+    public static final int DRAW = 0;
+    public static final int WIN = 0x01;     // WIN + n: wins in n plies
+    public static final int LOSS = 0x80;    // LOSS + n: loses in n plies
+    public static final int INVALID = 0xFF;
+    public static final int MAX_DISTANCE = 0x7E;
+
+    // Soldiers never stand on their own promotion column, so each soldier group uses 28 squares
+    static final int SOLDIER_SQUARES = 28;
+    static final long[][] BINOMIAL = new long[BitBoard.NUM_OF_PLAYABLE + 1][BitBoard.NUM_OF_PLAYABLE + 1];
+
+    static {
+        for (int n = 0; n <= BitBoard.NUM_OF_PLAYABLE; n++) {
+            BINOMIAL[n][0] = 1;
+            for (int k = 1; k <= n; k++) {
+                BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + BINOMIAL[n - 1][k];
+            }
+        }
+    }
+
+    private final MappedByteBuffer buffer;
+    private final int maxPieces;
+    private final long[] offsets = new long[1 << 16]; // by signature, -1 when absent
+    private final long[] entries = new long[1 << 16];
+
+    private Tablebase(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a tablebase file, or an unsupported version.");
+        }
+        maxPieces = buffer.getInt(8);
+        int tableCount = buffer.getInt(12);
+        Arrays.fill(offsets, -1L);
+        int position = 16;
+        for (int i = 0; i < tableCount; i++) {
+            int signature = buffer.getInt(position);
+            offsets[signature] = buffer.getLong(position + 4);
+            entries[signature] = buffer.getLong(position + 12);
+            position += 20;
+        }
+    }
+
+    public static Tablebase open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            // The mapping stays valid after the channel is closed
+            return new Tablebase(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int getMaxPieces() {
+        return maxPieces;
+    }
+
+    /**
+     * @return The position code for the side to move (DRAW, WIN + n, LOSS + n), or NOT_FOUND.
+     */
+    public int probe(BitBoard board, int side) {
+        if (board.pieces(side) == 0) {
+            return LOSS;
+        }
+        if (Integer.bitCount(board.occupied()) > maxPieces) {
+            return NOT_FOUND;
+        }
+        int signature = signatureOf(board);
+        long offset = offsets[signature];
+        if (offset < 0) {
+            return NOT_FOUND;
+        }
+        long position = offset + (side == 2 ? entries[signature] : 0) + indexOf(board);
+        return buffer.get((int) position) & 0xFF;
+    }
+
+    public static boolean isWin(int code) {
+        return code >= WIN && code < LOSS;
+    }
+
+    public static boolean isLoss(int code) {
+        return code >= LOSS && code != INVALID;
+    }
+
+    // Plies to the end of the game for a win or a loss
+    public static int distanceOf(int code) {
+        return isWin(code) ? code - WIN : code - LOSS;
+    }
+
+    // Material signature: 4 bits per group, side 1 soldiers in the lowest bits
+    static int signatureOf(BitBoard board) {
+        return signature(Integer.bitCount(board.getSide1Soldiers()), Integer.bitCount(board.getSide1Kings()),
+                Integer.bitCount(board.getSide2Soldiers()), Integer.bitCount(board.getSide2Kings()));
+    }
+
+    static int signature(int side1Soldiers, int side1Kings, int side2Soldiers, int side2Kings) {
+        return side1Soldiers | side1Kings << 4 | side2Soldiers << 8 | side2Kings << 12;
+    }
+
+    // Number of indexes of a table for one side to move
+    static long tableSize(int signature) {
+        return BINOMIAL[SOLDIER_SQUARES][signature & 15] * BINOMIAL[32][(signature >> 4) & 15]
+                * BINOMIAL[SOLDIER_SQUARES][(signature >> 8) & 15] * BINOMIAL[32][(signature >> 12) & 15];
+    }
+
+    static long indexOf(BitBoard board) {
+        int side1Kings = board.getSide1Kings();
+        int side2Soldiers = board.getSide2Soldiers();
+        int side2Kings = board.getSide2Kings();
+        long index = rank(board.getSide1Soldiers());
+        index = index * BINOMIAL[32][Integer.bitCount(side1Kings)] + rank(side1Kings);
+        // Side 2 soldiers never stand on column 0, so their squares start at 4
+        index = index * BINOMIAL[SOLDIER_SQUARES][Integer.bitCount(side2Soldiers)] + rank(side2Soldiers >>> 4);
+        index = index * BINOMIAL[32][Integer.bitCount(side2Kings)] + rank(side2Kings);
+        return index;
+    }
+
+    // Colex rank of a set of squares among all sets of the same size
+    static long rank(int mask) {
+        long rank = 0;
+        int k = 1;
+        while (mask != 0) {
+            rank += BINOMIAL[Integer.numberOfTrailingZeros(mask)][k++];
+            mask &= mask - 1;
+        }
+        return rank;
+    }
+
+    // Inverse of rank: the set of k squares with the given rank
+    static int unrank(long rank, int k) {
+        int mask = 0;
+        for (int i = k; i >= 1; i--) {
+            int sq = i - 1;
+            while (BINOMIAL[sq + 1][i] <= rank) {
+                sq++;
+            }
+            mask |= 1 << sq;
+            rank -= BINOMIAL[sq][i];
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.damka;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Offline retrograde analysis for {@link Tablebase}. Tables are solved from fewer pieces
+ * to more, and for the same number of pieces from fewer soldiers to more, so captures and
+ * promotions always lead into a table that is already solved.
+ *
+ * Inside a table, pass k marks the positions that win in k plies (a move to a position
+ * lost in k - 1) and the positions lost in k plies (every move goes to a position won in
+ * at most k - 1). Positions never marked are draws.
+ *
+ * Run from the command line with: java com.example.damka.TablebaseGenerator [maxPieces] [file]
+ */
+public final class TablebaseGenerator {
+    private final int maxPieces;
+    private final byte[][] tables = new byte[1 << 16][];
+    private final List<Integer> solved = new ArrayList<>();
+    private int nextDistance; // shortest result >= the current pass seen among children
+
+    private final BitBoard board = new BitBoard();
+    private final BitBoard child = new BitBoard();
+    private final MoveList moves = new MoveList();
+
+    public TablebaseGenerator(int maxPieces) {
+        if (maxPieces < 2 || maxPieces > 8) {
+            throw new IllegalArgumentException("maxPieces must be between 2 and 8.");
+        }
+        this.maxPieces = maxPieces;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int maxPieces = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        File file = new File(args.length > 1 ? args[1] : Tablebase.FILE_NAME);
+        long start = System.currentTimeMillis();
+        TablebaseGenerator generator = new TablebaseGenerator(maxPieces);
+        generator.generate();
+        generator.write(file);
+        System.out.println("Wrote " + file + " (" + file.length() + " bytes) in "
+                + (System.currentTimeMillis() - start) + " ms.");
+    }
+
+    public void generate() {
+        for (int total = 2; total <= maxPieces; total++) {
+            for (int soldiers = 0; soldiers <= total; soldiers++) {
+                for (int side1Soldiers = 0; side1Soldiers <= soldiers; side1Soldiers++) {
+                    int side2Soldiers = soldiers - side1Soldiers;
+                    for (int side1Kings = 0; side1Kings <= total - soldiers; side1Kings++) {
+                        int side2Kings = total - soldiers - side1Kings;
+                        if (side1Soldiers + side1Kings == 0 || side2Soldiers + side2Kings == 0) {
+                            continue; // the game is already over
+                        }
+                        solve(Tablebase.signature(side1Soldiers, side1Kings, side2Soldiers, side2Kings));
+                    }
+                }
+            }
+        }
+    }
+
+    public void write(File file) throws IOException {
+        long offset = 16 + solved.size() * 20L;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(Tablebase.MAGIC);
+            out.writeInt(Tablebase.VERSION);
+            out.writeInt(maxPieces);
+            out.writeInt(solved.size());
+            for (int signature : solved) {
+                out.writeInt(signature);
+                out.writeLong(offset);
+                out.writeLong(Tablebase.tableSize(signature));
+                offset += tables[signature].length;
+            }
+            for (int signature : solved) {
+                out.write(tables[signature]);
+            }
+        }
+    }
+
+    private void solve(int signature) {
+        long size = Tablebase.tableSize(signature);
+        if (size * 2 > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Table too large: " + Integer.toHexString(signature));
+        }
+        byte[] values = new byte[(int) size * 2];
+        tables[signature] = values;
+        int[][] groups = {
+                masks(Tablebase.SOLDIER_SQUARES, signature & 15, 0),
+                masks(32, (signature >> 4) & 15, 0),
+                masks(Tablebase.SOLDIER_SQUARES, (signature >> 8) & 15, 4),
+                masks(32, (signature >> 12) & 15, 0)
+        };
+
+        // Pass 0: unused indexes and positions where the side to move is stuck
+        for (int side = 1; side <= 2; side++) {
+            int base = side == 2 ? (int) size : 0;
+            for (int index = 0; index < size; index++) {
+                if (!decode(index, groups)) {
+                    values[base + index] = (byte) Tablebase.INVALID;
+                } else if (!MoveGenerator.hasMoves(board, side)) {
+                    values[base + index] = (byte) Tablebase.LOSS;
+                }
+            }
+        }
+
+        for (int k = 1; k <= Tablebase.MAX_DISTANCE; k++) {
+            boolean changed = false;
+            nextDistance = Integer.MAX_VALUE;
+            for (int side = 1; side <= 2; side++) {
+                int base = side == 2 ? (int) size : 0;
+                for (int index = 0; index < size; index++) {
+                    if (values[base + index] != Tablebase.DRAW) {
+                        continue;
+                    }
+                    decode(index, groups);
+                    int result = resolve(side, k);
+                    if (result != Tablebase.DRAW) {
+                        values[base + index] = (byte) result;
+                        changed = true;
+                    }
+                }
+            }
+            if (!changed) {
+                // Nothing moves until a pass reaches the distance of an already solved child
+                if (nextDistance == Integer.MAX_VALUE) {
+                    break;
+                }
+                k = nextDistance; // the loop continues at pass nextDistance + 1
+            }
+        }
+        solved.add(signature);
+    }
+
+    // Result of the decoded board at pass k, or DRAW while it is still unknown
+    private int resolve(int side, int k) {
+        int n = MoveGenerator.generate(board, side, moves);
+        int opponent = BitBoard.opponent(side);
+        boolean allLost = true;
+        for (int i = 0; i < n; i++) {
+            child.copyFrom(board);
+            moves.apply(child, i);
+            int code = lookup(child, opponent);
+            if (code == Tablebase.LOSS + k - 1) {
+                return Tablebase.WIN + k;
+            }
+            if (!Tablebase.isWin(code) || Tablebase.distanceOf(code) > k - 1) {
+                allLost = false;
+            }
+            if ((Tablebase.isWin(code) || Tablebase.isLoss(code)) && Tablebase.distanceOf(code) >= k) {
+                nextDistance = Math.min(nextDistance, Tablebase.distanceOf(code));
+            }
+        }
+        return allLost ? Tablebase.LOSS + k : Tablebase.DRAW;
+    }
+
+    private int lookup(BitBoard position, int side) {
+        if (position.pieces(side) == 0) {
+            return Tablebase.LOSS;
+        }
+        int signature = Tablebase.signatureOf(position);
+        long size = Tablebase.tableSize(signature);
+        long index = Tablebase.indexOf(position) + (side == 2 ? size : 0);
+        return tables[signature][(int) index] & 0xFF;
+    }
+
+    // Loads the position at index into board; false when two groups share a square
+    private boolean decode(long index, int[][] groups) {
+        int side2Kings = groups[3][(int) (index % groups[3].length)];
+        index /= groups[3].length;
+        int side2Soldiers = groups[2][(int) (index % groups[2].length)];
+        index /= groups[2].length;
+        int side1Kings = groups[1][(int) (index % groups[1].length)];
+        index /= groups[1].length;
+        int side1Soldiers = groups[0][(int) index];
+        board.set(side1Soldiers, side1Kings, side2Soldiers, side2Kings);
+        int occupied = side1Soldiers | side1Kings | side2Soldiers | side2Kings;
+        return Integer.bitCount(occupied) == Integer.bitCount(side1Soldiers) + Integer.bitCount(side1Kings)
+                + Integer.bitCount(side2Soldiers) + Integer.bitCount(side2Kings);
+    }
+
+    // Every set of k squares out of n, in rank order, shifted to the group's first square
+    private static int[] masks(int n, int k, int shift) {
+        int[] masks = new int[(int) Tablebase.BINOMIAL[n][k]];
+        for (int rank = 0; rank < masks.length; rank++) {
+            masks[rank] = Tablebase.unrank(rank, k) << shift;
+        }
+        return masks;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.damka;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size transposition table keyed by {@link Zobrist} hashes. The memory budget is
+ * set once at construction (16 bytes per entry, rounded down to a power of two entries).
+ * Replacement prefers deeper entries from the current search.
+ *
+ * The table is lock-free and may be shared by several search threads: the key slot holds
+ * key ^ data, so an entry torn by two threads writing at once fails the check in probe()
+ * and reads as a miss instead of returning another position's data.
+ */
+public final class TranspositionTable {
+    public static final int EXACT = 0;
+    public static final int LOWER_BOUND = 1;
+    public static final int UPPER_BOUND = 2;
+
+    public static final long MISS = 0L;
+    private static final long VALID = 1L << 63;
+
+    private final long[] keys; // key ^ data
+    private final long[] data;
+    private final int mask;
+    private volatile int generation;
+
+    public TranspositionTable(int megabytes) {
+        long entries = Math.max(1024L, megabytes * 1024L * 1024L / 16);
+        int size = Integer.highestOneBit((int) Math.min(entries, 1 << 30));
+        keys = new long[size];
+        data = new long[size];
+        mask = size - 1;
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(data, 0L);
+        generation = 0;
+    }
+
+    // Called once per search so entries from older searches are replaced first
+    public void newSearch() {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    /**
+     * @return The packed entry for the key, or MISS.
+     */
+    public long probe(long key) {
+        int index = (int) key & mask;
+        long entry = data[index];
+        return (keys[index] ^ entry) == key ? entry : MISS;
+    }
+
+    public void store(long key, int depth, int flag, int score, int from, int to) {
+        int index = (int) key & mask;
+        long old = data[index];
+        int currentGeneration = generation;
+        if ((keys[index] ^ old) != key && old != MISS && generationOf(old) == currentGeneration && depthOf(old) > depth) {
+            return; // keep the deeper entry of this search
+        }
+        long entry = pack(depth, flag, score, from, to, currentGeneration);
+        keys[index] = key ^ entry;
+        data[index] = entry;
+    }
+
+    static long pack(int depth, int flag, int score, int from, int to, int generation) {
+        return VALID
+                | (score & 0xFFFFL)
+                | ((long) (depth & 0xFF) << 16)
+                | ((long) (flag & 3) << 24)
+                | ((long) (from & 31) << 26)
+                | ((long) (to & 31) << 31)
+                | ((long) (generation & 0xFF) << 36);
+    }
+
+    public static int scoreOf(long entry) {
+        return (short) entry;
+    }
+
+    public static int depthOf(long entry) {
+        return (int) (entry >>> 16) & 0xFF;
+    }
+
+    public static int flagOf(long entry) {
+        return (int) (entry >>> 24) & 3;
+    }
+
+    public static int fromOf(long entry) {
+        return (int) (entry >>> 26) & 31;
+    }
+
+    public static int toOf(long entry) {
+        return (int) (entry >>> 31) & 31;
+    }
+
+    static int generationOf(long entry) {
+        return (int) (entry >>> 36) & 0xFF;
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.damka;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A player's Users document: name, record and {@link Elo} rating, as kept in a {@link ReadCache}.
+ */
+public final class UserProfile {
+    public final String username;
+    public final long wins;
+    public final long losses;
+    public final int rating;
+
+    public static final ReadCache.Codec<UserProfile> CODEC = new ReadCache.Codec<UserProfile>() {
+        @Override
+        public void write(UserProfile profile, DataOutputStream out) throws IOException {
+            out.writeBoolean(profile.username != null);
+            if (profile.username != null) {
+                out.writeUTF(profile.username);
+            }
+            out.writeLong(profile.wins);
+            out.writeLong(profile.losses);
+            out.writeInt(profile.rating);
+        }
+
+        @Override
+        public UserProfile read(DataInputStream in) throws IOException {
+            String username = in.readBoolean() ? in.readUTF() : null;
+            return new UserProfile(username, in.readLong(), in.readLong(), in.readInt());
+        }
+    };
+
+    public UserProfile(String username, long wins, long losses, int rating) {
+        this.username = username;
+        this.wins = wins;
+        this.losses = losses;
+        this.rating = rating;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.damka;
+
+/**
+ * Zobrist hashing of a position: one random key per (piece type, square) plus a key
+ * for side 2 to move. Used to index the transposition table.
+ */
+public final class Zobrist {
+    // KEYS[type * 32 + sq], type: 0 side1 soldier, 1 side1 king, 2 side2 soldier, 3 side2 king
+    private static final long[] KEYS = new long[4 * BitBoard.NUM_OF_PLAYABLE];
+    private static final long SIDE2_TO_MOVE;
+
+    static {
+        long seed = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < KEYS.length; i++) {
+            seed = nextSeed(seed);
+            KEYS[i] = mix(seed);
+        }
+        SIDE2_TO_MOVE = mix(nextSeed(seed));
+    }
+
+    private Zobrist() {
+    }
+
+    public static long hash(BitBoard board, int side) {
+        long key = side == 2 ? SIDE2_TO_MOVE : 0L;
+        key ^= hashMask(board.getSide1Soldiers(), 0);
+        key ^= hashMask(board.getSide1Kings(), 1);
+        key ^= hashMask(board.getSide2Soldiers(), 2);
+        key ^= hashMask(board.getSide2Kings(), 3);
+        return key;
+    }
+
+    private static long hashMask(int mask, int type) {
+        long key = 0L;
+        while (mask != 0) {
+            key ^= KEYS[type * BitBoard.NUM_OF_PLAYABLE + Integer.numberOfTrailingZeros(mask)];
+            mask &= mask - 1;
+        }
+        return key;
+    }
+
+    // SplitMix64, so the keys are the same on every run and every device
+    private static long nextSeed(long seed) {
+        return seed + 0x9E3779B97F4A7C15L;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.damka;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Board text encoding and the legacy list format.
+ */
+public class BoardCodecTest {
+
+    private static BitBoard randomBoard(Random random) {
+        int[] masks = new int[4];
+        for (int sq = 0; sq < BitBoard.NUM_OF_PLAYABLE; sq++) {
+            int value = random.nextInt(5);
+            if (value > 0) {
+                masks[value - 1] |= 1 << sq;
+            }
+        }
+        // boardState values 1..4 are side 1 soldier, side 2 soldier, side 1 king, side 2 king
+        return new BitBoard(masks[0], masks[2], masks[1], masks[3]);
+    }
+
+    // The board in the old Firebase format: 8 lists of 8 Longs
+    private static List<List<Long>> toRows(BitBoard board) {
+        List<List<Long>> rows = new ArrayList<>();
+        for (int[] column : board.toArray()) {
+            List<Long> row = new ArrayList<>();
+            for (int cell : column) {
+                row.add((long) cell);
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    @Test
+    public void encode_roundTrip() {
+        Random random = new Random(1);
+        BitBoard decoded = new BitBoard();
+        for (int i = 0; i < 1000; i++) {
+            BitBoard board = randomBoard(random);
+            String text = BoardCodec.encode(board);
+            assertEquals(BoardCodec.LENGTH, text.length());
+            BoardCodec.decode(text, decoded);
+            assertEquals(board, decoded);
+        }
+    }
+
+    @Test
+    public void decodeValue_readsLegacyRows() {
+        Random random = new Random(2);
+        BitBoard decoded = new BitBoard();
+        for (int i = 0; i < 100; i++) {
+            BitBoard board = randomBoard(random);
+            BoardCodec.decodeValue(toRows(board), decoded);
+            assertEquals(board, decoded);
+        }
+        BoardCodec.decodeValue(BoardCodec.encode(BitBoard.initial()), decoded);
+        assertEquals(BitBoard.initial(), decoded);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_rejectsWrongLength() {
+        BoardCodec.decode("AAAA", new BitBoard());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_rejectsBadSquareValue() {
+        BoardCodec.decode("________________", new BitBoard()); // 7 in every square
+    }
+}
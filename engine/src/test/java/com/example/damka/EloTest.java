@@ -0,0 +1,39 @@
+package com.example.damka;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Rating updates after a game.
+ */
+public class EloTest {
+
+    @Test
+    public void expected_isSymmetric() {
+        assertEquals(0.5, Elo.expected(1500, 1500), 1e-9);
+        assertEquals(1, Elo.expected(1600, 1400) + Elo.expected(1400, 1600), 1e-9);
+        assertEquals(0.76, Elo.expected(1600, 1400), 0.01);
+    }
+
+    @Test
+    public void updated_movesEqualPlayersByHalfK() {
+        assertEquals(1500 + Elo.K / 2, Elo.updated(1500, 1500, 1, Elo.PROVISIONAL_GAMES));
+        assertEquals(1500 - Elo.K / 2, Elo.updated(1500, 1500, 0, Elo.PROVISIONAL_GAMES));
+        assertEquals(1500, Elo.updated(1500, 1500, 0.5, Elo.PROVISIONAL_GAMES));
+    }
+
+    @Test
+    public void updated_provisionalPlayersMoveFaster() {
+        int provisional = Elo.updated(Elo.INITIAL, Elo.INITIAL, 1, 0) - Elo.INITIAL;
+        int settled = Elo.updated(Elo.INITIAL, Elo.INITIAL, 1, Elo.PROVISIONAL_GAMES) - Elo.INITIAL;
+        assertTrue(provisional > settled);
+    }
+
+    @Test
+    public void updated_upsetGainsMore() {
+        int upset = Elo.updated(1400, 1600, 1, Elo.PROVISIONAL_GAMES) - 1400;
+        int expectedWin = Elo.updated(1600, 1400, 1, Elo.PROVISIONAL_GAMES) - 1600;
+        assertTrue(upset > expectedWin);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.damka;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Rank order under single-row updates.
+ */
+public class LeaderboardTest {
+
+    private static String names(Leaderboard leaderboard) {
+        StringBuilder names = new StringBuilder();
+        for (Leaderboard.Entry entry : leaderboard.toList()) {
+            names.append(entry.name);
+        }
+        return names.toString();
+    }
+
+    @Test
+    public void put_keepsRankOrder() {
+        Leaderboard leaderboard = new Leaderboard();
+        leaderboard.put(new Leaderboard.Entry("a", "A", 3));
+        leaderboard.put(new Leaderboard.Entry("b", "B", 7));
+        leaderboard.put(new Leaderboard.Entry("c", "C", 5));
+        assertEquals("BCA", names(leaderboard));
+
+        assertTrue(leaderboard.put(new Leaderboard.Entry("a", "A", 9)));
+        assertEquals("ABC", names(leaderboard));
+        assertEquals(3, leaderboard.size());
+    }
+
+    @Test
+    public void put_sameRowIsNoChange() {
+        Leaderboard leaderboard = new Leaderboard();
+        assertTrue(leaderboard.put(new Leaderboard.Entry("a", "A", 3)));
+        assertFalse(leaderboard.put(new Leaderboard.Entry("a", "A", 3)));
+        assertTrue(leaderboard.put(new Leaderboard.Entry("a", "Renamed", 3)));
+    }
+
+    @Test
+    public void ties_inReverseKeyOrder() {
+        Leaderboard leaderboard = new Leaderboard();
+        leaderboard.put(new Leaderboard.Entry("k1", "X", 4));
+        leaderboard.put(new Leaderboard.Entry("k2", "Y", 4));
+        assertEquals("YX", names(leaderboard));
+    }
+
+    @Test
+    public void remove_dropsRow() {
+        Leaderboard leaderboard = new Leaderboard();
+        leaderboard.put(new Leaderboard.Entry("a", "A", 3));
+        leaderboard.put(new Leaderboard.Entry("b", "B", 7));
+        assertTrue(leaderboard.remove("b"));
+        assertFalse(leaderboard.remove("b"));
+        List<Leaderboard.Entry> rows = leaderboard.toList();
+        assertEquals(1, rows.size());
+        assertEquals("a", rows.get(0).key);
+    }
+}
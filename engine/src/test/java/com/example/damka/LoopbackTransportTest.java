@@ -0,0 +1,168 @@
+package com.example.damka;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * The in-process transport: conditional commits and what subscribers see.
+ */
+public class LoopbackTransportTest {
+
+    // Records the events of a subscription; used with a direct executor
+    private static final class Recorder implements GameTransport.Listener {
+        final SessionBoard session = new SessionBoard();
+        SessionState state;
+        boolean connected;
+
+        @Override
+        public void onSession(SessionState newState) {
+            if (state == null || newState.version > state.version) {
+                state = newState;
+            }
+        }
+
+        @Override
+        public void onMove(int seq, long packed) {
+            session.receive(seq, packed);
+        }
+
+        @Override
+        public void onConnected(boolean isConnected) {
+            connected = isConnected;
+        }
+    }
+
+    private static Exception commit(GameTransport transport, String gameId, MoveRecord... moves) {
+        Exception[] result = new Exception[1];
+        transport.commitMoves(gameId, Arrays.asList(moves), "next", error -> result[0] = error);
+        return result[0];
+    }
+
+    @Test
+    public void commitMoves_rejectsTakenSequenceNumber() {
+        LoopbackTransport transport = new LoopbackTransport();
+        transport.create("g", SessionState.initial("p1"), error -> assertNull(error));
+        Recorder recorder = new Recorder();
+        transport.subscribe("g", Runnable::run, recorder);
+
+        SessionBoard mine = new SessionBoard();
+        SessionBoard theirs = new SessionBoard();
+        MoveRecord first = mine.play(9, 13, 0);
+        MoveRecord second = mine.play(21, 17, 0);
+        assertNull(commit(transport, "g", first, second));
+        assertNotNull(commit(transport, "g", theirs.play(10, 14, 0)));
+
+        assertTrue(recorder.connected);
+        assertEquals(2, recorder.state.moveSeq);
+        assertEquals("next", recorder.state.currentTurn);
+        assertEquals(mine.getBoard(), recorder.session.getBoard());
+    }
+
+    @Test
+    public void commitMoves_rejectsMoveOutOfTurn() {
+        LoopbackTransport transport = new LoopbackTransport();
+        transport.create("g", SessionState.initial("p1"), error -> assertNull(error));
+        MoveRecord first = new SessionBoard().play(9, 13, 0);
+        assertNull(commit(transport, "g", first));
+
+        // Side 1 again, at the sequence number of side 2's move
+        assertNotNull(commit(transport, "g", new MoveRecord(2, 1, 10, 14, 0, false)));
+        Recorder recorder = new Recorder();
+        transport.subscribe("g", Runnable::run, recorder);
+        assertEquals(1, recorder.state.moveSeq);
+    }
+
+    @Test
+    public void commitMoves_rejectsGapAfterMoveSeq() {
+        LoopbackTransport transport = new LoopbackTransport();
+        transport.create("g", SessionState.initial("p1"), error -> assertNull(error));
+        assertNotNull(commit(transport, "g", new MoveRecord(3, 1, 9, 13, 0, false)));
+        Recorder recorder = new Recorder();
+        transport.subscribe("g", Runnable::run, recorder);
+        assertEquals(0, recorder.state.moveSeq);
+        assertTrue(recorder.state.moves.isEmpty());
+    }
+
+    @Test
+    public void join_takesFreeSeatOnce() {
+        LoopbackTransport transport = new LoopbackTransport();
+        transport.create("g", SessionState.initial("p1"), error -> assertNull(error));
+        List<Exception> results = new ArrayList<>();
+        transport.join("g", "p2", results::add);
+        transport.join("g", "p3", results::add);
+        assertNull(results.get(0));
+        assertNotNull(results.get(1));
+
+        Recorder late = new Recorder();
+        transport.subscribe("g", Runnable::run, late);
+        assertEquals("p2", late.state.player2Id);
+    }
+
+    @Test
+    public void create_keepsPlayerWhoAlreadyJoined() {
+        LoopbackTransport transport = new LoopbackTransport();
+        transport.create("g", SessionState.initial("p1"), error -> assertNull(error));
+        transport.join("g", "p2", error -> assertNull(error));
+        transport.create("g", SessionState.initial("p1"), error -> assertNull(error));
+
+        Recorder recorder = new Recorder();
+        transport.subscribe("g", Runnable::run, recorder);
+        assertEquals("p2", recorder.state.player2Id);
+    }
+
+    @Test
+    public void writeCheckpoint_prunesOlderMoves() {
+        LoopbackTransport transport = new LoopbackTransport();
+        transport.create("g", SessionState.initial("p1"), error -> assertNull(error));
+        SessionBoard session = new SessionBoard();
+        MoveList moves = new MoveList();
+        int checkpointSeq = 2 * SessionBoard.CHECKPOINT_INTERVAL;
+        for (int side = 1; session.getSeq() < checkpointSeq; side = BitBoard.opponent(side)) {
+            assertTrue(MoveGenerator.generate(session.getBoard(), side, moves) > 0);
+            assertNull(commit(transport, "g", session.play(moves.from(0), moves.to(0), moves.captured(0))));
+        }
+        transport.writeCheckpoint("g", checkpointSeq, BoardCodec.encode(session.getBoard()), error -> assertNull(error));
+
+        Recorder joiner = new Recorder();
+        transport.subscribe("g", Runnable::run, joiner);
+        assertEquals(checkpointSeq, joiner.state.checkpointSeq);
+        assertEquals(SessionBoard.CHECKPOINT_INTERVAL, joiner.state.moves.size());
+        assertEquals(Integer.valueOf(SessionBoard.CHECKPOINT_INTERVAL + 1), joiner.state.moves.firstKey());
+    }
+
+    @Test
+    public void concurrentCommits_takeEachSequenceNumberOnce() throws InterruptedException {
+        LoopbackTransport transport = new LoopbackTransport();
+        transport.create("g", SessionState.initial("p1"), error -> assertNull(error));
+        int threads = 4;
+        AtomicInteger accepted = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            pool.execute(() -> {
+                for (int seq = 1; seq <= 200; seq++) {
+                    MoveRecord record = new MoveRecord(seq, MoveRecord.sideToMove(seq), 9, 13, 0, false);
+                    if (commit(transport, "g", record) == null) {
+                        accepted.incrementAndGet();
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        Recorder recorder = new Recorder();
+        transport.subscribe("g", Runnable::run, recorder);
+        assertEquals(recorder.state.moves.size(), accepted.get());
+        assertEquals(Collections.max(recorder.state.moves.keySet()).intValue(), recorder.state.moveSeq);
+    }
+}
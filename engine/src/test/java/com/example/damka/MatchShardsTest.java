@@ -0,0 +1,54 @@
+package com.example.damka;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Shard probing order and entry expiry.
+ */
+public class MatchShardsTest {
+
+    @Test
+    public void probeOrder_visitsEveryShardOnce() {
+        Random random = new Random(7);
+        for (int round = 0; round < 100; round++) {
+            boolean[] seen = new boolean[MatchShards.SHARDS];
+            for (int shard : MatchShards.probeOrder(random)) {
+                assertFalse(seen[shard]);
+                seen[shard] = true;
+            }
+        }
+    }
+
+    @Test
+    public void probeOrder_startsAnywhere() {
+        Random random = new Random(7);
+        int[] firsts = new int[MatchShards.SHARDS];
+        for (int round = 0; round < 100 * MatchShards.SHARDS; round++) {
+            firsts[MatchShards.probeOrder(random)[0]]++;
+        }
+        for (int count : firsts) {
+            assertTrue(count > 50);
+        }
+    }
+
+    @Test
+    public void isExpired_afterTtl() {
+        long now = 1_000_000;
+        long expiresAt = MatchShards.expiresAt(now);
+        assertFalse(MatchShards.isExpired(expiresAt, now + MatchShards.TTL_MILLIS - 1));
+        assertTrue(MatchShards.isExpired(expiresAt, now + MatchShards.TTL_MILLIS));
+    }
+
+    @Test
+    public void bandsAt_widensOneBandEitherSide() {
+        int band = MatchShards.bandOf(1250);
+        assertEquals(12, band);
+        assertArrayEquals(new int[] {12}, MatchShards.bandsAt(band, 0));
+        assertArrayEquals(new int[] {10, 14}, MatchShards.bandsAt(band, 2));
+        assertEquals(-1, MatchShards.bandOf(-1));
+    }
+}
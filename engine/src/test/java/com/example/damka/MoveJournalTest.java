@@ -0,0 +1,109 @@
+package com.example.damka;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * The journal of unacknowledged local moves, across reopens.
+ */
+public class MoveJournalTest {
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("moves", ".journal");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private static MoveRecord move(int seq) {
+        return new MoveRecord(seq, 2 - seq % 2, seq % 32, (seq + 4) % 32, 0, false);
+    }
+
+    @Test
+    public void syncedMovesSurviveReopen() throws IOException {
+        MoveJournal journal = MoveJournal.open(file);
+        journal.append(move(1));
+        journal.append(move(2));
+        journal.sync();
+        assertEquals(2 * MoveJournal.ENTRY_SIZE, file.length());
+
+        try (MoveJournal reopened = MoveJournal.open(file)) {
+            assertEquals(Arrays.asList(move(1), move(2)), reopened.pending());
+        }
+    }
+
+    @Test
+    public void trimmedPrefixIsGoneAfterReopen() throws IOException {
+        try (MoveJournal journal = MoveJournal.open(file)) {
+            for (int seq = 1; seq <= 5; seq++) {
+                journal.append(move(seq));
+            }
+            journal.trim(3);
+            assertEquals(Arrays.asList(move(4), move(5)), journal.pending());
+        }
+        try (MoveJournal reopened = MoveJournal.open(file)) {
+            assertEquals(Arrays.asList(move(4), move(5)), reopened.pending());
+        }
+    }
+
+    @Test
+    public void delete_removesFile() throws IOException {
+        MoveJournal journal = MoveJournal.open(file);
+        journal.append(move(1));
+        journal.trim(1);
+        journal.sync();
+        assertTrue(journal.isEmpty());
+        journal.delete();
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void tornEntryIsDropped() throws IOException {
+        try (MoveJournal journal = MoveJournal.open(file)) {
+            journal.append(move(1));
+            journal.append(move(2));
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 5); // killed in the middle of the second entry
+        }
+        try (MoveJournal reopened = MoveJournal.open(file)) {
+            assertEquals(Collections.singletonList(move(1)), reopened.pending());
+            reopened.append(move(2));
+        }
+        try (MoveJournal reopened = MoveJournal.open(file)) {
+            assertEquals(Arrays.asList(move(1), move(2)), reopened.pending());
+        }
+    }
+
+    @Test
+    public void compactionKeepsOnlyPendingMoves() throws IOException {
+        try (MoveJournal journal = MoveJournal.open(file)) {
+            for (int seq = 1; seq <= 200; seq++) {
+                journal.append(move(seq));
+                if (seq % 2 == 0) {
+                    journal.trim(seq - 1); // acknowledged one move behind
+                }
+                journal.sync();
+            }
+            assertTrue("rewritten, not grown", file.length() < 200 * MoveJournal.ENTRY_SIZE);
+        }
+        try (MoveJournal reopened = MoveJournal.open(file)) {
+            List<MoveRecord> pending = reopened.pending();
+            assertEquals(Collections.singletonList(move(200)), pending);
+        }
+    }
+}
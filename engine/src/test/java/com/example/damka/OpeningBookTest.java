@@ -0,0 +1,86 @@
+package com.example.damka;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Game records and the opening book built from them.
+ */
+public class OpeningBookTest {
+
+    // A random game of at most maxPlies plies, with the positions it went through
+    private static GameRecord randomGame(Random random, int maxPlies, List<BitBoard> positions) {
+        GameRecord game = new GameRecord();
+        BitBoard board = BitBoard.initial();
+        MoveList moves = new MoveList();
+        positions.add(BitBoard.initial());
+        for (int ply = 0, side = 1; ply < maxPlies; ply++, side = BitBoard.opponent(side)) {
+            int n = MoveGenerator.generate(board, side, moves);
+            if (n == 0) {
+                break;
+            }
+            int move = random.nextInt(n);
+            game.addMove(moves, move);
+            moves.apply(board, move);
+            BitBoard position = new BitBoard();
+            position.copyFrom(board);
+            positions.add(position);
+        }
+        game.setWinner(board.winner());
+        return game;
+    }
+
+    @Test
+    public void gameRecord_textRoundTrip() {
+        Random random = new Random(1);
+        for (int i = 0; i < 50; i++) {
+            GameRecord game = randomGame(random, 200, new ArrayList<>());
+            String line = game.toString();
+            assertEquals(line, GameRecord.parse(line).toString());
+        }
+    }
+
+    @Test
+    public void gameRecord_fromBoardStates() {
+        Random random = new Random(2);
+        for (int i = 0; i < 50; i++) {
+            List<BitBoard> positions = new ArrayList<>();
+            GameRecord game = randomGame(random, 200, positions);
+            positions.add(1, positions.get(0)); // a repeated write is ignored
+            assertEquals(game.toString(), GameRecord.fromPositions(positions).toString());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void gameRecord_rejectsIllegalMove() {
+        GameRecord.parse("0 0-4");
+    }
+
+    @Test
+    public void openingBook_playsOnlyWinningMoves() throws IOException {
+        OpeningBookBuilder builder = new OpeningBookBuilder(4);
+        builder.addGame(GameRecord.parse("1 9-13 21-17"));
+        builder.addGame(GameRecord.parse("2 10-14 21-17"));
+        File file = File.createTempFile("opening", ".book");
+        file.deleteOnExit();
+        assertEquals(2, builder.write(file));
+
+        OpeningBook book = OpeningBook.open(file);
+        Random random = new Random(3);
+        for (int i = 0; i < 20; i++) {
+            SearchResult move = book.choose(BitBoard.initial(), 1, random);
+            assertNotNull(move);
+            assertEquals(9, move.from);
+            assertEquals(13, move.to);
+        }
+        // Not in the book: the search has to play
+        assertNull(book.choose(BitBoard.initial(), 2, random));
+    }
+}
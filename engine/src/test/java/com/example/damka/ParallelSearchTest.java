@@ -0,0 +1,122 @@
+package com.example.damka;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Lazy SMP against the single-threaded search, and stopping it from another thread.
+ */
+public class ParallelSearchTest {
+    private static final int THREADS = 4;
+    private static final int DEPTH = 6;
+
+    // Positions where one move of side 1 wins, so every correct search picks it
+    private static final BitBoard[] FORCED_WINS = {
+            new BitBoard(0x00040300, 0, 0x00402000, 0),
+            new BitBoard(0x00D00000, 0, 0x05000000, 0),
+            new BitBoard(0x00006020, 0, 0x02100000, 0),
+            new BitBoard(0x02080040, 0, 0x08100000, 0),
+    };
+
+    private static final int[] WIN_SCORES = {
+            SearchEngine.WIN - 1, SearchEngine.WIN - 3, SearchEngine.WIN - 5, SearchEngine.WIN - 5,
+    };
+
+    private ParallelSearch search;
+
+    @After
+    public void tearDown() {
+        if (search != null) {
+            search.shutdown();
+        }
+    }
+
+    @Test
+    public void helpers_agreeWithSingleThreadAtFixedDepth() {
+        search = new ParallelSearch(THREADS, 4);
+        for (int i = 0; i < FORCED_WINS.length; i++) {
+            SearchResult single = new SearchEngine(4).search(FORCED_WINS[i], 1, 60_000, DEPTH);
+            SearchResult parallel = search.search(FORCED_WINS[i], 1, 60_000, DEPTH);
+            String position = "position " + i;
+            assertEquals(position, single.from, parallel.from);
+            assertEquals(position, single.to, parallel.to);
+            assertEquals(position, single.captured, parallel.captured);
+            assertEquals(position, single.score, parallel.score);
+        }
+    }
+
+    @Test
+    public void sharedSmallTable_keepsExactScores() {
+        // A 1 MB table makes the threads overwrite each other's entries all the time. A torn
+        // entry that passed the key^data check would give some node a wrong score, which
+        // shows as a wrong win distance in the forced wins searched on the same table.
+        search = new ParallelSearch(THREADS, 1);
+        Random random = new Random(5);
+        MoveList moves = new MoveList();
+        for (int game = 0; game < 4; game++) {
+            BitBoard board = BitBoard.initial();
+            int side = 1;
+            for (int ply = 0; ply < 16; ply++) {
+                SearchResult result = search.search(board, side, 60_000, DEPTH);
+                if (result == null) {
+                    break;
+                }
+                assertTrue("ply " + ply, SearchEngineTest.isLegal(board, side, result));
+                // Play a random move so the games differ
+                int n = MoveGenerator.generate(board, side, moves);
+                if (n > 1) {
+                    assertEquals(DEPTH, result.depth); // a forced move is not searched
+                }
+                moves.apply(board, random.nextInt(n));
+                side = BitBoard.opponent(side);
+            }
+            for (int i = 0; i < FORCED_WINS.length; i++) {
+                SearchResult result = search.search(FORCED_WINS[i], 1, 60_000, DEPTH);
+                assertEquals("position " + i, WIN_SCORES[i], result.score);
+            }
+        }
+    }
+
+    @Test
+    public void stop_endsEveryThread() throws InterruptedException {
+        search = new ParallelSearch(THREADS, 4);
+        AtomicReference<SearchResult> result = new AtomicReference<>();
+        Thread searcher = new Thread(() ->
+                result.set(search.search(BitBoard.initial(), 1, 60_000, SearchEngine.MAX_DEPTH)));
+        searcher.start();
+        Thread.sleep(200);
+        long stoppedAt = System.currentTimeMillis();
+        search.stop();
+        searcher.join(5_000);
+
+        // search() only returns once every helper has
+        assertFalse("search still running", searcher.isAlive());
+        assertTrue(System.currentTimeMillis() - stoppedAt < 1_000);
+        assertTrue(SearchEngineTest.isLegal(BitBoard.initial(), 1, result.get()));
+
+        // The pool is free for the next search
+        SearchResult next = search.search(BitBoard.initial(), 1, 60_000, 4);
+        assertEquals(4, next.depth);
+    }
+
+    @Test
+    public void stopBeforeQueuedSearchStarts_stopsIt() {
+        search = new ParallelSearch(THREADS, 4);
+        long generation = search.getGeneration(); // the search is queued
+        search.stop(); // the screen pauses before it runs
+
+        long start = System.currentTimeMillis();
+        SearchResult result = search.search(BitBoard.initial(), 1, 60_000, SearchEngine.MAX_DEPTH, generation);
+        assertTrue(System.currentTimeMillis() - start < 1_000);
+        assertTrue(SearchEngineTest.isLegal(BitBoard.initial(), 1, result));
+
+        // A search queued after the stop is not affected by it
+        SearchResult next = search.search(BitBoard.initial(), 1, 60_000, 4, search.getGeneration());
+        assertEquals(4, next.depth);
+    }
+}
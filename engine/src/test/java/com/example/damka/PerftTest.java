@@ -0,0 +1,47 @@
+package com.example.damka;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Move generator regression tests: leaf counts must match {@link Perft}'s reference values.
+ */
+public class PerftTest {
+    private final Perft perft = new Perft(12);
+
+    @Test
+    public void initialBoard_matchesGameSessionLayout() {
+        int[][] boardState = BitBoard.initial().toArray();
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++) {
+                int expected = (i + j) % 2 == 0 ? 0 : i < 3 ? 1 : i > 4 ? 2 : 0;
+                assertEquals("square " + i + "," + j, expected, boardState[i][j]);
+            }
+        }
+    }
+
+    @Test
+    public void perft_initialPosition() {
+        for (int depth = 1; depth <= 10; depth++) {
+            assertEquals("depth " + depth, Perft.INITIAL_REFERENCE[depth], perft.count(BitBoard.initial(), 1, depth));
+        }
+    }
+
+    @Test
+    public void perft_testPositions() {
+        for (Perft.TestPosition position : Perft.TEST_POSITIONS) {
+            int maxDepth = Math.min(position.reference.length - 1, 10);
+            for (int depth = 1; depth <= maxDepth; depth++) {
+                BitBoard board = new BitBoard();
+                board.copyFrom(position.board);
+                if (position.reference[depth] > 10_000_000L) {
+                    break; // deeper counts are checked by the perft task
+                }
+                assertEquals(position.name + " depth " + depth, position.reference[depth],
+                        perft.count(board, position.side, depth));
+                assertEquals("board restored", position.board, board);
+            }
+        }
+    }
+}
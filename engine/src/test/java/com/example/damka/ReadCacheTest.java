@@ -0,0 +1,152 @@
+package com.example.damka;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * TTL staleness, revalidation and coalescing, with every executor running tasks inline.
+ */
+public class ReadCacheTest {
+    private static final long TTL = 1000;
+    private static final Executor INLINE = Runnable::run;
+
+    private static final ReadCache.Codec<String> STRINGS = new ReadCache.Codec<String>() {
+        @Override
+        public void write(String value, DataOutputStream out) throws IOException {
+            out.writeUTF(value);
+        }
+
+        @Override
+        public String read(DataInputStream in) throws IOException {
+            return in.readUTF();
+        }
+    };
+
+    private File dir;
+    private long now;
+    private final List<ReadCache.FetchCallback<String>> fetches = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("cache").toFile();
+        now = 10_000;
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private ReadCache<String> cache() {
+        return new ReadCache<>(dir, TTL, STRINGS, (key, callback) -> fetches.add(callback), INLINE, () -> now);
+    }
+
+    private static ReadCache.Listener<String> into(List<String> values) {
+        return new ReadCache.Listener<String>() {
+            @Override
+            public void onValue(String value) {
+                values.add(value);
+            }
+
+            @Override
+            public void onError(Exception error) {
+                values.add("error");
+            }
+        };
+    }
+
+    @Test
+    public void get_coalescesConcurrentMisses() {
+        ReadCache<String> cache = cache();
+        List<String> first = new ArrayList<>(), second = new ArrayList<>();
+        cache.get("k", INLINE, into(first));
+        cache.get("k", INLINE, into(second));
+        assertEquals(1, fetches.size());
+
+        fetches.get(0).onFetched("v", null);
+        assertEquals("[v]", first.toString());
+        assertEquals("[v]", second.toString());
+    }
+
+    @Test
+    public void get_freshValueSkipsBackend() {
+        ReadCache<String> cache = cache();
+        cache.get("k", INLINE, into(new ArrayList<>()));
+        fetches.get(0).onFetched("v", null);
+
+        now += TTL - 1;
+        List<String> values = new ArrayList<>();
+        cache.get("k", INLINE, into(values));
+        assertEquals("[v]", values.toString());
+        assertEquals(1, fetches.size());
+    }
+
+    @Test
+    public void get_staleValueFirstThenRevalidated() {
+        ReadCache<String> cache = cache();
+        cache.get("k", INLINE, into(new ArrayList<>()));
+        fetches.get(0).onFetched("old", null);
+
+        now += TTL;
+        List<String> values = new ArrayList<>();
+        cache.get("k", INLINE, into(values));
+        assertEquals("[old]", values.toString());
+        assertEquals(2, fetches.size());
+        fetches.get(1).onFetched("new", null);
+        assertEquals("[old, new]", values.toString());
+    }
+
+    @Test
+    public void get_failedRevalidationKeepsStaleValue() {
+        ReadCache<String> cache = cache();
+        List<String> values = new ArrayList<>();
+        cache.get("k", INLINE, into(values));
+        fetches.get(0).onFetched(null, new IOException("offline"));
+        assertEquals("[error]", values.toString());
+
+        cache.put("k", "v");
+        now += TTL;
+        values.clear();
+        cache.get("k", INLINE, into(values));
+        fetches.get(1).onFetched(null, new IOException("offline"));
+        assertEquals("[v]", values.toString());
+    }
+
+    @Test
+    public void get_readsWhatAnotherProcessStored() {
+        cache().put("players/\u00fc", "v");
+
+        List<String> values = new ArrayList<>();
+        cache().get("players/\u00fc", INLINE, into(values));
+        assertEquals("[v]", values.toString());
+        assertTrue(fetches.isEmpty());
+    }
+
+    @Test
+    public void invalidate_dropsFileToo() {
+        ReadCache<String> cache = cache();
+        cache.put("k", "v");
+        cache.invalidate("k");
+
+        cache().get("k", INLINE, into(new ArrayList<>()));
+        assertEquals(1, fetches.size());
+    }
+}
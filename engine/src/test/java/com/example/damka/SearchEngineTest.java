@@ -0,0 +1,88 @@
+package com.example.damka;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Forced wins the search must find, and its time budget. In every position only one of
+ * side 1's moves wins.
+ */
+public class SearchEngineTest {
+    private static final long TIME_LIMIT_MILLIS = 200;
+    private static final long SLACK_MILLIS = 800; // time checks are every 2048 nodes, and the test machine may be slow
+
+    private static SearchResult search(BitBoard board, int side) {
+        return new SearchEngine(4).search(board, side, 10_000, 20);
+    }
+
+    private static void assertMove(SearchResult result, int from, int to, int captured) {
+        assertNotNull(result);
+        assertEquals("from", from, result.from);
+        assertEquals("to", to, result.to);
+        assertEquals("captured", captured, result.captured);
+    }
+
+    static boolean isLegal(BitBoard board, int side, SearchResult result) {
+        MoveList moves = new MoveList();
+        int n = MoveGenerator.generate(board, side, moves);
+        for (int i = 0; i < n; i++) {
+            if (moves.from(i) == result.from && moves.to(i) == result.to && moves.captured(i) == result.captured) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void captureThatTakesTheLastPieces() {
+        // Of three captures, only the double jump 8->26 leaves side 2 without pieces
+        BitBoard board = new BitBoard(0x00040300, 0, 0x00402000, 0);
+        SearchResult result = search(board, 1);
+        assertMove(result, 8, 26, 0x00402000);
+        assertEquals(SearchEngine.WIN - 1, result.score);
+    }
+
+    @Test
+    public void winInTwoMoves() {
+        BitBoard board = new BitBoard(0x00D00000, 0, 0x05000000, 0);
+        SearchResult result = search(board, 1);
+        assertMove(result, 23, 30, 0x04000000);
+        assertEquals(SearchEngine.WIN - 3, result.score);
+    }
+
+    @Test
+    public void quietMoveThatWinsInThreeMoves() {
+        BitBoard board = new BitBoard(0x00006020, 0, 0x02100000, 0);
+        SearchResult result = search(board, 1);
+        assertMove(result, 14, 17, 0);
+        assertEquals(SearchEngine.WIN - 5, result.score);
+    }
+
+    @Test
+    public void search_leavesPositionUnchanged() {
+        BitBoard board = new BitBoard(0x00006020, 0, 0x02100000, 0);
+        BitBoard before = new BitBoard();
+        before.copyFrom(board);
+        search(board, 1);
+        assertEquals(before, board);
+    }
+
+    @Test
+    public void noLegalMove_returnsNull() {
+        assertNull(search(new BitBoard(0x00000001, 0, 0, 0), 2));
+    }
+
+    @Test
+    public void stopsWithinTimeBudget() {
+        SearchEngine engine = new SearchEngine(4);
+        long start = System.currentTimeMillis();
+        SearchResult result = engine.search(BitBoard.initial(), 1, TIME_LIMIT_MILLIS, SearchEngine.MAX_DEPTH);
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertTrue("took " + elapsed + " ms", elapsed < TIME_LIMIT_MILLIS + SLACK_MILLIS);
+        assertTrue(result.depth >= 1);
+        assertTrue(result.depth < SearchEngine.MAX_DEPTH);
+        assertTrue(isLegal(BitBoard.initial(), 1, result));
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.damka;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Self-play output read back as {@link GameRecord}s, as the opening book builder reads it.
+ */
+public class SelfPlayTest {
+    private static final int GAMES = 2;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("games", ".txt");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private List<String> play(SelfPlay.Mode mode) throws Exception {
+        SelfPlay selfPlay = new SelfPlay(mode, 1, 8);
+        try (Writer out = new BufferedWriter(new FileWriter(file))) {
+            selfPlay.run(GAMES, 2, out);
+        }
+        assertEquals(GAMES, selfPlay.getWins(0) + selfPlay.getWins(1) + selfPlay.getWins(2));
+        return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    }
+
+    // Replays a game with the sides taking turns from side 1, checking every move and the winner
+    private static void assertLegalGame(String line) {
+        GameRecord record = GameRecord.parse(line);
+        assertEquals(line, record.toString());
+        BitBoard board = BitBoard.initial();
+        MoveList moves = new MoveList();
+        int side = 1;
+        for (int ply = 0; ply < record.length(); ply++, side = BitBoard.opponent(side)) {
+            int n = MoveGenerator.generate(board, side, moves);
+            boolean legal = false;
+            for (int i = 0; i < n && !legal; i++) {
+                legal = moves.from(i) == record.from(ply) && moves.to(i) == record.to(ply)
+                        && moves.captured(i) == record.captured(ply);
+            }
+            assertTrue("ply " + ply + " of " + line, legal);
+            record.apply(board, ply);
+        }
+        if (record.getWinner() == 0) {
+            assertEquals(SelfPlay.MAX_PLIES, record.length());
+        } else {
+            assertFalse(MoveGenerator.hasMoves(board, side));
+            assertEquals(BitBoard.opponent(side), record.getWinner());
+        }
+    }
+
+    @Test
+    public void engineGames_parseAndReplay() throws Exception {
+        List<String> lines = play(SelfPlay.Mode.ENGINE);
+        assertEquals(GAMES, lines.size());
+        for (String line : lines) {
+            assertLegalGame(line);
+        }
+    }
+
+    @Test
+    public void randomGames_parseAndReplay() throws Exception {
+        List<String> lines = play(SelfPlay.Mode.RANDOM);
+        assertEquals(GAMES, lines.size());
+        for (String line : lines) {
+            assertLegalGame(line);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.damka;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Move records and the in-order session board built from them.
+ */
+public class SessionBoardTest {
+
+    // The records of a random game played on a session board, and the final board
+    private static List<MoveRecord> randomGame(Random random, BitBoard end) {
+        SessionBoard session = new SessionBoard();
+        MoveList moves = new MoveList();
+        List<MoveRecord> records = new ArrayList<>();
+        for (int ply = 0, side = 1; ply < 120; ply++, side = BitBoard.opponent(side)) {
+            int n = MoveGenerator.generate(session.getBoard(), side, moves);
+            if (n == 0) {
+                break;
+            }
+            int i = random.nextInt(n);
+            records.add(session.play(moves.from(i), moves.to(i), moves.captured(i)));
+        }
+        end.copyFrom(session.getBoard());
+        return records;
+    }
+
+    @Test
+    public void moveRecord_packRoundTrip() {
+        Random random = new Random(1);
+        for (int game = 0; game < 20; game++) {
+            for (MoveRecord record : randomGame(random, new BitBoard())) {
+                long packed = record.pack();
+                assertTrue("fits in a double", packed < 1L << 53);
+                assertEquals(record, MoveRecord.unpack(record.seq, packed));
+            }
+        }
+    }
+
+    @Test
+    public void receive_appliesOutOfOrderRecordsInSequence() {
+        Random random = new Random(2);
+        for (int game = 0; game < 20; game++) {
+            BitBoard end = new BitBoard();
+            List<MoveRecord> records = randomGame(random, end);
+            List<MoveRecord> shuffled = new ArrayList<>(records);
+            Collections.shuffle(shuffled, random);
+
+            SessionBoard remote = new SessionBoard();
+            int applied = 0;
+            for (MoveRecord record : shuffled) {
+                applied += remote.receive(record.seq, record.pack());
+                applied += remote.receive(record.seq, record.pack()); // duplicates are ignored
+            }
+            assertEquals(records.size(), applied);
+            assertEquals(records.size(), remote.getSeq());
+            assertFalse(remote.hasGap());
+            assertEquals(end, remote.getBoard());
+        }
+    }
+
+    @Test
+    public void reset_resumesFromCheckpoint() {
+        BitBoard end = new BitBoard();
+        List<MoveRecord> records = randomGame(new Random(3), end);
+        int checkpointSeq = SessionBoard.CHECKPOINT_INTERVAL;
+        SessionBoard full = new SessionBoard();
+        for (MoveRecord record : records.subList(0, checkpointSeq)) {
+            full.receive(record.seq, record.pack());
+        }
+
+        // A late joiner sees the moves after the checkpoint before the checkpoint itself
+        SessionBoard joiner = new SessionBoard();
+        for (MoveRecord record : records.subList(checkpointSeq, records.size())) {
+            assertEquals(0, joiner.receive(record.seq, record.pack()));
+        }
+        assertTrue(joiner.hasGap());
+        assertEquals(records.size() - checkpointSeq, joiner.reset(full.getBoard(), checkpointSeq));
+        assertEquals(end, joiner.getBoard());
+    }
+
+    @Test
+    public void receive_rejectsIllegalMove() {
+        SessionBoard session = new SessionBoard();
+        MoveRecord illegal = new MoveRecord(1, 1, 0, 31, 0, false);
+        assertEquals(SessionBoard.REJECTED, session.receive(illegal.seq, illegal.pack()));
+        assertEquals(BitBoard.initial(), session.getBoard());
+    }
+
+    @Test
+    public void play_rejectsMoveOutOfTurn() {
+        SessionBoard session = new SessionBoard();
+        session.play(9, 13, 0);
+        try {
+            session.play(10, 14, 0); // side 1 again
+            fail("side 1 moved twice in a row");
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(1, session.getSeq());
+        try {
+            new SessionBoard().play(21, 17, 0); // side 2 first
+            fail("side 2 moved first");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void receive_rejectsMoveOutOfTurn() {
+        SessionBoard session = new SessionBoard();
+        MoveRecord first = new SessionBoard().play(9, 13, 0);
+        assertEquals(1, session.receive(first.seq, first.pack()));
+        BitBoard afterFirst = new BitBoard();
+        afterFirst.copyFrom(session.getBoard());
+
+        MoveRecord again = new MoveRecord(2, 1, 10, 14, 0, false); // legal for side 1, but side 2 is to move
+        assertEquals(SessionBoard.REJECTED, session.receive(again.seq, again.pack()));
+        assertEquals(1, session.getConfirmedSeq());
+        assertEquals(afterFirst, session.getBoard());
+    }
+
+    @Test
+    public void play_isPendingUntilEchoed() {
+        SessionBoard session = new SessionBoard();
+        MoveRecord first = session.play(9, 13, 0);
+        MoveRecord second = session.play(21, 17, 0);
+        assertEquals(2, session.getSeq());
+        assertEquals(0, session.getConfirmedSeq());
+        assertEquals(first, session.nextToCommit());
+
+        BitBoard optimistic = new BitBoard();
+        optimistic.copyFrom(session.getBoard());
+        session.confirm(first.seq);
+        assertEquals(1, session.getConfirmedSeq());
+        assertEquals(1, session.receive(second.seq, second.pack())); // echo of the second move
+        assertEquals(0, session.receive(first.seq, first.pack()));  // late echo of the first
+        assertEquals(0, session.pendingCount());
+        assertEquals(optimistic, session.getBoard());
+        assertEquals(optimistic, session.getConfirmedBoard());
+    }
+
+    @Test
+    public void receive_rollsBackWhenSequenceNumberIsTaken() {
+        SessionBoard session = new SessionBoard();
+        session.play(9, 13, 0);
+        session.play(21, 17, 0);
+
+        // The other client committed a different first move
+        SessionBoard other = new SessionBoard();
+        MoveRecord theirs = other.play(10, 14, 0);
+        assertEquals(1, session.receive(theirs.seq, theirs.pack()));
+        assertEquals(0, session.pendingCount());
+        assertEquals(other.getBoard(), session.getBoard());
+    }
+
+    @Test
+    public void rollback_restoresConfirmedBoard() {
+        SessionBoard session = new SessionBoard();
+        session.play(9, 13, 0);
+        assertEquals(1, session.rollback());
+        assertEquals(0, session.getSeq());
+        assertEquals(BitBoard.initial(), session.getBoard());
+    }
+
+    @Test
+    public void checkpointBoard_isKeptWhenConfirmedByEcho() {
+        BitBoard end = new BitBoard();
+        List<MoveRecord> records = randomGame(new Random(4), end);
+        int checkpointSeq = SessionBoard.CHECKPOINT_INTERVAL;
+        SessionBoard reference = new SessionBoard();
+        for (MoveRecord record : records.subList(0, checkpointSeq)) {
+            reference.receive(record.seq, record.pack());
+        }
+
+        SessionBoard session = new SessionBoard();
+        for (MoveRecord record : records.subList(0, checkpointSeq + 1)) {
+            session.play(record.from, record.to, record.captured);
+            session.receive(record.seq, record.pack()); // the echo arrives before the commit completes
+        }
+        assertEquals(checkpointSeq + 1, session.getConfirmedSeq());
+        assertEquals(checkpointSeq, session.getCheckpointSeq());
+        assertEquals(reference.getBoard(), session.getCheckpointBoard());
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.damka;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Retrograde results against one ply of search: a position is won iff some move leads to
+ * a lost one, lost iff every move leads to a won one, with distances one more than the
+ * best successor's.
+ */
+public class TablebaseTest {
+    private static final int MAX_PIECES = 3;
+    private static final int SAMPLES = 20_000;
+
+    private static File file;
+    private static Tablebase tablebase;
+
+    @BeforeClass
+    public static void generate() throws IOException {
+        file = File.createTempFile("endgame", ".tb");
+        TablebaseGenerator generator = new TablebaseGenerator(MAX_PIECES);
+        generator.generate();
+        generator.write(file);
+        tablebase = Tablebase.open(file);
+    }
+
+    @AfterClass
+    public static void deleteFile() {
+        file.delete();
+    }
+
+    // A random position with 2..MAX_PIECES pieces, both sides on the board and no soldier on its promotion column
+    private static BitBoard randomPosition(Random random) {
+        int pieces = 2 + random.nextInt(MAX_PIECES - 1);
+        int[] groups = new int[4]; // side 1 soldiers, side 1 kings, side 2 soldiers, side 2 kings
+        int occupied = 0;
+        for (int i = 0; i < pieces; i++) {
+            int group = i == 0 ? random.nextInt(2) : i == 1 ? 2 + random.nextInt(2) : random.nextInt(4);
+            int square;
+            do {
+                square = random.nextInt(BitBoard.NUM_OF_PLAYABLE);
+            } while ((occupied & 1 << square) != 0
+                    || (group == 0 && (BitBoard.SIDE1_PROMOTION & 1 << square) != 0)
+                    || (group == 2 && (BitBoard.SIDE2_PROMOTION & 1 << square) != 0));
+            occupied |= 1 << square;
+            groups[group] |= 1 << square;
+        }
+        return new BitBoard(groups[0], groups[1], groups[2], groups[3]);
+    }
+
+    // What the code of a position must be, given the codes of its successors
+    private static int expected(BitBoard board, int side) {
+        MoveList moves = new MoveList();
+        int n = MoveGenerator.generate(board, side, moves);
+        if (n == 0) {
+            return Tablebase.LOSS;
+        }
+        int fastestWin = Integer.MAX_VALUE;
+        int slowestLoss = -1;
+        boolean allLost = true; // every successor is won by the opponent
+        BitBoard child = new BitBoard();
+        for (int i = 0; i < n; i++) {
+            child.copyFrom(board);
+            moves.apply(child, i);
+            int code = tablebase.probe(child, BitBoard.opponent(side));
+            assertNotEquals("successor not in the tables", Tablebase.NOT_FOUND, code);
+            if (Tablebase.isLoss(code)) {
+                fastestWin = Math.min(fastestWin, Tablebase.distanceOf(code) + 1);
+            }
+            if (Tablebase.isWin(code)) {
+                slowestLoss = Math.max(slowestLoss, Tablebase.distanceOf(code) + 1);
+            } else {
+                allLost = false;
+            }
+        }
+        if (fastestWin != Integer.MAX_VALUE) {
+            return Tablebase.WIN + fastestWin;
+        }
+        return allLost ? Tablebase.LOSS + slowestLoss : Tablebase.DRAW;
+    }
+
+    @Test
+    public void probe_matchesBestSuccessor() {
+        Random random = new Random(6);
+        int wins = 0, losses = 0, draws = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            BitBoard board = randomPosition(random);
+            for (int side = 1; side <= 2; side++) {
+                int code = tablebase.probe(board, side);
+                assertNotEquals(Tablebase.NOT_FOUND, code);
+                assertNotEquals(Tablebase.INVALID, code);
+                assertEquals("sample " + i + " side " + side, expected(board, side), code);
+                if (Tablebase.isWin(code)) wins++;
+                else if (Tablebase.isLoss(code)) losses++;
+                else draws++;
+            }
+        }
+        // The samples must reach every kind of result for the check to mean anything
+        assertTrue(wins > 0);
+        assertTrue(losses > 0);
+        assertTrue(draws > 0);
+    }
+
+    @Test
+    public void probe_sideWithoutPiecesHasLost() {
+        assertEquals(Tablebase.LOSS, tablebase.probe(new BitBoard(0x00000010, 0, 0, 0), 2));
+    }
+
+    @Test
+    public void probe_tooManyPiecesIsNotFound() {
+        BitBoard board = new BitBoard(0x00000030, 0, 0x00300000, 0);
+        assertEquals(Tablebase.NOT_FOUND, tablebase.probe(board, 1));
+        assertEquals(Tablebase.NOT_FOUND, tablebase.probe(BitBoard.initial(), 1));
+    }
+
+    @Test(expected = IOException.class)
+    public void open_rejectsOtherFiles() throws IOException {
+        File other = File.createTempFile("other", ".tb");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(other))) {
+                out.writeInt(0x12345678);
+                out.writeInt(Tablebase.VERSION);
+                out.writeInt(MAX_PIECES);
+                out.writeInt(0);
+            }
+            Tablebase.open(other);
+        } finally {
+            other.delete();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+plugins {
+    id("application")
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+dependencies {
+    implementation(project(":engine"))
+    implementation(project(":server"))
+    implementation("org.hdrhistogram:HdrHistogram:2.2.2")
+}
+
+// Session load: ./gradlew :loadtest:run --args="relay 2000 2 100 8"
+// (backend loopback, relay or host:port; games; moves/s per game, 0 for no pause; plies; connections)
+application {
+    mainClass.set("com.example.damka.SessionLoadTest")
+}
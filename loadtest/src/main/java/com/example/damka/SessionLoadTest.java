@@ -0,0 +1,260 @@
+package com.example.damka;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Load test for concurrent game sessions: many games between pairs of headless
+ * {@link SimulatedClient}s, each going through create, join and move commits like the app
+ * does, at a set number of moves per second per game. Reports throughput and the latency
+ * from a player committing a move to the other player's session applying it, as
+ * HdrHistogram percentiles every second and for the whole run.
+ *
+ * Backends: "loopback" is the in-process {@link LoopbackTransport}, "relay" starts a
+ * {@link RelayServer} in this process, and host:port connects to a running relay. A rate
+ * of 0 plays every move as soon as the opponent's move arrives.
+ *
+ * Run from the command line with:
+ * java com.example.damka.SessionLoadTest [backend] [games] [rate] [plies] [connections]
+ */
+public final class SessionLoadTest {
+    private static final long HIGHEST_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final GameTransport[] transports;
+    private final ExecutorService pool;
+    private final ScheduledExecutorService scheduler;
+    private final int plies;
+    private final long thinkNanos;
+    private final long seed;
+    private final Recorder latency = new Recorder(HIGHEST_LATENCY_NANOS, SIGNIFICANT_DIGITS);
+    private final Histogram total = new Histogram(HIGHEST_LATENCY_NANOS, SIGNIFICANT_DIGITS);
+    private final AtomicLong moves = new AtomicLong();
+    private final AtomicInteger rejected = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private CountDownLatch finished;
+
+    public SessionLoadTest(GameTransport[] transports, ExecutorService pool, ScheduledExecutorService scheduler,
+                           int plies, double movesPerSecond, long seed) {
+        this.transports = transports;
+        this.pool = pool;
+        this.scheduler = scheduler;
+        this.plies = plies;
+        this.thinkNanos = movesPerSecond > 0 ? (long) (1e9 / movesPerSecond) : 0;
+        this.seed = seed;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String backend = args.length > 0 ? args[0] : "loopback";
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        double rate = args.length > 2 ? Double.parseDouble(args[2]) : 2;
+        int plies = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+        int connections = args.length > 4 ? Integer.parseInt(args[4]) : 8;
+
+        List<Closeable> resources = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            GameTransport[] transports = connect(backend, connections, resources);
+            SessionLoadTest test = new SessionLoadTest(transports, pool, scheduler, plies, rate, System.nanoTime());
+            System.out.printf("%d games on %s, %s moves/s per game, up to %d plies%n",
+                    games, backend, rate > 0 ? String.valueOf(rate) : "unlimited", plies);
+            long start = System.nanoTime();
+            test.run(games);
+            double seconds = Math.max(1, System.nanoTime() - start) / 1e9;
+
+            Histogram latencies = test.getLatencies();
+            System.out.printf("%d moves in %.1f s: %.1f moves/s, %d rejected commits, %d failed games%n",
+                    test.getMoves(), seconds, test.getMoves() / seconds, test.getRejected(), test.getFailures());
+            System.out.printf("commit to remote notify: p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms%n",
+                    latencies.getValueAtPercentile(50) / 1e6, latencies.getValueAtPercentile(90) / 1e6,
+                    latencies.getValueAtPercentile(99) / 1e6, latencies.getValueAtPercentile(99.9) / 1e6,
+                    latencies.getMaxValue() / 1e6);
+            latencies.outputPercentileDistribution(System.out, 1e6); // in milliseconds
+        } finally {
+            for (Closeable resource : resources) {
+                resource.close();
+            }
+            scheduler.shutdownNow();
+            pool.shutdown();
+        }
+    }
+
+    // The transports for a backend; what must be closed afterwards goes to resources
+    static GameTransport[] connect(String backend, int connections, List<Closeable> resources) throws IOException {
+        if (backend.equals("loopback")) {
+            return new GameTransport[] {new LoopbackTransport()};
+        }
+        String host;
+        int port;
+        if (backend.equals("relay")) {
+            RelayServer server = new RelayServer(0);
+            Thread relay = new Thread(server, "relay");
+            relay.setDaemon(true);
+            relay.start();
+            resources.add(server);
+            host = "localhost";
+            port = server.getPort();
+        } else {
+            int colon = backend.lastIndexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("Backend must be loopback, relay or host:port: " + backend);
+            }
+            host = backend.substring(0, colon);
+            port = Integer.parseInt(backend.substring(colon + 1));
+        }
+        GameTransport[] transports = new GameTransport[connections];
+        for (int i = 0; i < connections; i++) {
+            RelayTransport transport = new RelayTransport(host, port);
+            resources.add(0, transport); // closed before the relay
+            transports[i] = transport;
+        }
+        return transports;
+    }
+
+    /**
+     * Starts the games and waits for all of them to end, printing the moves and latency of
+     * every second.
+     */
+    public void run(int games) throws InterruptedException {
+        finished = new CountDownLatch(games);
+        for (int i = 0; i < games; i++) {
+            new Game(i).start();
+        }
+        long second = 0;
+        long lastMoves = 0;
+        while (!finished.await(1, TimeUnit.SECONDS)) {
+            Histogram interval = latency.getIntervalHistogram();
+            total.add(interval);
+            long totalMoves = moves.get();
+            System.out.printf("%4ds %8d moves/s  p50 %7.2f ms  p99 %7.2f ms  %d games left%n", ++second,
+                    totalMoves - lastMoves, interval.getValueAtPercentile(50) / 1e6,
+                    interval.getValueAtPercentile(99) / 1e6, finished.getCount());
+            lastMoves = totalMoves;
+        }
+        total.add(latency.getIntervalHistogram());
+    }
+
+    // Over the whole run, in nanoseconds
+    public Histogram getLatencies() {
+        return total;
+    }
+
+    public long getMoves() {
+        return moves.get();
+    }
+
+    public int getRejected() {
+        return rejected.get();
+    }
+
+    public int getFailures() {
+        return failures.get();
+    }
+
+    private final class Game implements SimulatedClient.Events {
+        final String gameId;
+        final SimulatedClient[] clients = new SimulatedClient[3];
+        final AtomicLongArray committedAt = new AtomicLongArray(plies + 1); // by seq
+        final AtomicBoolean over = new AtomicBoolean();
+        final Random random;
+
+        Game(int number) {
+            gameId = "load-" + number;
+            random = new Random(seed + number);
+            for (int side = 1; side <= 2; side++) {
+                GameTransport transport = transports[(number + side) % transports.length];
+                clients[side] = new SimulatedClient(transport, gameId, gameId + "-" + side, side,
+                        new SerialExecutor(pool), this);
+            }
+        }
+
+        void start() {
+            clients[1].createGameSession(error -> {
+                if (error != null) {
+                    fail();
+                    return;
+                }
+                clients[2].joinGameSession(joinError -> {
+                    if (joinError != null) {
+                        fail();
+                    } else {
+                        schedule(clients[1]);
+                    }
+                });
+            });
+        }
+
+        @Override
+        public void onOpponentMove(SimulatedClient client, int seq) {
+            long sent = committedAt.get(seq);
+            if (sent != 0) {
+                latency.recordValue(Math.min(System.nanoTime() - sent, HIGHEST_LATENCY_NANOS));
+            }
+            schedule(client);
+        }
+
+        @Override
+        public void onRejected(SimulatedClient client) {
+            rejected.incrementAndGet();
+        }
+
+        // The client's next move, after the think time
+        void schedule(SimulatedClient client) {
+            Runnable move = () -> client.getExecutor().execute(() -> play(client));
+            if (thinkNanos == 0) {
+                move.run();
+            } else {
+                scheduler.schedule(move, thinkNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        // On the client's executor
+        void play(SimulatedClient client) {
+            if (over.get()) {
+                return;
+            }
+            int seq = client.getSeq() + 1;
+            if (seq > plies) {
+                end();
+                return;
+            }
+            committedAt.set(seq, System.nanoTime()); // before the commit goes out
+            if (client.playRandomMove(random) == null) {
+                end();
+                return;
+            }
+            moves.incrementAndGet();
+        }
+
+        void fail() {
+            if (!over.get()) {
+                failures.incrementAndGet();
+                end();
+            }
+        }
+
+        void end() {
+            if (over.compareAndSet(false, true)) {
+                clients[1].shutdown();
+                clients[2].shutdown();
+                finished.countDown();
+            }
+        }
+    }
+}
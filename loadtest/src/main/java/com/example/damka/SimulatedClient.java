@@ -0,0 +1,205 @@
+package com.example.damka;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executor;
+
+/**
+ * A headless GameSessionManager: the same session flow on a {@link GameTransport}, without
+ * Android. The session board is owned by a serial executor; local moves are optimistic and
+ * committed in batches with one commit in flight, checkpoints are written every
+ * {@link SessionBoard#CHECKPOINT_INTERVAL} moves, and a rejected commit rolls back and
+ * loads the session again. The UI side (snapshots, frame coalescing) and the move journal
+ * are left out, since neither touches the backend.
+ */
+final class SimulatedClient {
+
+    // Called on the client's executor
+    interface Events {
+        // A move of the other player was applied to the session board
+        void onOpponentMove(SimulatedClient client, int seq);
+
+        void onRejected(SimulatedClient client);
+    }
+
+    private final GameTransport transport;
+    private final String gameId;
+    private final String playerId;
+    private final int side;
+    private final Executor executor;
+    private final Events events;
+    private final GameTransport.Subscription subscription;
+
+    // Only used on the executor
+    private final SessionBoard session = new SessionBoard();
+    private final BitBoard checkpointBoard = new BitBoard();
+    private final MoveList moveList = new MoveList();
+    private boolean boardLoaded = false;
+    private boolean committing = false;
+    private boolean connected = false;
+    private long sessionVersion = -1;
+    private String player1Id, player2Id;
+
+    SimulatedClient(GameTransport transport, String gameId, String playerId, int side, Executor executor, Events events) {
+        this.transport = transport;
+        this.gameId = gameId;
+        this.playerId = playerId;
+        this.side = side;
+        this.executor = executor;
+        this.events = events;
+        subscription = transport.subscribe(gameId, executor, new GameTransport.Listener() {
+            @Override
+            public void onSession(SessionState state) {
+                applySession(state);
+            }
+
+            @Override
+            public void onMove(int seq, long packed) {
+                applyMove(seq, packed);
+            }
+
+            @Override
+            public void onConnected(boolean isConnected) {
+                connected = isConnected;
+                commitPending();
+            }
+        });
+    }
+
+    Executor getExecutor() {
+        return executor;
+    }
+
+    // On the executor: the sequence number of the last move on the session board
+    int getSeq() {
+        return session.getSeq();
+    }
+
+    // As GameSessionManager.createGameSession(); callback runs on any thread
+    void createGameSession(GameTransport.Callback callback) {
+        player1Id = playerId;
+        executor.execute(() -> {
+            session.reset(BitBoard.initial(), 0);
+            boardLoaded = true;
+        });
+        transport.create(gameId, SessionState.initial(playerId), callback);
+    }
+
+    // As GameSessionManager.joinGameSession(); callback runs on any thread
+    void joinGameSession(GameTransport.Callback callback) {
+        transport.join(gameId, playerId, callback);
+    }
+
+    /**
+     * On the executor: plays a random legal move for this client's side and commits it, as
+     * GameSessionManager.commitMove() does for a move made on the board.
+     *
+     * @return The move played, or null when the side has no legal move.
+     */
+    MoveRecord playRandomMove(Random random) {
+        int n = MoveGenerator.generate(session.getBoard(), side, moveList);
+        if (n == 0) {
+            return null;
+        }
+        int move = random.nextInt(n);
+        MoveRecord record = session.play(moveList.from(move), moveList.to(move), moveList.captured(move));
+        commitPending();
+        return record;
+    }
+
+    void shutdown() {
+        subscription.cancel();
+    }
+
+    private void commitPending() {
+        if (committing || !connected || session.pendingCount() == 0) {
+            return;
+        }
+        committing = true;
+        List<MoveRecord> batch = new ArrayList<>(session.pendingMoves());
+        MoveRecord last = batch.get(batch.size() - 1);
+        String nextTurn = last.side == 1 ? player2Id : player1Id;
+        transport.commitMoves(gameId, batch, nextTurn, error -> executor.execute(() -> {
+            committing = false;
+            if (error == null) {
+                for (MoveRecord record : batch) {
+                    session.confirm(record.seq);
+                    if (session.getCheckpointSeq() == record.seq) {
+                        transport.writeCheckpoint(gameId, record.seq,
+                                BoardCodec.encode(session.getCheckpointBoard()), checkpointError -> { });
+                    }
+                }
+                commitPending();
+            } else {
+                session.rollback();
+                events.onRejected(this);
+                resync();
+            }
+        }));
+    }
+
+    private void resync() {
+        transport.load(gameId, executor, (state, error) -> {
+            if (state != null && loadCheckpoint(state)) {
+                receiveAll(state);
+            }
+        });
+    }
+
+    private boolean loadCheckpoint(SessionState state) {
+        if (state.board == null) {
+            return false;
+        }
+        try {
+            BoardCodec.decode(state.board, checkpointBoard);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        session.reset(checkpointBoard, state.checkpointSeq);
+        return true;
+    }
+
+    private void receiveAll(SessionState state) {
+        for (Map.Entry<Integer, Long> move : state.moves.entrySet()) {
+            if (session.receive(move.getKey(), move.getValue()) == SessionBoard.REJECTED) {
+                break;
+            }
+        }
+    }
+
+    private void applySession(SessionState state) {
+        if (state.version <= sessionVersion) {
+            return;
+        }
+        sessionVersion = state.version;
+        player1Id = state.player1Id;
+        player2Id = state.player2Id;
+        boolean wasLoaded = boardLoaded;
+        if (state.checkpointSeq > session.getConfirmedSeq() || (!boardLoaded && session.getConfirmedSeq() == 0)) {
+            if (loadCheckpoint(state)) {
+                boardLoaded = true;
+            }
+        } else {
+            boardLoaded = true;
+        }
+        if (boardLoaded && !wasLoaded) {
+            // A late subscriber gets the opponent's last move here rather than as a move event
+            int before = session.getConfirmedSeq();
+            receiveAll(state);
+            int seq = session.getConfirmedSeq();
+            Long packed = state.moves.get(seq);
+            if (seq > before && packed != null && MoveRecord.unpack(seq, packed).side != side) {
+                events.onOpponentMove(this, seq);
+            }
+        }
+    }
+
+    private void applyMove(int seq, long packed) {
+        int confirmedSeq = session.getConfirmedSeq();
+        if (session.receive(seq, packed) > 0 && seq > confirmedSeq && MoveRecord.unpack(seq, packed).side != side) {
+            events.onOpponentMove(this, seq);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+plugins {
+    id("application")
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+dependencies {
+    implementation(project(":engine"))
+    testImplementation("junit:junit:4.13.2")
+}
+
+// The relay: ./gradlew :server:run --args="7341"
+application {
+    mainClass.set("com.example.damka.RelayServer")
+}
+
+// Relay load: ./gradlew :server:loadGenerator -Psessions=2000 -Pconnections=8 -Pplies=100
+// (-Phost=local starts a relay in the same process)
+tasks.register<JavaExec>("loadGenerator") {
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("com.example.damka.RelayLoadGenerator")
+    args((project.findProperty("host") ?: "local").toString(),
+            (project.findProperty("port") ?: "7341").toString(),
+            (project.findProperty("sessions") ?: "1000").toString(),
+            (project.findProperty("connections") ?: "8").toString(),
+            (project.findProperty("plies") ?: "100").toString())
+}
@@ -0,0 +1,232 @@
+package com.example.damka;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load generator for the {@link RelayServer}: plays many concurrent games of random legal
+ * moves through {@link RelayTransport}s and reports moves per second and the relay latency,
+ * from a player's commit to the opponent seeing the move.
+ *
+ * The two players of a game use different connections when there is more than one, so
+ * every move crosses the relay. Each player moves as soon as it sees the opponent's move;
+ * a game ends when the side to move is stuck or after the given number of plies.
+ *
+ * Run from the command line with (host "local" starts a relay in this process):
+ * java com.example.damka.RelayLoadGenerator [host] [port] [sessions] [connections] [plies]
+ */
+public final class RelayLoadGenerator {
+    private final RelayTransport[] transports;
+    private final ExecutorService workers;
+    private final int plies;
+    private final long seed;
+    private final long[] latencies;
+    private final AtomicInteger recorded = new AtomicInteger();
+    private final AtomicLong moves = new AtomicLong();
+    private final AtomicInteger failures = new AtomicInteger();
+    private CountDownLatch finished;
+
+    public RelayLoadGenerator(RelayTransport[] transports, ExecutorService workers, int sessions, int plies, long seed) {
+        this.transports = transports;
+        this.workers = workers;
+        this.plies = plies;
+        this.seed = seed;
+        this.latencies = new long[sessions * plies];
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "local";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : RelayProtocol.DEFAULT_PORT;
+        int sessions = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int connections = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+        int plies = args.length > 4 ? Integer.parseInt(args[4]) : 100;
+
+        RelayServer server = null;
+        if (host.equals("local")) {
+            server = new RelayServer(0);
+            Thread relay = new Thread(server, "relay");
+            relay.setDaemon(true);
+            relay.start();
+            host = "localhost";
+            port = server.getPort();
+        }
+        RelayTransport[] transports = new RelayTransport[connections];
+        for (int i = 0; i < connections; i++) {
+            transports[i] = new RelayTransport(host, port);
+        }
+        ExecutorService workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            RelayLoadGenerator generator = new RelayLoadGenerator(transports, workers, sessions, plies, System.nanoTime());
+            long start = System.nanoTime();
+            generator.run(sessions);
+            double seconds = Math.max(1, System.nanoTime() - start) / 1e9;
+            System.out.printf("%d sessions over %d connections in %.1f s: %d moves, %.1f moves/s, %d failures%n",
+                    sessions, connections, seconds, generator.getMoves(), generator.getMoves() / seconds,
+                    generator.getFailures());
+            System.out.printf("relay latency: p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                    generator.latencyPercentile(50) / 1e6, generator.latencyPercentile(99) / 1e6,
+                    generator.latencyPercentile(100) / 1e6);
+        } finally {
+            for (RelayTransport transport : transports) {
+                transport.close();
+            }
+            if (server != null) {
+                server.close();
+            }
+            workers.shutdown();
+        }
+    }
+
+    // Starts the games and waits for all of them to end
+    public void run(int sessions) throws InterruptedException {
+        finished = new CountDownLatch(sessions);
+        for (int i = 0; i < sessions; i++) {
+            new Game(i).start();
+        }
+        finished.await();
+    }
+
+    public long getMoves() {
+        return moves.get();
+    }
+
+    public int getFailures() {
+        return failures.get();
+    }
+
+    // In nanoseconds, over the moves seen so far; 100 gives the maximum
+    public long latencyPercentile(double percentile) {
+        int n = Math.min(recorded.get(), latencies.length);
+        if (n == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(latencies, n);
+        Arrays.sort(sorted);
+        return sorted[Math.min(n - 1, (int) Math.ceil(percentile / 100 * n) - 1)];
+    }
+
+    private void record(long nanos) {
+        int index = recorded.getAndIncrement();
+        if (index < latencies.length) {
+            latencies[index] = nanos;
+        }
+    }
+
+    private final class Game {
+        final String gameId;
+        final String[] playerIds = new String[3];
+        final GameTransport[] players = new GameTransport[3];
+        final GameTransport.Subscription[] subscriptions = new GameTransport.Subscription[3];
+        final BitBoard board = BitBoard.initial();
+        final MoveList moveList = new MoveList();
+        final long[] sentAt = new long[plies + 1];
+        final Random random;
+        int ply;
+        boolean over;
+
+        Game(int number) {
+            gameId = "load-" + number;
+            playerIds[1] = gameId + "-1";
+            playerIds[2] = gameId + "-2";
+            players[1] = transports[number % transports.length];
+            players[2] = transports[(number + 1) % transports.length];
+            random = new Random(seed + number);
+        }
+
+        void start() {
+            players[1].create(gameId, SessionState.initial(playerIds[1]), error -> {
+                if (error != null) {
+                    fail();
+                    return;
+                }
+                players[2].join(gameId, playerIds[2], joinError -> {
+                    if (joinError != null) {
+                        fail();
+                        return;
+                    }
+                    synchronized (this) {
+                        subscribe(1);
+                        subscribe(2);
+                        play(1);
+                    }
+                });
+            });
+        }
+
+        // Called holding the lock
+        void subscribe(int side) {
+            subscriptions[side] = players[side].subscribe(gameId, workers, new GameTransport.Listener() {
+                @Override
+                public void onSession(SessionState state) {
+                }
+
+                @Override
+                public void onMove(int seq, long packed) {
+                    received(side, seq, packed);
+                }
+
+                @Override
+                public void onConnected(boolean connected) {
+                    if (!connected) {
+                        fail();
+                    }
+                }
+            });
+        }
+
+        // A move seen by side; moves can arrive twice, once with the subscription's first state
+        synchronized void received(int side, int seq, long packed) {
+            if (over || seq != ply || MoveRecord.unpack(seq, packed).side == side) {
+                return;
+            }
+            record(System.nanoTime() - sentAt[seq]);
+            play(side);
+        }
+
+        // Called holding the lock
+        void play(int side) {
+            int n = ply < plies ? MoveGenerator.generate(board, side, moveList) : 0;
+            if (n == 0) {
+                end();
+                return;
+            }
+            int move = random.nextInt(n);
+            MoveRecord record = MoveRecord.of(board, ply + 1, moveList.from(move), moveList.to(move), moveList.captured(move));
+            moveList.apply(board, move);
+            ply = record.seq;
+            sentAt[ply] = System.nanoTime();
+            moves.incrementAndGet();
+            players[side].commitMoves(gameId, Collections.singletonList(record), playerIds[BitBoard.opponent(side)], error -> {
+                if (error != null) {
+                    fail();
+                }
+            });
+        }
+
+        synchronized void fail() {
+            if (!over) {
+                failures.incrementAndGet();
+                end();
+            }
+        }
+
+        // Called holding the lock; leaving lets the relay drop the session
+        void end() {
+            if (!over) {
+                over = true;
+                for (GameTransport.Subscription subscription : subscriptions) {
+                    if (subscription != null) {
+                        subscription.cancel();
+                    }
+                }
+                finished.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,513 @@
+package com.example.damka;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Self-hosted game relay: keeps live sessions in memory and relays their moves between
+ * {@link RelayTransport} clients over the {@link RelayProtocol}.
+ *
+ * One thread runs a non-blocking selector over all connections, so sessions cost memory
+ * rather than threads and need no locking. Every committed move is checked against the
+ * position after the previous one before it is stored and fanned out; a fanned-out frame
+ * is encoded once and shared by all subscribers. A client that stops reading is dropped
+ * once MAX_QUEUED frames wait for it. A session is dropped when its last subscriber
+ * leaves, or with the connection that created or joined it if nobody ever subscribed: the
+ * relay holds live games, not history.
+ *
+ * A connection plays as the player it created or joined a session as, and may only commit
+ * moves while that player is the session's currentTurn.
+ *
+ * Run from the command line with:
+ * java com.example.damka.RelayServer [port]
+ */
+public final class RelayServer implements Runnable, Closeable {
+    public static final int MAX_QUEUED = 4096;
+    private static final long STATS_MILLIS = 10_000;
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Map<String, Room> rooms = new HashMap<>();
+    private final List<Connection> closing = new ArrayList<>();
+    private final MoveList moveList = new MoveList();
+    private final BitBoard scratch = new BitBoard();
+    private volatile boolean running = true;
+    private volatile int sessionCount;
+    private volatile int connectionCount;
+    private volatile long movesRelayed;
+
+    private static final class Connection {
+        final SocketChannel channel;
+        final SelectionKey key;
+        final ByteBuffer in = ByteBuffer.allocate(4 + RelayProtocol.MAX_FRAME);
+        final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+        final Set<Room> rooms = new HashSet<>();
+        final Map<String, String> players = new HashMap<>(); // gameId -> the player this connection plays as
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+    }
+
+    // One session; position is the board after moveSeq, for checking the next move
+    private static final class Room {
+        final String gameId;
+        final Set<Connection> subscribers = new LinkedHashSet<>();
+        final TreeMap<Integer, Long> moves = new TreeMap<>();
+        final BitBoard position = new BitBoard();
+        boolean created;
+        long version;
+        String player1Id, player2Id, currentTurn, board;
+        int checkpointSeq, moveSeq;
+        int sideToMove; // 0 when unknown, for sessions created past the first move
+
+        Room(String gameId) {
+            this.gameId = gameId;
+        }
+
+        SessionState state() {
+            return created ? new SessionState(version, player1Id, player2Id, currentTurn,
+                    checkpointSeq, moveSeq, board, moves) : null;
+        }
+    }
+
+    private static final class Rejected extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        Rejected(String message) {
+            super(message);
+        }
+    }
+
+    public RelayServer(int port) throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : RelayProtocol.DEFAULT_PORT;
+        RelayServer server = new RelayServer(port);
+        Thread stats = new Thread(() -> {
+            long relayed = 0;
+            try {
+                while (true) {
+                    Thread.sleep(STATS_MILLIS);
+                    long total = server.getMovesRelayed();
+                    System.out.printf("%d connections, %d sessions, %.1f moves/s%n", server.getConnectionCount(),
+                            server.getSessionCount(), (total - relayed) * 1000.0 / STATS_MILLIS);
+                    relayed = total;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "relay-stats");
+        stats.setDaemon(true);
+        stats.start();
+        System.out.println("Relay listening on port " + server.getPort());
+        server.run();
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public int getSessionCount() {
+        return sessionCount;
+    }
+
+    public int getConnectionCount() {
+        return connectionCount;
+    }
+
+    public long getMovesRelayed() {
+        return movesRelayed;
+    }
+
+    // Stops run() and closes every connection
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            read(connection);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            flush(connection);
+                        }
+                    } catch (IOException e) {
+                        closing.add(connection);
+                    }
+                    for (int i = 0; i < closing.size(); i++) {
+                        disconnect(closing.get(i));
+                    }
+                    closing.clear();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key.channel());
+            }
+            closeQuietly(selector);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            key.attach(new Connection(channel, key));
+            connectionCount++;
+        }
+    }
+
+    // Reads what is available and handles every complete frame
+    private void read(Connection connection) throws IOException {
+        ByteBuffer in = connection.in;
+        if (connection.channel.read(in) < 0) {
+            throw new IOException("Closed by client");
+        }
+        in.flip();
+        while (in.remaining() >= 4) {
+            int length = in.getInt(in.position());
+            if (length < 1 || length > RelayProtocol.MAX_FRAME) {
+                throw new IOException("Bad frame length " + length);
+            }
+            if (in.remaining() < 4 + length) {
+                break;
+            }
+            byte[] frame = new byte[length];
+            in.position(in.position() + 4);
+            in.get(frame);
+            handle(connection, new DataInputStream(new ByteArrayInputStream(frame)));
+        }
+        in.compact();
+    }
+
+    private void handle(Connection connection, DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case RelayProtocol.CREATE: {
+                int requestId = in.readInt();
+                String gameId = RelayProtocol.readString(in);
+                SessionState initial = RelayProtocol.readState(in);
+                answer(connection, requestId, () -> create(connection, gameId, initial));
+                break;
+            }
+            case RelayProtocol.JOIN: {
+                int requestId = in.readInt();
+                String gameId = RelayProtocol.readString(in);
+                String playerId = RelayProtocol.readString(in);
+                answer(connection, requestId, () -> join(connection, gameId, playerId));
+                break;
+            }
+            case RelayProtocol.COMMIT: {
+                int requestId = in.readInt();
+                String gameId = RelayProtocol.readString(in);
+                String nextTurn = RelayProtocol.readString(in);
+                int count = in.readInt();
+                if (count < 1 || count > RelayProtocol.MAX_FRAME / 12) {
+                    throw new IOException("Bad move count " + count);
+                }
+                MoveRecord[] records = new MoveRecord[count];
+                for (int i = 0; i < count; i++) {
+                    int seq = in.readInt();
+                    records[i] = MoveRecord.unpack(seq, in.readLong());
+                }
+                answer(connection, requestId, () -> commit(connection, gameId, nextTurn, records));
+                break;
+            }
+            case RelayProtocol.CHECKPOINT: {
+                int requestId = in.readInt();
+                String gameId = RelayProtocol.readString(in);
+                int seq = in.readInt();
+                String board = RelayProtocol.readString(in);
+                answer(connection, requestId, () -> checkpoint(gameId, seq, board));
+                break;
+            }
+            case RelayProtocol.LOAD: {
+                int requestId = in.readInt();
+                String gameId = RelayProtocol.readString(in);
+                Room room = rooms.get(gameId);
+                send(connection, RelayProtocol.state(requestId, gameId, room == null ? null : room.state(), true));
+                break;
+            }
+            case RelayProtocol.SUBSCRIBE: {
+                String gameId = RelayProtocol.readString(in);
+                Room room = rooms.computeIfAbsent(gameId, Room::new);
+                sessionCount = rooms.size();
+                room.subscribers.add(connection);
+                connection.rooms.add(room);
+                if (room.created) {
+                    send(connection, RelayProtocol.state(0, gameId, room.state(), true));
+                }
+                break;
+            }
+            case RelayProtocol.UNSUBSCRIBE: {
+                Room room = rooms.get(RelayProtocol.readString(in));
+                if (room != null) {
+                    leave(connection, room);
+                }
+                break;
+            }
+            default:
+                throw new IOException("Unknown frame type " + type);
+        }
+    }
+
+    // A request that changes a session; throws Rejected to fail it
+    private interface Request {
+        void run() throws Rejected;
+    }
+
+    private void answer(Connection connection, int requestId, Request request) {
+        String error = null;
+        try {
+            request.run();
+        } catch (Rejected e) {
+            error = e.getMessage();
+        }
+        send(connection, RelayProtocol.result(requestId, error));
+    }
+
+    private Room room(String gameId) throws Rejected {
+        Room room = rooms.get(gameId);
+        if (room == null || !room.created) {
+            throw new Rejected("No game " + gameId);
+        }
+        return room;
+    }
+
+    // Creates or replaces a session; a player 2 who already took the seat keeps it
+    private void create(Connection connection, String gameId, SessionState initial) throws Rejected {
+        if (gameId == null || initial == null || initial.board == null) {
+            throw new Rejected("Incomplete session");
+        }
+        BitBoard position = new BitBoard();
+        try {
+            BoardCodec.decode(initial.board, position);
+        } catch (IllegalArgumentException e) {
+            throw new Rejected("Unreadable board");
+        }
+        int sideToMove = initial.checkpointSeq == 0 ? 1 : 0;
+        for (Map.Entry<Integer, Long> move : initial.moves.tailMap(initial.checkpointSeq + 1).entrySet()) {
+            MoveRecord record = MoveRecord.unpack(move.getKey(), move.getValue());
+            if (!record.applyTo(position, moveList)) {
+                throw new Rejected("Move " + record.seq + " is not legal.");
+            }
+            sideToMove = BitBoard.opponent(record.side);
+        }
+
+        Room room = rooms.computeIfAbsent(gameId, Room::new);
+        sessionCount = rooms.size();
+        if (!room.created || initial.player2Id != null) {
+            room.player2Id = initial.player2Id;
+        }
+        room.created = true;
+        room.version++;
+        room.player1Id = initial.player1Id;
+        room.currentTurn = initial.currentTurn;
+        room.board = initial.board;
+        room.checkpointSeq = initial.checkpointSeq;
+        room.moveSeq = initial.moveSeq;
+        room.moves.clear();
+        room.moves.putAll(initial.moves);
+        room.position.copyFrom(position);
+        room.sideToMove = sideToMove;
+        connection.players.put(gameId, initial.player1Id);
+        fanOut(room, RelayProtocol.state(0, gameId, room.state(), true));
+    }
+
+    private void join(Connection connection, String gameId, String playerId) throws Rejected {
+        Room room = room(gameId);
+        if (room.player2Id != null) {
+            throw new Rejected("Player 2 already joined.");
+        }
+        room.player2Id = playerId;
+        connection.players.put(gameId, playerId);
+        room.version++;
+        fanOut(room, RelayProtocol.state(0, gameId, room.state(), false));
+    }
+
+    // All or nothing: each move must follow the previous one and be legal after it
+    private void commit(Connection connection, String gameId, String nextTurn, MoveRecord[] records) throws Rejected {
+        Room room = room(gameId);
+        String player = connection.players.get(gameId);
+        if (player == null || !player.equals(room.currentTurn)) {
+            throw new Rejected("Not this connection's turn in " + gameId);
+        }
+        scratch.copyFrom(room.position);
+        int seq = room.moveSeq;
+        int side = room.sideToMove;
+        for (MoveRecord record : records) {
+            if (record.seq <= seq) {
+                throw new Rejected("Sequence number " + record.seq + " is taken.");
+            }
+            if (record.seq != seq + 1) {
+                throw new Rejected("Move " + record.seq + " does not follow move " + seq + ".");
+            }
+            if (side != 0 && record.side != side || !record.applyTo(scratch, moveList)) {
+                throw new Rejected("Move " + record.seq + " is not legal.");
+            }
+            seq = record.seq;
+            side = BitBoard.opponent(record.side);
+        }
+
+        room.position.copyFrom(scratch);
+        room.moveSeq = seq;
+        room.sideToMove = side;
+        room.currentTurn = nextTurn;
+        room.version++;
+        for (MoveRecord record : records) {
+            long packed = record.pack();
+            room.moves.put(record.seq, packed);
+            fanOut(room, RelayProtocol.move(gameId, record.seq, packed));
+        }
+        movesRelayed += records.length;
+        fanOut(room, RelayProtocol.state(0, gameId, room.state(), false));
+    }
+
+    // The board is the client's; the relay only checks that it is a board
+    private void checkpoint(String gameId, int seq, String board) throws Rejected {
+        Room room = room(gameId);
+        if (seq <= room.checkpointSeq || seq > room.moveSeq) {
+            throw new Rejected("Checkpoint " + seq + " is out of range.");
+        }
+        if (board == null) {
+            throw new Rejected("Unreadable board");
+        }
+        try {
+            BoardCodec.decode(board, scratch);
+        } catch (IllegalArgumentException e) {
+            throw new Rejected("Unreadable board");
+        }
+        room.board = board;
+        room.checkpointSeq = seq;
+        room.moves.headMap(seq - SessionBoard.CHECKPOINT_INTERVAL, true).clear();
+        room.version++;
+        fanOut(room, RelayProtocol.state(0, gameId, room.state(), false));
+    }
+
+    private void fanOut(Room room, ByteBuffer frame) {
+        for (Connection connection : room.subscribers) {
+            send(connection, frame.duplicate());
+        }
+    }
+
+    // Writes at once when nothing is queued; the rest goes out when the channel is writable
+    private void send(Connection connection, ByteBuffer frame) {
+        if (!connection.key.isValid()) {
+            return;
+        }
+        try {
+            if (connection.out.isEmpty()) {
+                connection.channel.write(frame);
+                if (!frame.hasRemaining()) {
+                    return;
+                }
+                connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            } else if (connection.out.size() >= MAX_QUEUED) {
+                throw new IOException("Client is not reading");
+            }
+            connection.out.add(frame);
+        } catch (IOException e) {
+            closing.add(connection);
+        }
+    }
+
+    private void flush(Connection connection) throws IOException {
+        ByteBuffer frame;
+        while ((frame = connection.out.peek()) != null) {
+            connection.channel.write(frame);
+            if (frame.hasRemaining()) {
+                return;
+            }
+            connection.out.poll();
+        }
+        connection.key.interestOps(SelectionKey.OP_READ);
+    }
+
+    private void leave(Connection connection, Room room) {
+        room.subscribers.remove(connection);
+        connection.rooms.remove(room);
+        if (room.subscribers.isEmpty()) {
+            rooms.remove(room.gameId);
+            sessionCount = rooms.size();
+        }
+    }
+
+    private void disconnect(Connection connection) {
+        if (!connection.key.isValid()) {
+            return;
+        }
+        connection.key.cancel();
+        closeQuietly(connection.channel);
+        connectionCount--;
+        for (Room room : new ArrayList<>(connection.rooms)) {
+            leave(connection, room);
+        }
+        // Sessions this connection created or joined but nobody subscribed to
+        for (String gameId : connection.players.keySet()) {
+            Room room = rooms.get(gameId);
+            if (room != null && room.subscribers.isEmpty()) {
+                rooms.remove(gameId);
+            }
+        }
+        sessionCount = rooms.size();
+        connection.out.clear();
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+            // Nothing left to release
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.damka;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * The relay over real sockets: validated commits and what the other connection sees.
+ */
+public class RelayServerTest {
+    private RelayServer server;
+    private RelayTransport first;
+    private RelayTransport second;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new RelayServer(0);
+        Thread relay = new Thread(server, "relay");
+        relay.setDaemon(true);
+        relay.start();
+        first = new RelayTransport("localhost", server.getPort());
+        second = new RelayTransport("localhost", server.getPort());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        first.close();
+        second.close();
+        server.close();
+    }
+
+    private static Exception await(BlockingQueue<Exception> results) throws InterruptedException {
+        Exception error = results.poll(5, TimeUnit.SECONDS);
+        assertNotNull("no answer from the relay", error);
+        return error instanceof NoError ? null : error;
+    }
+
+    // Queues can't hold null
+    private static final class NoError extends Exception {
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static GameTransport.Callback into(BlockingQueue<Exception> results) {
+        return error -> results.add(error == null ? new NoError() : error);
+    }
+
+    @Test
+    public void commitMoves_rejectsIllegalAndTakenMoves() throws Exception {
+        BlockingQueue<Exception> results = new LinkedBlockingQueue<>();
+        first.create("g", SessionState.initial("p1"), into(results));
+        assertNull(await(results));
+        second.join("g", "p2", into(results));
+        assertNull(await(results));
+
+        SessionBoard session = new SessionBoard();
+        MoveRecord opening = session.play(9, 13, 0);
+        first.commitMoves("g", Arrays.asList(opening), "p2", into(results));
+        assertNull(await(results));
+
+        second.commitMoves("g", Arrays.asList(opening), "p2", into(results));
+        assertNotNull(await(results)); // slot 1 is taken
+        second.commitMoves("g", Arrays.asList(new MoveRecord(2, 2, 21, 13, 0, false)), "p1", into(results));
+        assertNotNull(await(results)); // occupied square
+        second.commitMoves("g", Arrays.asList(new MoveRecord(2, 1, 8, 12, 0, false)), "p1", into(results));
+        assertNotNull(await(results)); // not side 1's turn
+    }
+
+    @Test
+    public void commitMoves_rejectsConnectionNotToMove() throws Exception {
+        BlockingQueue<Exception> results = new LinkedBlockingQueue<>();
+        first.create("g", SessionState.initial("p1"), into(results));
+        assertNull(await(results));
+        MoveRecord opening = new SessionBoard().play(9, 13, 0);
+        second.commitMoves("g", Arrays.asList(opening), "p2", into(results));
+        assertNotNull(await(results)); // not a player of g
+
+        second.join("g", "p2", into(results));
+        assertNull(await(results));
+        second.commitMoves("g", Arrays.asList(opening), "p2", into(results));
+        assertNotNull(await(results)); // p1 is to move
+        first.commitMoves("g", Arrays.asList(opening), "p2", into(results));
+        assertNull(await(results));
+    }
+
+    @Test
+    public void subscriber_getsMovesFromOtherConnection() throws Exception {
+        BlockingQueue<Exception> results = new LinkedBlockingQueue<>();
+        first.create("g", SessionState.initial("p1"), into(results));
+        assertNull(await(results));
+        second.join("g", "p2", into(results));
+        assertNull(await(results));
+        first.join("g", "p3", into(results));
+        assertNotNull(await(results));
+
+        BlockingQueue<Long> seen = new LinkedBlockingQueue<>();
+        BlockingQueue<SessionState> states = new LinkedBlockingQueue<>();
+        second.subscribe("g", Runnable::run, new GameTransport.Listener() {
+            @Override
+            public void onSession(SessionState state) {
+                states.add(state);
+            }
+
+            @Override
+            public void onMove(int seq, long packed) {
+                seen.add(packed);
+            }
+
+            @Override
+            public void onConnected(boolean connected) {
+            }
+        });
+        assertEquals("p2", states.poll(5, TimeUnit.SECONDS).player2Id);
+
+        SessionBoard session = new SessionBoard();
+        MoveRecord opening = session.play(9, 13, 0);
+        first.commitMoves("g", Arrays.asList(opening), "p2", into(results));
+        assertNull(await(results));
+        assertEquals(Long.valueOf(opening.pack()), seen.poll(5, TimeUnit.SECONDS));
+        SessionState state = states.poll(5, TimeUnit.SECONDS);
+        assertEquals(1, state.moveSeq);
+        assertEquals("p2", state.currentTurn);
+    }
+
+    @Test
+    public void create_keepsPlayerWhoAlreadyJoined() throws Exception {
+        BlockingQueue<Exception> results = new LinkedBlockingQueue<>();
+        first.create("g", SessionState.initial("p1"), into(results));
+        assertNull(await(results));
+        second.join("g", "p2", into(results));
+        assertNull(await(results));
+        first.create("g", SessionState.initial("p1"), into(results));
+        assertNull(await(results));
+
+        BlockingQueue<SessionState> loaded = new LinkedBlockingQueue<>();
+        second.load("g", Runnable::run, (state, error) -> loaded.add(state));
+        assertEquals("p2", loaded.poll(5, TimeUnit.SECONDS).player2Id);
+    }
+
+    @Test
+    public void session_isDroppedWhenCreatorLeavesWithoutSubscribing() throws Exception {
+        BlockingQueue<Exception> results = new LinkedBlockingQueue<>();
+        RelayTransport host = new RelayTransport("localhost", server.getPort());
+        host.create("g", SessionState.initial("p1"), into(results));
+        assertNull(await(results));
+        assertEquals(1, server.getSessionCount());
+
+        host.close();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (server.getSessionCount() != 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, server.getSessionCount());
+    }
+
+    @Test
+    public void load_returnsStoredMoves() throws Exception {
+        BlockingQueue<Exception> results = new LinkedBlockingQueue<>();
+        first.create("g", SessionState.initial("p1"), into(results));
+        assertNull(await(results));
+        SessionBoard session = new SessionBoard();
+        first.commitMoves("g", Arrays.asList(session.play(9, 13, 0), session.play(22, 18, 0)), "p1", into(results));
+        assertNull(await(results));
+
+        BlockingQueue<SessionState> loaded = new LinkedBlockingQueue<>();
+        second.load("g", Runnable::run, (state, error) -> loaded.add(state));
+        SessionState state = loaded.poll(5, TimeUnit.SECONDS);
+        assertEquals(2, state.moveSeq);
+        assertEquals(2, state.moves.size());
+    }
+}
@@ -15,4 +15,6 @@ dependencyResolutionManagement {
 
 rootProject.name = "Damka"
 include(":app")
- 
\ No newline at end of file
+include(":engine")
+include(":server")
+include(":loadtest")